@@ -11,6 +11,7 @@ import java.util.regex.Pattern;
 
 import org.bukkit.ChatColor;
 import org.mineacademy.fo.MinecraftVersion.V;
+import org.mineacademy.fo.collection.LruCache;
 import org.mineacademy.fo.model.Whiteblacklist;
 import org.mineacademy.fo.plugin.SimplePlugin;
 import org.mineacademy.fo.remain.CompChatColor;
@@ -34,6 +35,22 @@ public final class ChatUtil {
 	 */
 	public final static int VISIBLE_CHAT_LINES = 20;
 
+	/**
+	 * Maximum amount of centered messages remembered, the least recently used is dropped when full
+	 */
+	private static final int CENTER_CACHE_LIMIT = 1_000;
+
+	/**
+	 * Remembers centered messages by their padding, space character and message,
+	 * so that boxed messages or menus sent repeatedly are only centered once
+	 */
+	private static final LruCache<String, String> CENTER_CACHE = new LruCache<>(CENTER_CACHE_LIMIT);
+
+	/**
+	 * Reusable buffers for computing edit distance, one per thread
+	 */
+	private static final ThreadLocal<DistanceBuffers> DISTANCE_BUFFERS = ThreadLocal.withInitial(DistanceBuffers::new);
+
 	/**
 	 * Centers a message automatically for padding {@link #CENTER_PX}
 	 *
@@ -81,12 +98,20 @@ public final class ChatUtil {
 		if (message == null || message.equals(""))
 			return "";
 
+		return CENTER_CACHE.computeIfAbsent(centerPx + ":" + space + ":" + message, key -> center0(message, space, centerPx));
+	}
+
+	/*
+	 * Center the message measuring each character in the default font
+	 */
+	private static String center0(final String message, final char space, final int centerPx) {
 		int messagePxSize = 0;
 
 		boolean previousCode = false;
 		boolean isBold = false;
 
-		for (final char c : message.toCharArray())
+		for (int i = 0; i < message.length(); i++) {
+			final char c = message.charAt(i);
 
 			if (c == '&' || c == ChatColor.COLOR_CHAR) {
 				previousCode = true;
@@ -106,18 +131,16 @@ public final class ChatUtil {
 				isBold = false;
 
 			} else {
-				final DefaultFontInfo defaultFont = DefaultFontInfo.getDefaultFontInfo(c);
-
-				messagePxSize += isBold ? defaultFont.getBoldLength() : defaultFont.getLength();
+				messagePxSize += DefaultFontInfo.getLength(c, isBold);
 				messagePxSize++;
 			}
+		}
 
 		final StringBuilder builder = new StringBuilder();
 
 		final int halvedMessageSize = messagePxSize / 2;
 		final int toCompensate = centerPx - halvedMessageSize;
-		final DefaultFontInfo font = DefaultFontInfo.getDefaultFontInfo(space);
-		final double spaceLength = isBold ? font.getBoldLength() : font.getLength();
+		final double spaceLength = DefaultFontInfo.getLength(space, isBold);
 
 		double compensated = 0;
 
@@ -485,7 +508,52 @@ public final class ChatUtil {
 		if (longerLength == 0)
 			return 0; /* both strings are zero length */
 
-		return (longerLength - editDistance(longer, shorter)) / (double) longerLength;
+		return (longerLength - editDistance(longer, shorter, longerLength)) / (double) longerLength;
+	}
+
+	/**
+	 * Return true if {@link #getSimilarityPercentage(String, String)} is equal to or above
+	 * the given threshold. Comparing stops as soon as the strings are known to differ too much,
+	 * use this when checking a message against many others such as in anti-spam.
+	 *
+	 * @param first
+	 * @param second
+	 * @param threshold the similarity from 0.00 to 1.00
+	 *
+	 * @return
+	 */
+	public static boolean isSimilar(String first, String second, final double threshold) {
+		if (first.isEmpty() && second.isEmpty())
+			return 1D >= threshold;
+
+		first = removeSimilarity(first);
+		second = removeSimilarity(second);
+
+		String longer = first, shorter = second;
+
+		if (first.length() < second.length()) {
+			longer = second;
+			shorter = first;
+		}
+
+		final int longerLength = longer.length();
+
+		if (longerLength == 0)
+			return 0D >= threshold;
+
+		if (Double.isNaN(threshold))
+			return false;
+
+		// Find the highest distance still similar, computed the same way as the similarity so the decision is the same
+		int maxDistance = (int) Math.max(-1, Math.min(longerLength, Math.floor(longerLength * (1 - threshold))));
+
+		while (maxDistance >= 0 && (longerLength - maxDistance) / (double) longerLength < threshold)
+			maxDistance--;
+
+		while (maxDistance < longerLength && (longerLength - maxDistance - 1) / (double) longerLength >= threshold)
+			maxDistance++;
+
+		return maxDistance >= 0 && editDistance(longer, shorter, maxDistance) <= maxDistance;
 	}
 
 	/*
@@ -621,29 +689,115 @@ public final class ChatUtil {
 	// Helpers
 	// --------------------------------------------------------------------------------
 
-	// Example implementation of the Levenshtein Edit Distance
-	// See http://rosettacode.org/wiki/Levenshtein_distance#Java
-	private static int editDistance(String first, String second) {
-		first = first.toLowerCase();
-		second = second.toLowerCase();
-
-		final int[] costs = new int[second.length() + 1];
-		for (int i = 0; i <= first.length(); i++) {
-			int lastValue = i;
-			for (int j = 0; j <= second.length(); j++)
-				if (i == 0)
-					costs[j] = j;
-				else if (j > 0) {
-					int newValue = costs[j - 1];
-					if (first.charAt(i - 1) != second.charAt(j - 1))
-						newValue = Math.min(Math.min(newValue, lastValue), costs[j]) + 1;
-					costs[j - 1] = lastValue;
-					lastValue = newValue;
-				}
-			if (i > 0)
-				costs[second.length()] = lastValue;
+	/*
+	 * Return the Levenshtein distance between the longer and the shorter string,
+	 * or any value above max as soon as we know the distance will be above max
+	 */
+	private static int editDistance(final String longer, final String shorter, final int max) {
+		if (longer.length() - shorter.length() > max)
+			return max + 1;
+
+		if (shorter.isEmpty())
+			return longer.length();
+
+		return shorter.length() <= 64 ? editDistanceBitParallel(longer, shorter, max) : editDistanceBanded(longer, shorter, max);
+	}
+
+	/*
+	 * Myers' bit-parallel algorithm keeping a column of the distance matrix
+	 * as vertical deltas in two longs, for the shorter string of at most 64 characters
+	 */
+	private static int editDistanceBitParallel(final String longer, final String shorter, final int max) {
+		final DistanceBuffers buffers = DISTANCE_BUFFERS.get();
+		final long lastBit = 1L << shorter.length() - 1;
+
+		long positive = -1L;
+		long negative = 0L;
+		int distance = shorter.length();
+
+		for (int i = 0; i < shorter.length(); i++)
+			buffers.addMask(shorter.charAt(i), 1L << i);
+
+		try {
+			for (int i = 0; i < longer.length(); i++) {
+				final long equal = buffers.getMask(longer.charAt(i));
+				final long vertical = equal | negative;
+				final long horizontal = (equal & positive) + positive ^ positive | equal;
+
+				long horizontalPositive = negative | ~(horizontal | positive);
+				long horizontalNegative = positive & horizontal;
+
+				if ((horizontalPositive & lastBit) != 0)
+					distance++;
+
+				else if ((horizontalNegative & lastBit) != 0)
+					distance--;
+
+				// Each remaining character can lower the distance by one at most
+				if (distance - (longer.length() - i - 1) > max)
+					return max + 1;
+
+				horizontalPositive = horizontalPositive << 1 | 1;
+				horizontalNegative = horizontalNegative << 1;
+
+				positive = horizontalNegative | ~(vertical | horizontalPositive);
+				negative = horizontalPositive & vertical;
+			}
+
+		} finally {
+			buffers.clearMasks();
+		}
+
+		return distance;
+	}
+
+	/*
+	 * Dynamic programming only computing cells within max of the diagonal,
+	 * since cells further away are always above max
+	 */
+	private static int editDistanceBanded(final String longer, final String shorter, final int max) {
+		final DistanceBuffers buffers = DISTANCE_BUFFERS.get();
+		final int length = shorter.length();
+		final int above = max + 1;
+
+		int[] previous = buffers.getRow(0, length + 1);
+		int[] current = buffers.getRow(1, length + 1);
+
+		for (int j = 0; j <= length; j++)
+			previous[j] = j <= max ? j : above;
+
+		for (int i = 1; i <= longer.length(); i++) {
+			final int from = Math.max(1, i - max);
+			final int to = Math.min(length, i + max);
+			final char character = longer.charAt(i - 1);
+
+			current[from - 1] = from == 1 && i <= max ? i : above;
+
+			int rowMinimum = current[from - 1];
+
+			for (int j = from; j <= to; j++) {
+				int value = previous[j - 1] + (character == shorter.charAt(j - 1) ? 0 : 1);
+
+				value = Math.min(value, previous[j] + 1);
+				value = Math.min(value, current[j - 1] + 1);
+
+				current[j] = value;
+				rowMinimum = Math.min(rowMinimum, value);
+			}
+
+			if (to < length)
+				current[to + 1] = above;
+
+			if (rowMinimum > max)
+				return above;
+
+			final int[] swap = previous;
+
+			previous = current;
+			current = swap;
 		}
-		return costs[second.length()];
+
+		return previous[length];
 	}
 
 	private static int[] splitCaps(final String message, final List<String> ignored) {
@@ -690,6 +844,84 @@ public final class ChatUtil {
 				editedMsg[i] = 0;
 		return editedMsg;
 	}
+
+	/**
+	 * Buffers reused when computing edit distance
+	 */
+	private static final class DistanceBuffers {
+
+		/**
+		 * Bits of positions where each character appears in the shorter string,
+		 * ASCII characters are stored directly, others in a small open addressing table
+		 */
+		private final long[] asciiMasks = new long[128];
+		private final char[] keys = new char[128];
+		private final long[] masks = new long[128];
+		private final boolean[] used = new boolean[128];
+
+		/**
+		 * Slots of the table filled for the current string
+		 */
+		private final int[] filled = new int[64];
+		private int filledCount;
+
+		/**
+		 * Rows for the banded algorithm
+		 */
+		private final int[][] rows = new int[2][0];
+
+		void addMask(char character, long bit) {
+			if (character < 128) {
+				this.asciiMasks[character] |= bit;
+
+				return;
+			}
+
+			int slot = character & 127;
+
+			while (this.used[slot] && this.keys[slot] != character)
+				slot = slot + 1 & 127;
+
+			if (!this.used[slot]) {
+				this.used[slot] = true;
+				this.keys[slot] = character;
+				this.filled[this.filledCount++] = slot;
+			}
+
+			this.masks[slot] |= bit;
+		}
+
+		long getMask(char character) {
+			if (character < 128)
+				return this.asciiMasks[character];
+
+			for (int slot = character & 127; this.used[slot]; slot = slot + 1 & 127)
+				if (this.keys[slot] == character)
+					return this.masks[slot];
+
+			return 0;
+		}
+
+		void clearMasks() {
+			Arrays.fill(this.asciiMasks, 0);
+
+			for (int i = 0; i < this.filledCount; i++) {
+				final int slot = this.filled[i];
+
+				this.used[slot] = false;
+				this.masks[slot] = 0;
+			}
+
+			this.filledCount = 0;
+		}
+
+		int[] getRow(int index, int length) {
+			if (this.rows[index].length < length)
+				this.rows[index] = new int[Math.max(length, this.rows[index].length * 2)];
+
+			return this.rows[index];
+		}
+	}
 }
 
 /**
@@ -798,6 +1030,29 @@ enum DefaultFontInfo {
 	SPACE(' ', 4),
 	DEFAULT('a', 4);
 
+	/**
+	 * Fonts by their character, all characters are below 128 and others use {@link #DEFAULT}
+	 */
+	private static final DefaultFontInfo[] BY_CHARACTER = new DefaultFontInfo[128];
+
+	/**
+	 * Lengths of all characters in the Basic Multilingual Plane, normal and bold
+	 */
+	private static final byte[] LENGTHS = new byte[Character.MAX_VALUE + 1], BOLD_LENGTHS = new byte[Character.MAX_VALUE + 1];
+
+	static {
+		for (final DefaultFontInfo info : values())
+			if (info != DEFAULT && BY_CHARACTER[info.character] == null)
+				BY_CHARACTER[info.character] = info;
+
+		for (int c = 0; c <= Character.MAX_VALUE; c++) {
+			final DefaultFontInfo info = getDefaultFontInfo((char) c);
+
+			LENGTHS[c] = (byte) info.getLength();
+			BOLD_LENGTHS[c] = (byte) info.getBoldLength();
+		}
+	}
+
 	private final char character;
 	private final int length;
 
@@ -821,10 +1076,12 @@ enum DefaultFontInfo {
 	}
 
 	public static DefaultFontInfo getDefaultFontInfo(final char c) {
-		for (final DefaultFontInfo dFI : DefaultFontInfo.values())
-			if (dFI.getCharacter() == c)
-				return dFI;
+		final DefaultFontInfo info = c < BY_CHARACTER.length ? BY_CHARACTER[c] : null;
+
+		return info != null ? info : DefaultFontInfo.DEFAULT;
+	}
 
-		return DefaultFontInfo.DEFAULT;
+	public static int getLength(final char c, final boolean bold) {
+		return bold ? BOLD_LENGTHS[c] : LENGTHS[c];
 	}
 }
@@ -22,6 +22,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -48,6 +49,7 @@ import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.scheduler.BukkitTask;
 import org.bukkit.util.Vector;
+import org.mineacademy.fo.collection.LruCache;
 import org.mineacademy.fo.collection.SerializedMap;
 import org.mineacademy.fo.collection.StrictList;
 import org.mineacademy.fo.collection.StrictMap;
@@ -55,6 +57,7 @@ import org.mineacademy.fo.debug.Debugger;
 import org.mineacademy.fo.exception.FoException;
 import org.mineacademy.fo.exception.RegexTimeoutException;
 import org.mineacademy.fo.model.HookManager;
+import org.mineacademy.fo.model.RegexTimings;
 import org.mineacademy.fo.model.Replacer;
 import org.mineacademy.fo.model.SimpleRunnable;
 import org.mineacademy.fo.model.SimpleTask;
@@ -123,6 +126,43 @@ public final class Common {
 	 */
 	private static final Map<String, Long> TIMED_LOG_CACHE = new HashMap<>();
 
+	/**
+	 * Color and decoration letters that can follow & to be translated, see {@link #colorize(String)}
+	 */
+	private static final String COLOR_CODES = "0123456789AaBbCcDdEeFfKkLlMmNnOoRrXx";
+
+	/**
+	 * Maximum amount of messages remembered by {@link #colorize(String)}, the least recently used is dropped when full
+	 */
+	private static final int COLORIZE_CACHE_LIMIT = 10_000;
+
+	/**
+	 * Maximum length of a message to be remembered by {@link #colorize(String)}
+	 */
+	private static final int COLORIZE_CACHE_MAX_LENGTH = 1024;
+
+	/**
+	 * Remembers colorized messages so that repeated messages such as scoreboard
+	 * lines or menu titles are only colorized once
+	 */
+	private static final LruCache<String, String> COLORIZE_CACHE = new LruCache<>(COLORIZE_CACHE_LIMIT);
+
+	/**
+	 * Reusable builder for {@link #colorize(String)}, one per thread
+	 */
+	private static final ThreadLocal<StringBuilder> COLORIZE_BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+	/**
+	 * Maximum amount of patterns remembered by {@link #compilePattern(String)}, the least recently used is dropped when full
+	 */
+	private static final int PATTERN_CACHE_LIMIT = 5_000;
+
+	/**
+	 * Remembers compiled patterns so that rules checked against every message
+	 * are only compiled once
+	 */
+	private static final LruCache<String, Pattern> PATTERN_CACHE = new LruCache<>(PATTERN_CACHE_LIMIT);
+
 	// ------------------------------------------------------------------------------------------------------------
 	// Tell prefix
 	// ------------------------------------------------------------------------------------------------------------
@@ -597,38 +637,165 @@ public final class Common {
 		if (message == null || message.isEmpty())
 			return "";
 
-		String result = CompChatColor.translateColorCodes(message
-				.replace("{prefix}", message.startsWith(tellPrefix) ? "" : tellPrefix)
-				.replace("{server}", SimpleLocalization.SERVER_PREFIX)
-				.replace("{plugin_name}", SimplePlugin.getNamed())
-				.replace("{plugin_version}", SimplePlugin.getVersion()));
+		// Prefixes can change at any time so we do not remember messages having them
+		final boolean cacheable = message.length() <= COLORIZE_CACHE_MAX_LENGTH && !message.contains("{prefix}") && !message.contains("{server}");
 
-		// Replace hex colors on 1.16+ or find the closest color for legacy versions
-		final Matcher match = HEX_COLOR_REGEX.matcher(result);
+		if (cacheable) {
+			final String cached = COLORIZE_CACHE.get(message);
 
-		while (match.find()) {
-			final String matched = match.group();
-			final String colorCode = match.group(2);
-			String replacement = "";
+			if (cached != null)
+				return cached;
+		}
 
-			try {
-				replacement = CompChatColor.of("#" + colorCode).toString();
+		StringBuilder builder = COLORIZE_BUILDER.get();
 
-			} catch (final IllegalArgumentException ex) {
-			}
+		// Do not keep huge builders around
+		if (builder.capacity() > 8192) {
+			builder = new StringBuilder(256);
 
-			result = result.replaceAll(Pattern.quote(matched), replacement);
+			COLORIZE_BUILDER.set(builder);
 		}
 
-		if (result.contains("\\\\#"))
-			result = result.replace("\\\\#", "\\#");
+		builder.setLength(0);
+
+		final boolean hasBackslash = colorize0(builder, message, message, 0);
+		String result = builder.toString();
+
+		if (hasBackslash)
+			if (result.contains("\\\\#"))
+				result = result.replace("\\\\#", "\\#");
+
+			else if (result.contains("\\#"))
+				result = result.replace("\\#", "#");
 
-		else if (result.contains("\\#"))
-			result = result.replace("\\#", "#");
+		if (cacheable)
+			COLORIZE_CACHE.put(message, result);
 
 		return result;
 	}
 
+	/*
+	 * Colorize the text into the builder in one pass, replacing & colors, hex colors and static variables.
+	 * Variables with a lower level than the given one are not replaced, so that their values are only
+	 * replaced with the variables following them.
+	 *
+	 * Returns true if the text contains a backslash.
+	 */
+	private static boolean colorize0(final StringBuilder builder, final String text, final String message, final int level) {
+		final int length = text.length();
+		boolean hasBackslash = false;
+
+		for (int index = 0; index < length; index++) {
+			final char letter = text.charAt(index);
+
+			// Look at what we wrote so far since variable values are colorized together with the text around them
+			final int written = builder.length();
+			final char previous = written > 0 ? builder.charAt(written - 1) : 0;
+
+			if (letter == '\\') {
+				hasBackslash = true;
+				builder.append(letter);
+
+				continue;
+			}
+
+			// Static variables
+			if (letter == '{' && level < 4) {
+				String variable = null;
+				String value = null;
+				int variableLevel = 0;
+
+				if (level < 1 && text.startsWith("{prefix}", index)) {
+					variable = "{prefix}";
+					value = message.startsWith(tellPrefix) ? "" : tellPrefix;
+					variableLevel = 1;
+
+				} else if (level < 2 && text.startsWith("{server}", index)) {
+					variable = "{server}";
+					value = SimpleLocalization.SERVER_PREFIX;
+					variableLevel = 2;
+
+				} else if (level < 3 && text.startsWith("{plugin_name}", index)) {
+					variable = "{plugin_name}";
+					value = SimplePlugin.getNamed();
+					variableLevel = 3;
+
+				} else if (text.startsWith("{plugin_version}", index)) {
+					variable = "{plugin_version}";
+					value = SimplePlugin.getVersion();
+					variableLevel = 4;
+				}
+
+				if (variable != null) {
+					if (value != null)
+						hasBackslash |= colorize0(builder, value, message, variableLevel);
+
+					index += variable.length() - 1;
+					continue;
+				}
+			}
+
+			// Hex colors such as {#CCCCCC} or &#CCCCCC or #CCCCCC unless escaped with \
+			if ((letter == '{' || letter == '&' || letter == '#') && previous != '\\') {
+				final int hashIndex = letter == '#' ? index : index + 1;
+
+				if (hashIndex + 6 < length && text.charAt(hashIndex) == '#' && isHexColor(text, hashIndex + 1)) {
+
+					// The { or & belongs to this color when written right before a variable
+					if (letter == '#' && (previous == '{' || previous == '&') && (written < 2 || builder.charAt(written - 2) != '\\'))
+						builder.setLength(written - 1);
+
+					try {
+						builder.append(CompChatColor.of(text.substring(hashIndex, hashIndex + 7)).toString());
+
+					} catch (final IllegalArgumentException ex) {
+					}
+
+					index = hashIndex + 6;
+
+					if (index + 1 < length && text.charAt(index + 1) == '}')
+						index++;
+
+					continue;
+				}
+			}
+
+			// Legacy & colors
+			if (letter == '&' && index + 1 < length && COLOR_CODES.indexOf(text.charAt(index + 1)) != -1) {
+				builder.append(CompChatColor.COLOR_CHAR).append(Character.toLowerCase(text.charAt(index + 1)));
+
+				index++;
+				continue;
+			}
+
+			// The & was written right before a variable
+			if (previous == '&' && COLOR_CODES.indexOf(letter) != -1) {
+				builder.setCharAt(written - 1, CompChatColor.COLOR_CHAR);
+				builder.append(Character.toLowerCase(letter));
+
+				continue;
+			}
+
+			builder.append(letter);
+		}
+
+		return hasBackslash;
+	}
+
+	/*
+	 * Return true if the six letters from the given index are hexadecimal
+	 */
+	private static boolean isHexColor(final String text, final int from) {
+		for (int index = from; index < from + 6; index++) {
+			final char letter = text.charAt(index);
+
+			if (!(letter >= '0' && letter <= '9' || letter >= 'a' && letter <= 'f' || letter >= 'A' && letter <= 'F'))
+				return false;
+		}
+
+		return true;
+	}
+
 	/**
 	 * Replaces the {@link ChatColor#COLOR_CHAR} colors with & letters
 	 *
@@ -1521,7 +1688,8 @@ public final class Common {
 	/**
 	 * Returns true if the given matcher matches. We also evaluate
 	 * how long the evaluation took and stop it in case it takes too long,
-	 * see {@link SimplePlugin#getRegexTimeout()}
+	 * see {@link SimpleSettings#REGEX_TIMEOUT}. Evaluation times are recorded
+	 * in {@link RegexTimings} and quarantined patterns never match.
 	 *
 	 * @param matcher
 	 * @return
@@ -1529,11 +1697,23 @@ public final class Common {
 	public static boolean regExMatch(final Matcher matcher) {
 		Valid.checkNotNull(matcher, "Cannot call regExMatch on null matcher");
 
+		final Pattern pattern = matcher.pattern();
+
+		if (RegexTimings.isQuarantined(pattern))
+			return false;
+
+		final long startTime = System.nanoTime();
+
 		try {
-			return matcher.find();
+			final boolean found = matcher.find();
+
+			RegexTimings.record(pattern, System.nanoTime() - startTime);
+
+			return found;
 
 		} catch (final RegexTimeoutException ex) {
-			handleRegexTimeoutException(ex, matcher.pattern());
+			RegexTimings.recordTimeout(pattern, System.nanoTime() - startTime);
+			handleRegexTimeoutException(ex, pattern);
 
 			return false;
 		}
@@ -1552,12 +1732,7 @@ public final class Common {
 	public static Matcher compileMatcher(@NonNull final Pattern pattern, final String message) {
 
 		try {
-			final SimplePlugin instance = SimplePlugin.getInstance();
-
-			String strippedMessage = instance.regexStripColors() ? stripColors(message) : message;
-			strippedMessage = instance.regexStripAccents() ? ChatUtil.replaceDiacritic(strippedMessage) : strippedMessage;
-
-			return pattern.matcher(TimedCharSequence.withSettingsLimit(strippedMessage));
+			return pattern.matcher(TimedCharSequence.withSettingsLimit(prepareRegexMessage(message)));
 
 		} catch (final RegexTimeoutException ex) {
 			handleRegexTimeoutException(ex, pattern);
@@ -1566,6 +1741,21 @@ public final class Common {
 		}
 	}
 
+	/**
+	 * Strips colors and accents from the message if enabled in settings, this is
+	 * done for every message before it is matched against a pattern
+	 *
+	 * @param message
+	 * @return
+	 */
+	public static String prepareRegexMessage(final String message) {
+		final SimplePlugin instance = SimplePlugin.getInstance();
+
+		final String strippedMessage = instance.regexStripColors() ? stripColors(message) : message;
+
+		return instance.regexStripAccents() ? ChatUtil.replaceDiacritic(strippedMessage) : strippedMessage;
+	}
+
 	/**
 	 * Compiles a matcher for the given regex and message
 	 *
@@ -1579,12 +1769,28 @@ public final class Common {
 
 	/**
 	 * Compiles a pattern from the given regex, stripping colors and making
-	 * it case insensitive
+	 * it case insensitive. Patterns are cached until {@link #clearPatternCache()}
+	 * is called on reload.
 	 *
 	 * @param regex
 	 * @return
 	 */
-	public static Pattern compilePattern(String regex) {
+	public static Pattern compilePattern(final String regex) {
+		return PATTERN_CACHE.computeIfAbsent(regex, Common::compilePattern0);
+	}
+
+	/**
+	 * Clear patterns cached by {@link #compilePattern(String)}, called automatically on reload
+	 * since settings may change how patterns are compiled
+	 */
+	public static void clearPatternCache() {
+		PATTERN_CACHE.clear();
+	}
+
+	/*
+	 * Compile a new pattern according to settings
+	 */
+	private static Pattern compilePattern0(String regex) {
 		final SimplePlugin instance = SimplePlugin.getInstance();
 		Pattern pattern = null;
 
@@ -3028,40 +3234,65 @@ public final class Common {
 	/**
 	 * Represents a timed chat sequence, used when checking for
 	 * regular expressions so we time how long it takes and
-	 * stop the execution if takes too long
+	 * stop the execution if takes too long.
+	 *
+	 * The time starts when the sequence is first read rather than when it is created,
+	 * so matchers created earlier and evaluated later, such as in a runnable, are not
+	 * stopped too early.
 	 */
 	public final static class TimedCharSequence implements CharSequence {
 
+		/**
+		 * How many reads happen between checking the clock, minus one
+		 */
+		private static final int CHECK_INTERVAL_MASK = 1024 - 1;
+
 		/**
 		 * The timed message
 		 */
 		private final CharSequence message;
 
 		/**
-		 * The timeout limit in millis
+		 * The timeout limit in nanoseconds, 0 or less for no limit
+		 */
+		private final long limitNanos;
+
+		/**
+		 * The {@link System#nanoTime()} when the evaluation is stopped, set on first read
+		 */
+		private long deadline;
+
+		/**
+		 * Is the deadline set?
 		 */
-		private final long futureTimestampLimit;
+		private boolean started;
+
+		/**
+		 * How many characters were read
+		 */
+		private int reads;
 
 		/*
-		 * Create a new timed message for the given message with a timeout in millis
+		 * Create a new timed message for the given message with a timeout in nanoseconds
 		 */
-		private TimedCharSequence(@NonNull final CharSequence message, long futureTimestampLimit) {
+		private TimedCharSequence(@NonNull final CharSequence message, long limitNanos) {
 			this.message = message;
-			this.futureTimestampLimit = futureTimestampLimit;
+			this.limitNanos = limitNanos;
 		}
 
 		/**
 		 * Gets a character at the given index, or throws an error if
-		 * this is called too late after the constructor.
+		 * the evaluation takes longer than the limit.
 		 */
 		@Override
 		public char charAt(final int index) {
+			if (this.limitNanos > 0)
+				if (!this.started) {
+					this.deadline = System.nanoTime() + this.limitNanos;
+					this.started = true;
 
-			// Temporarily disabled due to a rare condition upstream when we take this message
-			// and run it in a runnable, then this is still being evaluated past limit and it fails
-			//
-			//if (System.currentTimeMillis() > futureTimestampLimit)
-			//	throw new RegexTimeoutException(message, futureTimestampLimit);
+				} else if ((++this.reads & CHECK_INTERVAL_MASK) == 0 && System.nanoTime() - this.deadline > 0)
+					throw new RegexTimeoutException(this.message, TimeUnit.NANOSECONDS.toMillis(this.limitNanos));
 
 			try {
 				return this.message.charAt(index);
@@ -3079,7 +3310,12 @@ public final class Common {
 
 		@Override
 		public CharSequence subSequence(final int start, final int end) {
-			return new TimedCharSequence(this.message.subSequence(start, end), this.futureTimestampLimit);
+			final TimedCharSequence sequence = new TimedCharSequence(this.message.subSequence(start, end), this.limitNanos);
+
+			sequence.deadline = this.deadline;
+			sequence.started = this.started;
+
+			return sequence;
 		}
 
 		@Override
@@ -3094,7 +3330,7 @@ public final class Common {
 		 * @return
 		 */
 		public static TimedCharSequence withSettingsLimit(CharSequence message) {
-			return new TimedCharSequence(message, System.currentTimeMillis() + SimpleSettings.REGEX_TIMEOUT);
+			return new TimedCharSequence(message, TimeUnit.MILLISECONDS.toNanos(SimpleSettings.REGEX_TIMEOUT));
 		}
 	}
 }
\ No newline at end of file
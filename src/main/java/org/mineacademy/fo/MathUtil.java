@@ -388,116 +388,321 @@ public final class MathUtil {
 	/**
 	 * Evaluate the given expression, e.g. 5*(4-2) returns... let me check!
 	 *
+	 * If you evaluate the same expression many times with different numbers, use
+	 * {@link #compile(String, String...)} instead.
+	 *
 	 * @param expression
 	 * @return
 	 */
 	public static double calculate(final String expression) {
-		class Parser {
-			int pos = -1, c;
+		return compile(expression).evaluate();
+	}
 
-			void eatChar() {
-				this.c = ++this.pos < expression.length() ? expression.charAt(this.pos) : -1;
-			}
+	/**
+	 * Parse the given expression once into a reusable thread-safe evaluator. Variables
+	 * can be written as name or {name} and their values are given to {@link CompiledExpression#evaluate(double...)}
+	 * in the same order as their names here.
+	 *
+	 * Example: MathUtil.compile("{level} * 1.5 + 10", "level").evaluate(20) returns 40
+	 *
+	 * @param expression
+	 * @param variableNames
+	 * @return
+	 * @throws CalculatorException if the expression is malformed or uses unknown variables
+	 */
+	public static CompiledExpression compile(final String expression, final String... variableNames) {
+		final String[] names = new String[variableNames.length];
 
-			void eatSpace() {
-				while (Character.isWhitespace(this.c))
-					this.eatChar();
-			}
+		for (int i = 0; i < variableNames.length; i++) {
+			final String name = variableNames[i];
 
-			double parse() {
-				this.eatChar();
+			names[i] = name.startsWith("{") && name.endsWith("}") ? name.substring(1, name.length() - 1) : name;
+		}
 
-				final double v = this.parseExpression();
+		return new CompiledExpression(expression, names, new ExpressionParser(expression, names).parse());
+	}
 
-				if (this.c != -1)
-					throw new CalculatorException("Unexpected: " + (char) this.c);
+	/**
+	 * An expression parsed once by {@link MathUtil#compile(String, String...)}, constant parts
+	 * are calculated when compiling
+	 */
+	public static final class CompiledExpression {
+
+		/**
+		 * The expression this was compiled from
+		 */
+		private final String expression;
+
+		/**
+		 * Variable names in the order their values are given in
+		 */
+		private final String[] variableNames;
+
+		/**
+		 * The root of the parsed tree
+		 */
+		private final ExpressionNode root;
+
+		private CompiledExpression(String expression, String[] variableNames, ExpressionNode root) {
+			this.expression = expression;
+			this.variableNames = variableNames;
+			this.root = root;
+		}
 
-				return v;
-			}
+		/**
+		 * Calculate the expression with the given variable values, in the same order
+		 * as variable names were given when compiling
+		 *
+		 * @param values
+		 * @return
+		 */
+		public double evaluate(final double... values) {
+			if (values.length != this.variableNames.length)
+				throw new CalculatorException("Expected " + this.variableNames.length + " values for variables " + Arrays.toString(this.variableNames) + " in '" + this.expression + "', got " + values.length);
+
+			return this.root.evaluate(values);
+		}
 
-			// Grammar:
-			// expression = term | expression `+` term | expression `-` term
-			// term = factor | term `*` factor | term `/` factor | term brackets
-			// factor = brackets | number | factor `^` factor
-			// brackets = `(` expression `)`
+		/**
+		 * Return true if the expression does not depend on any variable
+		 *
+		 * @return
+		 */
+		public boolean isConstant() {
+			return this.root instanceof ConstantNode;
+		}
 
-			double parseExpression() {
-				double v = this.parseTerm();
+		/**
+		 * Return the expression this was compiled from
+		 *
+		 * @return
+		 */
+		public String getExpression() {
+			return this.expression;
+		}
 
-				for (;;) {
-					this.eatSpace();
+		@Override
+		public String toString() {
+			return "CompiledExpression{" + this.expression + "}";
+		}
+	}
 
-					if (this.c == '+') { // addition
-						this.eatChar();
-						v += this.parseTerm();
-					} else if (this.c == '-') { // subtraction
-						this.eatChar();
-						v -= this.parseTerm();
-					} else
-						return v;
+	/*
+	 * A node in the parsed expression
+	 */
+	@FunctionalInterface
+	private interface ExpressionNode {
+		double evaluate(double[] values);
+	}
 
-				}
-			}
+	/*
+	 * A number known when compiling
+	 */
+	private static final class ConstantNode implements ExpressionNode {
 
-			double parseTerm() {
-				double v = this.parseFactor();
+		private final double value;
 
-				for (;;) {
-					this.eatSpace();
+		ConstantNode(double value) {
+			this.value = value;
+		}
 
-					if (this.c == '/') { // division
-						this.eatChar();
-						v /= this.parseFactor();
-					} else if (this.c == '*' || this.c == '(') { // multiplication
-						if (this.c == '*')
-							this.eatChar();
-						v *= this.parseFactor();
-					} else
-						return v;
-				}
-			}
+		@Override
+		public double evaluate(double[] values) {
+			return this.value;
+		}
+	}
+
+	/*
+	 * Parses the expression into nodes, calculating constant parts right away
+	 */
+	private static final class ExpressionParser {
+
+		private final String expression;
+		private final String[] variableNames;
+
+		private int pos = -1, c;
+
+		ExpressionParser(String expression, String[] variableNames) {
+			this.expression = expression;
+			this.variableNames = variableNames;
+		}
+
+		void eatChar() {
+			this.c = ++this.pos < this.expression.length() ? this.expression.charAt(this.pos) : -1;
+		}
+
+		void eatSpace() {
+			while (Character.isWhitespace(this.c))
+				this.eatChar();
+		}
+
+		ExpressionNode parse() {
+			this.eatChar();
 
-			double parseFactor() {
-				double v;
-				boolean negate = false;
+			final ExpressionNode node = this.parseExpression();
 
+			if (this.c != -1)
+				throw new CalculatorException("Unexpected: " + (char) this.c);
+
+			return node;
+		}
+
+		// Grammar:
+		// expression = term | expression `+` term | expression `-` term
+		// term = factor | term `*` factor | term `/` factor | term brackets
+		// factor = brackets | number | variable | factor `^` factor
+		// brackets = `(` expression `)`
+
+		ExpressionNode parseExpression() {
+			ExpressionNode node = this.parseTerm();
+
+			for (;;) {
 				this.eatSpace();
 
-				if (this.c == '+' || this.c == '-') { // unary plus & minus
-					negate = this.c == '-';
+				if (this.c == '+') { // addition
 					this.eatChar();
-					this.eatSpace();
-				}
+					node = add(node, this.parseTerm());
+				} else if (this.c == '-') { // subtraction
+					this.eatChar();
+					node = subtract(node, this.parseTerm());
+				} else
+					return node;
+			}
+		}
 
-				if (this.c == '(') { // brackets
+		ExpressionNode parseTerm() {
+			ExpressionNode node = this.parseFactor();
+
+			for (;;) {
+				this.eatSpace();
+
+				if (this.c == '/') { // division
 					this.eatChar();
-					v = this.parseExpression();
-					if (this.c == ')')
+					node = divide(node, this.parseFactor());
+				} else if (this.c == '*' || this.c == '(') { // multiplication
+					if (this.c == '*')
 						this.eatChar();
-				} else { // numbers
-					final StringBuilder sb = new StringBuilder();
+					node = multiply(node, this.parseFactor());
+				} else
+					return node;
+			}
+		}
 
-					while (this.c >= '0' && this.c <= '9' || this.c == '.') {
-						sb.append((char) this.c);
-						this.eatChar();
-					}
+		ExpressionNode parseFactor() {
+			ExpressionNode node;
+			boolean negate = false;
 
-					if (sb.length() == 0)
-						throw new CalculatorException("Unexpected: " + (char) this.c);
+			this.eatSpace();
 
-					v = Double.parseDouble(sb.toString());
-				}
+			if (this.c == '+' || this.c == '-') { // unary plus & minus
+				negate = this.c == '-';
+				this.eatChar();
 				this.eatSpace();
-				if (this.c == '^') { // exponentiation
+			}
+
+			if (this.c == '(') { // brackets
+				this.eatChar();
+				node = this.parseExpression();
+				if (this.c == ')')
+					this.eatChar();
+			} else if (this.variableNames.length > 0 && (this.c == '{' || Character.isLetter(this.c))) // variables, if any
+				node = this.parseVariable();
+
+			else { // numbers
+				final StringBuilder sb = new StringBuilder();
+
+				while (this.c >= '0' && this.c <= '9' || this.c == '.') {
+					sb.append((char) this.c);
 					this.eatChar();
-					v = Math.pow(v, this.parseFactor());
 				}
-				if (negate)
-					v = -v; // unary minus is applied after exponentiation; e.g. -3^2=-9
-				return v;
+
+				if (sb.length() == 0)
+					throw new CalculatorException("Unexpected: " + (char) this.c);
+
+				node = new ConstantNode(Double.parseDouble(sb.toString()));
+			}
+			this.eatSpace();
+			if (this.c == '^') { // exponentiation
+				this.eatChar();
+				node = power(node, this.parseFactor());
+			}
+			if (negate)
+				node = negate(node); // unary minus is applied after exponentiation; e.g. -3^2=-9
+			return node;
+		}
+
+		ExpressionNode parseVariable() {
+			final boolean bracket = this.c == '{';
+			final StringBuilder sb = new StringBuilder();
+
+			if (bracket)
+				this.eatChar();
+
+			while (this.c != -1 && (Character.isLetterOrDigit(this.c) || this.c == '_')) {
+				sb.append((char) this.c);
+				this.eatChar();
 			}
+
+			if (bracket) {
+				if (this.c != '}')
+					throw new CalculatorException("Unexpected: " + (char) this.c);
+
+				this.eatChar();
+			}
+
+			final String name = sb.toString();
+
+			for (int i = 0; i < this.variableNames.length; i++)
+				if (this.variableNames[i].equals(name)) {
+					final int index = i;
+
+					return values -> values[index];
+				}
+
+			throw new CalculatorException("Unknown variable: " + name + " in " + this.expression);
+		}
+
+		private static ExpressionNode add(ExpressionNode first, ExpressionNode second) {
+			if (first instanceof ConstantNode && second instanceof ConstantNode)
+				return new ConstantNode(((ConstantNode) first).value + ((ConstantNode) second).value);
+
+			return values -> first.evaluate(values) + second.evaluate(values);
+		}
+
+		private static ExpressionNode subtract(ExpressionNode first, ExpressionNode second) {
+			if (first instanceof ConstantNode && second instanceof ConstantNode)
+				return new ConstantNode(((ConstantNode) first).value - ((ConstantNode) second).value);
+
+			return values -> first.evaluate(values) - second.evaluate(values);
+		}
+
+		private static ExpressionNode multiply(ExpressionNode first, ExpressionNode second) {
+			if (first instanceof ConstantNode && second instanceof ConstantNode)
+				return new ConstantNode(((ConstantNode) first).value * ((ConstantNode) second).value);
+
+			return values -> first.evaluate(values) * second.evaluate(values);
+		}
+
+		private static ExpressionNode divide(ExpressionNode first, ExpressionNode second) {
+			if (first instanceof ConstantNode && second instanceof ConstantNode)
+				return new ConstantNode(((ConstantNode) first).value / ((ConstantNode) second).value);
+
+			return values -> first.evaluate(values) / second.evaluate(values);
+		}
+
+		private static ExpressionNode power(ExpressionNode first, ExpressionNode second) {
+			if (first instanceof ConstantNode && second instanceof ConstantNode)
+				return new ConstantNode(Math.pow(((ConstantNode) first).value, ((ConstantNode) second).value));
+
+			return values -> Math.pow(first.evaluate(values), second.evaluate(values));
+		}
+
+		private static ExpressionNode negate(ExpressionNode node) {
+			if (node instanceof ConstantNode)
+				return new ConstantNode(-((ConstantNode) node).value);
+
+			return values -> -node.evaluate(values);
 		}
-		return new Parser().parse();
 	}
 
 	/**
@@ -3,11 +3,12 @@ package org.mineacademy.fo;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.mineacademy.fo.model.Replacer;
+import org.mineacademy.fo.model.Variables;
 import org.mineacademy.fo.remain.Remain;
+import org.mineacademy.fo.settings.Lang;
 import org.mineacademy.fo.settings.SimpleSettings;
 
 import lombok.Getter;
-import lombok.Setter;
 import lombok.experimental.UtilityClass;
 
 /**
@@ -24,42 +25,36 @@ public class Messenger {
 	/**
 	 * The prefix send while sending info message
 	 */
-	@Setter
 	@Getter
 	private String infoPrefix = "&8&l[&9&li&8&l]&7 ";
 
 	/**
 	 * The prefix send while sending success message
 	 */
-	@Setter
 	@Getter
 	private String successPrefix = "&8&l[&2&l\u2714&8&l]&7 ";
 
 	/**
 	 * The prefix send while sending warning message
 	 */
-	@Setter
 	@Getter
 	private String warnPrefix = "&8&l[&6&l!&8&l]&6 ";
 
 	/**
 	 * The prefix send while sending error message
 	 */
-	@Setter
 	@Getter
 	private String errorPrefix = "&8&l[&4&l\u2715&8&l]&c ";
 
 	/**
 	 * The prefix send while sending questions
 	 */
-	@Setter
 	@Getter
 	private String questionPrefix = "&8&l[&a&l?&l&8&l]&7 ";
 
 	/**
 	 * The prefix send while sending announcements
 	 */
-	@Setter
 	@Getter
 	private String announcePrefix = "&8&l[&5&l!&l&8&l]&d ";
 
@@ -220,6 +215,80 @@ public class Messenger {
 		Common.tellNoPrefix(player, (noPrefix ? "" : prefix) + message);
 	}
 
+	/**
+	 * Set the prefix send while sending info message
+	 *
+	 * @param prefix
+	 */
+	public void setInfoPrefix(final String prefix) {
+		infoPrefix = prefix;
+
+		clearCompiledMessages();
+	}
+
+	/**
+	 * Set the prefix send while sending success message
+	 *
+	 * @param prefix
+	 */
+	public void setSuccessPrefix(final String prefix) {
+		successPrefix = prefix;
+
+		clearCompiledMessages();
+	}
+
+	/**
+	 * Set the prefix send while sending warning message
+	 *
+	 * @param prefix
+	 */
+	public void setWarnPrefix(final String prefix) {
+		warnPrefix = prefix;
+
+		clearCompiledMessages();
+	}
+
+	/**
+	 * Set the prefix send while sending error message
+	 *
+	 * @param prefix
+	 */
+	public void setErrorPrefix(final String prefix) {
+		errorPrefix = prefix;
+
+		clearCompiledMessages();
+	}
+
+	/**
+	 * Set the prefix send while sending questions
+	 *
+	 * @param prefix
+	 */
+	public void setQuestionPrefix(final String prefix) {
+		questionPrefix = prefix;
+
+		clearCompiledMessages();
+	}
+
+	/**
+	 * Set the prefix send while sending announcements
+	 *
+	 * @param prefix
+	 */
+	public void setAnnouncePrefix(final String prefix) {
+		announcePrefix = prefix;
+
+		clearCompiledMessages();
+	}
+
+	/*
+	 * Clear messages compiled with the old prefixes
+	 */
+	private void clearCompiledMessages() {
+		Variables.clearCache();
+		Lang.clearTemplates();
+	}
+
 	/**
 	 * Replace {plugin_prefix} and {X_prefix} and {prefix_X} with respective messenger variables
 	 * such as {warn_prefix} with {@link #getWarnPrefix()} etc.
@@ -13,7 +13,9 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.util.Vector;
 import org.mineacademy.fo.collection.SerializedMap;
 import org.mineacademy.fo.exception.FoException;
+import org.mineacademy.fo.model.CompiledList;
 import org.mineacademy.fo.model.RangedValue;
+import org.mineacademy.fo.model.RegexList;
 import org.mineacademy.fo.remain.Remain;
 import org.mineacademy.fo.settings.SimpleLocalization;
 
@@ -614,11 +616,16 @@ public final class Valid {
 	/**
 	 * Return true if any element in the given list equals (case ignored) to your given element
 	 *
+	 * For lists checked often, see {@link CompiledList}.
+	 *
 	 * @param element
 	 * @param list
 	 * @return
 	 */
 	public static boolean isInList(final String element, final Iterable<String> list) {
+		if (list instanceof CompiledList)
+			return ((CompiledList) list).contains(element);
+
 		try {
 			for (final String matched : list)
 				if (removeSlash(element).equalsIgnoreCase(removeSlash(matched)))
@@ -633,11 +640,16 @@ public final class Valid {
 	/**
 	 * Return true if any element in the given list starts with (case ignored) your given element
 	 *
+	 * For lists checked often, see {@link CompiledList}.
+	 *
 	 * @param element
 	 * @param list
 	 * @return
 	 */
 	public static boolean isInListStartsWith(final String element, final Iterable<String> list) {
+		if (list instanceof CompiledList)
+			return ((CompiledList) list).startsWithAny(element);
+
 		try {
 			for (final String matched : list)
 				if (removeSlash(element).toLowerCase().startsWith(removeSlash(matched).toLowerCase()))
@@ -652,7 +664,8 @@ public final class Valid {
 	/**
 	 * Return true if any element in the given list matches your given element.
 	 *
-	 * A regular expression is compiled from that list element.
+	 * A regular expression is compiled from that list element, compiled patterns are cached.
+	 * For large lists checked often, see {@link RegexList}.
 	 *
 	 * @param element
 	 * @param list
@@ -673,13 +686,17 @@ public final class Valid {
 	/**
 	 * Return true if any element in the given list matches your given element.
 	 *
-	 * A regular expression is compiled from that list element.
+	 * If the list is a {@link RegexList}, only patterns which text appears in the
+	 * element are run.
 	 *
 	 * @param element
 	 * @param list
 	 * @return
 	 */
 	public static boolean isInListRegexFast(final String element, final Iterable<Pattern> list) {
+		if (list instanceof RegexList)
+			return ((RegexList) list).isMatching(element);
+
 		try {
 			for (final Pattern regex : list)
 				if (Common.regExMatch(regex, element))
@@ -0,0 +1,161 @@
+package org.mineacademy.fo.collection;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.mineacademy.fo.Valid;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * A cache holding at most the given amount of entries, dropping the least recently
+ * used entry when a new one is added to a full cache.
+ * <p>
+ * The cache is thread-safe, all methods lock it so keep the limit small enough for
+ * a linked hash map of that size. Values are computed outside of the lock in
+ * {@link #computeIfAbsent(Object, Function)}, so the same value may be computed
+ * twice when two threads ask for it at once. Null keys and values are not supported.
+ *
+ * @param <K>
+ * @param <V>
+ */
+public final class LruCache<K, V> {
+
+	/**
+	 * The maximum amount of entries
+	 */
+	@Getter
+	private final int limit;
+
+	/**
+	 * Entries in access order, the eldest is the least recently used
+	 */
+	private final Map<K, V> map;
+
+	/**
+	 * How many entries were dropped because the cache was full
+	 */
+	private long evictions;
+
+	/**
+	 * Create a new cache holding at most the given amount of entries
+	 *
+	 * @param limit
+	 */
+	public LruCache(int limit) {
+		Valid.checkBoolean(limit > 0, "Cache limit must be positive, got " + limit);
+
+		this.limit = limit;
+		this.map = new LinkedHashMap<K, V>(Math.min(limit, 1024), 0.75F, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+				if (this.size() > LruCache.this.limit) {
+					LruCache.this.evictions++;
+
+					return true;
+				}
+
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Return the cached value marking it as recently used, or null if not cached
+	 *
+	 * @param key
+	 * @return
+	 */
+	public synchronized V get(@NonNull K key) {
+		return this.map.get(key);
+	}
+
+	/**
+	 * Cache the value, dropping the least recently used entry if the cache is full
+	 *
+	 * @param key
+	 * @param value
+	 */
+	public synchronized void put(@NonNull K key, @NonNull V value) {
+		this.map.put(key, value);
+	}
+
+	/**
+	 * Return the cached value, computing and caching it if not cached.
+	 * If the function returns null, nothing is cached and null is returned.
+	 *
+	 * @param key
+	 * @param function called outside of the lock
+	 * @return
+	 */
+	public V computeIfAbsent(@NonNull K key, @NonNull Function<K, V> function) {
+		final V cached = this.get(key);
+
+		if (cached != null)
+			return cached;
+
+		final V value = function.apply(key);
+
+		if (value == null)
+			return null;
+
+		synchronized (this) {
+			final V previous = this.map.putIfAbsent(key, value);
+
+			return previous != null ? previous : value;
+		}
+	}
+
+	/**
+	 * Remove the cached value
+	 *
+	 * @param key
+	 * @return the removed value or null
+	 */
+	public synchronized V remove(@NonNull K key) {
+		return this.map.remove(key);
+	}
+
+	/**
+	 * Remove all cached values
+	 */
+	public synchronized void clear() {
+		this.map.clear();
+	}
+
+	/**
+	 * Return a copy of cached entries, from the least to the most recently used
+	 *
+	 * @return
+	 */
+	public synchronized Map<K, V> toMap() {
+		return new LinkedHashMap<>(this.map);
+	}
+
+	/**
+	 * Return how many values are cached
+	 *
+	 * @return
+	 */
+	public synchronized int size() {
+		return this.map.size();
+	}
+
+	/**
+	 * Return how many entries were dropped because the cache was full
+	 *
+	 * @return
+	 */
+	public synchronized long getEvictions() {
+		return this.evictions;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "LruCache{size=" + this.map.size() + ", limit=" + this.limit + ", evictions=" + this.evictions + "}";
+	}
+}
@@ -0,0 +1,317 @@
+package org.mineacademy.fo.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.mineacademy.fo.Common;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Broadcasts messages rendered differently for each receiver, rendering them off the main thread.
+ *
+ * Receivers are captured into {@link ReceiverSnapshot}s on the main thread, messages are rendered
+ * for them in parallel asynchronously and then sent together on the main thread. Renderers only get
+ * the snapshot and must not call the Bukkit API.
+ *
+ * Ordered broadcasts are sent in the order they were started, so each receiver gets them in that order
+ * even if a later one renders faster. Unordered broadcasts are sent as soon as they are rendered.
+ */
+public final class BroadcastPipeline {
+
+	/**
+	 * Broadcasts to fewer receivers are rendered on a single thread
+	 */
+	private static final int PARALLEL_THRESHOLD = 64;
+
+	/**
+	 * The sequence given to the next ordered broadcast
+	 */
+	private static final AtomicLong orderedSequence = new AtomicLong();
+
+	/**
+	 * The sequence of the next ordered broadcast to send, only changed on the main thread
+	 */
+	private static volatile long nextOrdered;
+
+	/**
+	 * Rendered ordered broadcasts by their sequence, waiting for earlier ones
+	 */
+	private static final Map<Long, Batch<?>> readyOrdered = new ConcurrentHashMap<>();
+
+	/**
+	 * Rendered unordered broadcasts
+	 */
+	private static final Queue<Batch<?>> readyUnordered = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Prevents scheduling more than one drain at once
+	 */
+	private static final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+	/**
+	 * How long rendering the last broadcast took, in nanoseconds
+	 */
+	private static volatile long lastRenderNanos;
+
+	/**
+	 * Render the message for each receiver and send it as if using {@link Common#tellNoPrefix(CommandSender, String...)},
+	 * in the order broadcasts were started. Receivers for which the renderer returns null or throws an error are skipped.
+	 *
+	 * @param receivers
+	 * @param renderer
+	 */
+	public static void broadcast(@NonNull Iterable<? extends CommandSender> receivers, @NonNull Function<ReceiverSnapshot, String> renderer) {
+		broadcast(receivers, renderer, (receiver, message) -> Common.tellNoPrefix(receiver, message), true);
+	}
+
+	/**
+	 * Render anything for each receiver, such as a {@link PreparedComponent}, and send it using the given sender.
+	 * Receivers for which the renderer returns null or throws an error are skipped, the first error is logged.
+	 *
+	 * Must be called on the main thread.
+	 *
+	 * @param <T>
+	 * @param receivers
+	 * @param renderer called asynchronously, must not call the Bukkit API
+	 * @param sender called on the main thread
+	 * @param ordered should this be sent after all ordered broadcasts started before it?
+	 */
+	public static <T> void broadcast(@NonNull Iterable<? extends CommandSender> receivers, @NonNull Function<ReceiverSnapshot, T> renderer, @NonNull BiConsumer<CommandSender, T> sender, boolean ordered) {
+		final List<ReceiverSnapshot> snapshots = new ArrayList<>();
+
+		for (final CommandSender receiver : receivers)
+			snapshots.add(new ReceiverSnapshot(receiver));
+
+		final Batch<T> batch = new Batch<>(ordered ? orderedSequence.getAndIncrement() : -1, snapshots, sender);
+
+		try {
+			Common.runAsync(() -> {
+				final long start = System.nanoTime();
+
+				try {
+					final IntStream indexes = IntStream.range(0, snapshots.size());
+
+					(snapshots.size() < PARALLEL_THRESHOLD ? indexes : indexes.parallel()).forEach(index -> batch.render(index, renderer));
+
+				} catch (final Throwable t) {
+					Common.error(t, "Error rendering broadcast to " + snapshots.size() + " receivers, it will not be sent");
+
+					batch.failed = true;
+
+				} finally {
+					lastRenderNanos = System.nanoTime() - start;
+
+					complete(batch);
+				}
+			});
+
+		} catch (final Throwable t) {
+
+			// Such as when the plugin is disabling, give up the sequence so later ordered broadcasts are not held
+			batch.failed = true;
+
+			try {
+				complete(batch);
+
+			} catch (final Throwable suppressed) {
+				t.addSuppressed(suppressed);
+			}
+
+			throw t;
+		}
+	}
+
+	/*
+	 * Queue the rendered broadcast and schedule sending it
+	 */
+	private static void complete(Batch<?> batch) {
+		if (batch.sequence == -1)
+			readyUnordered.add(batch);
+
+		// Skip broadcasts started before clearing
+		else if (batch.sequence >= nextOrdered)
+			readyOrdered.put(batch.sequence, batch);
+
+		if (drainScheduled.compareAndSet(false, true))
+			try {
+				Common.runLater(BroadcastPipeline::drain);
+
+			} catch (final Throwable t) {
+				drainScheduled.set(false);
+
+				throw t;
+			}
+	}
+
+	/*
+	 * Send all rendered broadcasts that can be sent, called on the main thread
+	 */
+	private static void drain() {
+		drainScheduled.set(false);
+
+		Batch<?> batch;
+
+		while ((batch = readyUnordered.poll()) != null)
+			batch.send();
+
+		while ((batch = readyOrdered.remove(nextOrdered)) != null) {
+			nextOrdered++;
+
+			batch.send();
+		}
+	}
+
+	/**
+	 * Return how many ordered broadcasts were started and not sent yet
+	 *
+	 * @return
+	 */
+	public static long getPendingOrdered() {
+		return orderedSequence.get() - nextOrdered;
+	}
+
+	/**
+	 * Return how long rendering the last broadcast took, in nanoseconds
+	 *
+	 * @return
+	 */
+	public static long getLastRenderNanos() {
+		return lastRenderNanos;
+	}
+
+	/**
+	 * Discard broadcasts not sent yet, called automatically on reload
+	 */
+	public static void clear() {
+		nextOrdered = orderedSequence.get();
+
+		readyOrdered.clear();
+		readyUnordered.clear();
+		drainScheduled.set(false);
+	}
+
+	/**
+	 * Represents what a renderer may know about a receiver, captured on the main thread
+	 */
+	@Getter
+	public static final class ReceiverSnapshot {
+
+		/**
+		 * The receiver, do not call its methods from the renderer unless they are thread-safe
+		 */
+		private final CommandSender sender;
+
+		/**
+		 * The name, see {@link Common#resolveSenderName(CommandSender)}
+		 */
+		private final String name;
+
+		/**
+		 * The display name for players, or the name
+		 */
+		private final String displayName;
+
+		/**
+		 * The unique id for players, or null
+		 */
+		private final UUID uniqueId;
+
+		/**
+		 * The world name for players, or null
+		 */
+		private final String worldName;
+
+		private ReceiverSnapshot(CommandSender sender) {
+			final Player player = sender instanceof Player ? (Player) sender : null;
+
+			this.sender = sender;
+			this.name = Common.resolveSenderName(sender);
+			this.displayName = player != null ? player.getDisplayName() : this.name;
+			this.uniqueId = player != null ? player.getUniqueId() : null;
+			this.worldName = player != null ? player.getWorld().getName() : null;
+		}
+
+		/**
+		 * Return true if the receiver is a player
+		 *
+		 * @return
+		 */
+		public boolean isPlayer() {
+			return this.uniqueId != null;
+		}
+	}
+
+	/*
+	 * A broadcast with its receivers and what was rendered for them
+	 */
+	private static final class Batch<T> {
+
+		private final long sequence;
+		private final List<ReceiverSnapshot> snapshots;
+		private final BiConsumer<CommandSender, T> sender;
+		private final Object[] results;
+		private final AtomicBoolean renderErrorLogged = new AtomicBoolean();
+		private volatile boolean failed;
+
+		Batch(long sequence, List<ReceiverSnapshot> snapshots, BiConsumer<CommandSender, T> sender) {
+			this.sequence = sequence;
+			this.snapshots = snapshots;
+			this.sender = sender;
+			this.results = new Object[snapshots.size()];
+		}
+
+		/*
+		 * Render the result for the receiver at the given index, leaving it null if the renderer fails
+		 * so that one receiver does not prevent sending the broadcast to the others
+		 */
+		void render(int index, Function<ReceiverSnapshot, ?> renderer) {
+			final ReceiverSnapshot snapshot = this.snapshots.get(index);
+
+			try {
+				this.results[index] = renderer.apply(snapshot);
+
+			} catch (final Throwable t) {
+				if (this.renderErrorLogged.compareAndSet(false, true))
+					Common.error(t, "Error rendering broadcast to " + snapshot.getName() + ", skipping receivers for which rendering fails");
+			}
+		}
+
+		/*
+		 * Send results to receivers still online
+		 */
+		@SuppressWarnings("unchecked")
+		void send() {
+			if (this.failed)
+				return;
+
+			for (int index = 0; index < this.results.length; index++) {
+				final CommandSender receiver = this.snapshots.get(index).getSender();
+				final T result = (T) this.results[index];
+
+				if (result == null || receiver instanceof Player && !((Player) receiver).isOnline())
+					continue;
+
+				try {
+					this.sender.accept(receiver, result);
+
+				} catch (final Throwable t) {
+					Common.error(t, "Error sending broadcast to " + receiver.getName());
+				}
+			}
+		}
+	}
+}
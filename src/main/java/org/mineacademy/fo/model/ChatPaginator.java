@@ -5,8 +5,12 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
 
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
@@ -22,14 +26,19 @@ import org.mineacademy.fo.plugin.SimplePlugin;
 import org.mineacademy.fo.settings.SimpleLocalization;
 
 import lombok.Getter;
+import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 
 /**
  * A draft API for enumerating chat messages into pages.
  *
+ * Lines are only created when the page they are on is viewed and a few pages
+ * around the last viewed one are kept, so paginating thousands of lines does not
+ * create all of them up front. Lines can also be loaded asynchronously, see
+ * {@link #setPagesAsync(Supplier, Function)}.
+ *
  * See {@link PermsCommand} for an early implementation.
  */
-@Getter
 @RequiredArgsConstructor
 public final class ChatPaginator {
 
@@ -41,29 +50,48 @@ public final class ChatPaginator {
 	 */
 	public static final int FOUNDATION_HEIGHT = 15;
 
+	/**
+	 * How many pages before and after the last viewed page are kept created
+	 */
+	private static final int CACHED_PAGES_AROUND = 2;
+
 	/**
 	 * How many lines per page? Maximum on screen is 20 minus header and footer.
 	 */
+	@Getter
 	private final int linesPerPage;
 
 	/**
 	 * The color used in header and footer
 	 */
+	@Getter
 	private final ChatColor themeColor;
 
 	/**
 	 * The header included on every page.
 	 */
+	@Getter
 	private final List<SimpleComponent> header = new ArrayList<>();
 
 	/**
-	 * The pages with their content.
+	 * The lines to paginate
 	 */
-	private final Map<Integer, List<SimpleComponent>> pages = new HashMap<>();
+	private volatile Content content = Content.EMPTY;
+
+	/**
+	 * Pages created around the last viewed page, by page index
+	 */
+	private final Map<Integer, List<SimpleComponent>> createdPages = new HashMap<>();
+
+	/**
+	 * Senders and pages they requested while loading, shown when loaded
+	 */
+	private final Map<CommandSender, Integer> waiting = new LinkedHashMap<>();
 
 	/**
 	 * The footer included on every page.
 	 */
+	@Getter
 	private final List<SimpleComponent> footer = new ArrayList<>();
 
 	/**
@@ -160,10 +188,7 @@ public final class ChatPaginator {
 	 * @return
 	 */
 	public ChatPaginator setPages(SimpleComponent... components) {
-		this.pages.clear();
-		this.pages.putAll(Common.fillPages(this.linesPerPage, Arrays.asList(components)));
-
-		return this;
+		return this.setPages(Arrays.asList(components));
 	}
 
 	/**
@@ -173,12 +198,7 @@ public final class ChatPaginator {
 	 * @return
 	 */
 	public ChatPaginator setPages(String... messages) {
-		final List<SimpleComponent> pages = new ArrayList<>();
-
-		for (final String message : messages)
-			pages.add(SimpleComponent.of(message));
-
-		return this.setPages(pages);
+		return this.setPages(Arrays.asList(messages), SimpleComponent::of);
 	}
 
 	/**
@@ -188,12 +208,180 @@ public final class ChatPaginator {
 	 * @return
 	 */
 	public ChatPaginator setPages(Collection<SimpleComponent> components) {
-		this.pages.clear();
-		this.pages.putAll(Common.fillPages(this.linesPerPage, components));
+		return this.setPages(new ArrayList<>(components), Function.identity());
+	}
+
+	/**
+	 * Set the lines, each turned into a component by the renderer only when its page is viewed
+	 *
+	 * @param <T>
+	 * @param lines
+	 * @param renderer
+	 * @return
+	 */
+	public <T> ChatPaginator setPages(@NonNull List<T> lines, @NonNull Function<T, SimpleComponent> renderer) {
+		this.setContent(Content.of(lines, renderer));
+
+		return this;
+	}
+
+	/**
+	 * Load the lines asynchronously, each turned into a component by the renderer only when its page is viewed.
+	 *
+	 * Until loaded, senders are told {@link SimpleLocalization.Pages#LOADING} and shown the page they requested
+	 * once the lines are loaded.
+	 *
+	 * @param <T>
+	 * @param lines called asynchronously, must not call the Bukkit API
+	 * @param renderer
+	 * @return
+	 */
+	public <T> ChatPaginator setPagesAsync(@NonNull Supplier<List<T>> lines, @NonNull Function<T, SimpleComponent> renderer) {
+		final Content loading = Content.loading();
+
+		this.setContent(loading);
+
+		Common.runAsync(() -> {
+			Content loaded;
+
+			try {
+				loaded = Content.of(lines.get(), renderer);
+
+			} catch (final Throwable t) {
+				Common.error(t, "Error loading lines for pages");
+
+				loaded = Content.EMPTY;
+			}
+
+			final Content finalLoaded = loaded;
+
+			Common.runLater(() -> {
+
+				// Lines were set again while loading
+				if (this.content != loading)
+					return;
+
+				this.setContent(finalLoaded);
+				this.sendWaiting();
+			});
+		});
 
 		return this;
 	}
 
+	/*
+	 * Replace lines and forget created pages
+	 */
+	private synchronized void setContent(Content content) {
+		this.content = content;
+		this.createdPages.clear();
+	}
+
+	/*
+	 * Show pages to senders who requested them while loading
+	 */
+	private void sendWaiting() {
+		final Map<CommandSender, Integer> waiting;
+
+		synchronized (this.waiting) {
+			waiting = new LinkedHashMap<>(this.waiting);
+
+			this.waiting.clear();
+		}
+
+		for (final Map.Entry<CommandSender, Integer> entry : waiting.entrySet()) {
+			final CommandSender sender = entry.getKey();
+
+			// Skip players who left or opened other pages meanwhile
+			if (sender instanceof Player) {
+				final Player player = (Player) sender;
+
+				if (!player.isOnline() || !player.hasMetadata(getPageNbtTag()) || player.getMetadata(getPageNbtTag()).get(0).value() != this)
+					continue;
+			}
+
+			this.send0(sender, entry.getValue());
+		}
+	}
+
+	/**
+	 * Return true if lines are being loaded asynchronously
+	 *
+	 * @return
+	 */
+	public boolean isLoading() {
+		return this.content.loading;
+	}
+
+	/**
+	 * Return the amount of pages with lines
+	 *
+	 * @return
+	 */
+	public int getPageCount() {
+		return this.getPageCount(this.content);
+	}
+
+	/*
+	 * Return the amount of pages for the given lines
+	 */
+	private int getPageCount(Content content) {
+		return (content.size + this.linesPerPage - 1) / this.linesPerPage;
+	}
+
+	/**
+	 * Return lines on the given page starting from 0, creating them if needed, or null if there is no such page
+	 *
+	 * @param page
+	 * @return
+	 */
+	public synchronized List<SimpleComponent> getPage(int page) {
+		final Content content = this.content;
+
+		if (page < 0 || page >= this.getPageCount(content))
+			return null;
+
+		List<SimpleComponent> lines = this.createdPages.get(page);
+
+		if (lines == null) {
+			final int from = page * this.linesPerPage;
+			final int to = Math.min(content.size, from + this.linesPerPage);
+
+			lines = new ArrayList<>(to - from);
+
+			for (int index = from; index < to; index++)
+				lines.add(content.lines.apply(index));
+
+			this.createdPages.put(page, lines);
+		}
+
+		// Only keep pages around the viewed one
+		this.createdPages.keySet().removeIf(created -> Math.abs(created - page) > CACHED_PAGES_AROUND);
+
+		return lines;
+	}
+
+	/**
+	 * Return all pages with their lines, creating all lines
+	 *
+	 * @deprecated creates all lines at once, use {@link #getPage(int)} and {@link #getPageCount()}
+	 * @return
+	 */
+	@Deprecated
+	public Map<Integer, List<SimpleComponent>> getPages() {
+		final Map<Integer, List<SimpleComponent>> pages = new HashMap<>();
+		final int pageCount = this.getPageCount();
+
+		for (int page = 0; page < pageCount; page++)
+			pages.put(page, this.getPage(page));
+
+		// If there are no lines, at least allow the first page
+		if (pages.isEmpty())
+			pages.put(0, new ArrayList<>());
+
+		return pages;
+	}
+
 	/**
 	 * Set the content type
 	 *
@@ -242,18 +430,21 @@ public final class ChatPaginator {
 	}
 
 	private void send0(CommandSender sender, int page) {
-		if (sender instanceof Player) {
-			final Player player = (Player) sender;
+		if (this.isLoading()) {
+			if (sender instanceof Player)
+				this.setViewing((Player) sender);
 
-			// Remove old FoPages to prevent conflicts when two or more plugins use Foundation shaded
-			if (player.hasMetadata("FoPages")) {
-				final Plugin owningPlugin = player.getMetadata("FoPages").get(0).getOwningPlugin();
-
-				player.removeMetadata("FoPages", owningPlugin);
+			synchronized (this.waiting) {
+				this.waiting.put(sender, page);
 			}
 
-			player.setMetadata("FoPages", new FixedMetadataValue(SimplePlugin.getInstance(), SimplePlugin.getNamed()));
-			player.setMetadata(getPageNbtTag(), new FixedMetadataValue(SimplePlugin.getInstance(), this));
+			Common.tell(sender, SimpleLocalization.Pages.LOADING);
+
+			return;
+		}
+
+		if (sender instanceof Player) {
+			final Player player = this.setViewing((Player) sender);
 
 			player.chat("/#flp " + page);
 		}
@@ -262,18 +453,62 @@ public final class ChatPaginator {
 			for (final SimpleComponent component : this.header)
 				component.send(sender);
 
-			int amount = 1;
+			final Content content = this.content;
 
-			for (final List<SimpleComponent> components : this.pages.values())
-				for (final SimpleComponent component : components)
-					component.replace("{count}", amount++).send(sender);
+			for (int index = 0; index < content.size; index++)
+				content.lines.apply(index).replace("{count}", index + 1).send(sender);
 
 			for (final SimpleComponent component : this.footer)
 				component.send(sender);
 		}
 	}
 
+	/*
+	 * Mark the player as viewing these pages
+	 */
+	private Player setViewing(Player player) {
+
+		// Remove old FoPages to prevent conflicts when two or more plugins use Foundation shaded
+		if (player.hasMetadata("FoPages")) {
+			final Plugin owningPlugin = player.getMetadata("FoPages").get(0).getOwningPlugin();
+
+			player.removeMetadata("FoPages", owningPlugin);
+		}
+
+		player.setMetadata("FoPages", new FixedMetadataValue(SimplePlugin.getInstance(), SimplePlugin.getNamed()));
+		player.setMetadata(getPageNbtTag(), new FixedMetadataValue(SimplePlugin.getInstance(), this));
+
+		return player;
+	}
+
 	public static String getPageNbtTag() {
 		return "FoPages_" + SimplePlugin.getNamed();
 	}
+
+	/*
+	 * Lines to paginate, each created by index
+	 */
+	@RequiredArgsConstructor
+	private static final class Content {
+
+		/**
+		 * No lines
+		 */
+		private static final Content EMPTY = new Content(0, index -> null, false);
+
+		private final int size;
+		private final IntFunction<SimpleComponent> lines;
+		private final boolean loading;
+
+		/*
+		 * Return new content for lines being loaded, a new instance each time so finished loading can tell if it is still current
+		 */
+		static Content loading() {
+			return new Content(0, index -> null, true);
+		}
+
+		static <T> Content of(List<T> lines, Function<T, SimpleComponent> renderer) {
+			return new Content(lines.size(), index -> renderer.apply(lines.get(index)), false);
+		}
+	}
 }
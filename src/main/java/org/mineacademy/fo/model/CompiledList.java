@@ -0,0 +1,310 @@
+package org.mineacademy.fo.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import lombok.NonNull;
+
+/**
+ * Represents an immutable list of names such as commands or worlds, normalized once
+ * so that checking if an element is in the list or starts with any of its entries
+ * takes time proportional to the length of the element and does not allocate.
+ *
+ * Matching is the same as in {@link org.mineacademy.fo.Valid#isInList(String, Iterable)}
+ * and {@link org.mineacademy.fo.Valid#isInListStartsWith(String, Iterable)}, which use
+ * this class automatically when given one.
+ */
+public final class CompiledList implements Iterable<String> {
+
+	/**
+	 * The entries as given
+	 */
+	private final List<String> entries;
+
+	/**
+	 * Should one leading slash be ignored in entries and checked elements?
+	 */
+	private final boolean removeSlash;
+
+	/**
+	 * Can ASCII elements be lowercased character by character same as {@link String#toLowerCase()}
+	 * does in the default locale?
+	 */
+	private final boolean asciiLowercase;
+
+	/**
+	 * Open addressing table of entries folded for case insensitive equality and their hashes
+	 */
+	private final String[] foldedEntries;
+	private final int[] foldedHashes;
+
+	/**
+	 * Prefix tree of lowercased entries: sorted characters leading out of each node,
+	 * the nodes they lead to and whether an entry ends at the node
+	 */
+	private final char[][] keys;
+	private final int[][] targets;
+	private final boolean[] terminal;
+
+	private CompiledList(Iterable<?> entries, boolean removeSlash) {
+		final List<String> list = new ArrayList<>();
+
+		// Skip values YAML turned into other types, such as "yes" into a boolean
+		for (final Object entry : entries)
+			if (entry instanceof String)
+				list.add((String) entry);
+
+		final String language = Locale.getDefault().getLanguage();
+
+		this.entries = Collections.unmodifiableList(list);
+		this.removeSlash = removeSlash;
+		this.asciiLowercase = !"tr".equals(language) && !"az".equals(language) && !"lt".equals(language);
+
+		// Build the hash table
+		int capacity = 4;
+
+		while (capacity < list.size() * 2)
+			capacity <<= 1;
+
+		this.foldedEntries = new String[capacity];
+		this.foldedHashes = new int[capacity];
+
+		for (final String entry : list) {
+			final int offset = this.getOffset(entry);
+			final int hash = hashFolded(entry, offset);
+
+			if (this.indexOfFolded(entry, offset, hash) != -1)
+				continue;
+
+			final StringBuilder folded = new StringBuilder(entry.length() - offset);
+
+			for (int i = offset; i < entry.length(); i++)
+				folded.append(fold(entry.charAt(i)));
+
+			int index = hash & capacity - 1;
+
+			while (this.foldedEntries[index] != null)
+				index = index + 1 & capacity - 1;
+
+			this.foldedEntries[index] = folded.toString();
+			this.foldedHashes[index] = hash;
+		}
+
+		// Build the prefix tree
+		final List<Map<Character, Integer>> children = new ArrayList<>();
+		final List<Boolean> terminal = new ArrayList<>();
+
+		children.add(new HashMap<>());
+		terminal.add(false);
+
+		for (final String entry : list) {
+			final String lowercase = entry.toLowerCase();
+			int node = 0;
+
+			for (int i = this.getOffset(lowercase); i < lowercase.length(); i++) {
+				Integer next = children.get(node).get(lowercase.charAt(i));
+
+				if (next == null) {
+					next = children.size();
+
+					children.get(node).put(lowercase.charAt(i), next);
+					children.add(new HashMap<>());
+					terminal.add(false);
+				}
+
+				node = next;
+			}
+
+			terminal.set(node, true);
+		}
+
+		this.keys = new char[children.size()][];
+		this.targets = new int[children.size()][];
+		this.terminal = new boolean[children.size()];
+
+		for (int node = 0; node < children.size(); node++) {
+			final List<Character> sorted = new ArrayList<>(children.get(node).keySet());
+
+			Collections.sort(sorted);
+
+			this.keys[node] = new char[sorted.size()];
+			this.targets[node] = new int[sorted.size()];
+			this.terminal[node] = terminal.get(node);
+
+			for (int i = 0; i < sorted.size(); i++) {
+				this.keys[node][i] = sorted.get(i);
+				this.targets[node][i] = children.get(node).get(sorted.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Return true if any entry equals the element, case ignored
+	 *
+	 * @param element
+	 * @return
+	 */
+	public boolean contains(@NonNull String element) {
+		final int offset = this.getOffset(element);
+
+		return this.indexOfFolded(element, offset, hashFolded(element, offset)) != -1;
+	}
+
+	/**
+	 * Return true if the element starts with any entry, case ignored
+	 *
+	 * @param element
+	 * @return
+	 */
+	public boolean startsWithAny(@NonNull String element) {
+		if (this.terminal[0])
+			return true;
+
+		if (!this.asciiLowercase || !isAscii(element))
+			return this.startsWithAny0(element.toLowerCase(), false);
+
+		return this.startsWithAny0(element, true);
+	}
+
+	/*
+	 * Walk the prefix tree returning true when an entry ends
+	 */
+	private boolean startsWithAny0(String element, boolean lowercase) {
+		int node = 0;
+
+		for (int i = this.getOffset(element); i < element.length(); i++) {
+			char character = element.charAt(i);
+
+			if (lowercase && character >= 'A' && character <= 'Z')
+				character += 32;
+
+			final int index = Arrays.binarySearch(this.keys[node], character);
+
+			if (index < 0)
+				return false;
+
+			node = this.targets[node][index];
+
+			if (this.terminal[node])
+				return true;
+		}
+
+		return false;
+	}
+
+	/*
+	 * Return the index of the folded entry equal to the element from the offset, or -1
+	 */
+	private int indexOfFolded(String element, int offset, int hash) {
+		final int mask = this.foldedEntries.length - 1;
+
+		for (int index = hash & mask; this.foldedEntries[index] != null; index = index + 1 & mask)
+			if (this.foldedHashes[index] == hash && equalsFolded(this.foldedEntries[index], element, offset))
+				return index;
+
+		return -1;
+	}
+
+	/*
+	 * Return where the element starts, skipping a leading slash if enabled
+	 */
+	private int getOffset(String element) {
+		return this.removeSlash && element.startsWith("/") ? 1 : 0;
+	}
+
+	/**
+	 * Return the amount of entries
+	 *
+	 * @return
+	 */
+	public int size() {
+		return this.entries.size();
+	}
+
+	/**
+	 * Return true if there are no entries
+	 *
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return this.entries.isEmpty();
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		return this.entries.iterator();
+	}
+
+	@Override
+	public String toString() {
+		return "CompiledList" + this.entries;
+	}
+
+	// ------------------------------------------------------------------------------------------------------------
+	// Static
+	// ------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Compile the given entries, ignoring one leading slash in entries and checked elements
+	 * same as {@link org.mineacademy.fo.Valid#isInList(String, Iterable)}
+	 *
+	 * @param entries
+	 * @return
+	 */
+	public static CompiledList of(@NonNull Iterable<String> entries) {
+		return new CompiledList(entries, true);
+	}
+
+	/**
+	 * Compile the given entries
+	 *
+	 * @param entries
+	 * @param removeSlash should one leading slash be ignored in entries and checked elements?
+	 * @return
+	 */
+	public static CompiledList of(@NonNull Iterable<String> entries, boolean removeSlash) {
+		return new CompiledList(entries, removeSlash);
+	}
+
+	/*
+	 * Fold the character so that two characters are equal ignoring case as in
+	 * {@link String#equalsIgnoreCase(String)} exactly when they fold the same
+	 */
+	private static char fold(char character) {
+		return Character.toLowerCase(Character.toUpperCase(character));
+	}
+
+	private static int hashFolded(String element, int offset) {
+		int hash = 0;
+
+		for (int i = offset; i < element.length(); i++)
+			hash = 31 * hash + fold(element.charAt(i));
+
+		return hash ^ hash >>> 16;
+	}
+
+	private static boolean equalsFolded(String folded, String element, int offset) {
+		if (folded.length() != element.length() - offset)
+			return false;
+
+		for (int i = 0; i < folded.length(); i++)
+			if (folded.charAt(i) != fold(element.charAt(offset + i)))
+				return false;
+
+		return true;
+	}
+
+	private static boolean isAscii(String element) {
+		for (int i = 0; i < element.length(); i++)
+			if (element.charAt(i) >= 128)
+				return false;
+
+		return true;
+	}
+}
@@ -1,50 +1,70 @@
 package org.mineacademy.fo.model;
 
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
 import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
 
 import java.io.File;
-import java.nio.file.FileSystem;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.WatchEvent;
-import java.nio.file.WatchEvent.Kind;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
 
-import org.bukkit.scheduler.BukkitTask;
 import org.mineacademy.fo.Common;
 import org.mineacademy.fo.Valid;
-import org.mineacademy.fo.exception.FoException;
-import org.mineacademy.fo.plugin.SimplePlugin;
 
 import lombok.AccessLevel;
 import lombok.Getter;
 
+/**
+ * Watches a folder for file changes and calls {@link #onModified(File)} on the main thread.
+ *
+ * All watchers share a single background thread. Events are debounced per file so that
+ * editors writing a file in several steps only trigger one call, and files which content
+ * did not change are ignored.
+ */
 @Getter(value = AccessLevel.PROTECTED)
-public abstract class FolderWatcher extends Thread {
+public abstract class FolderWatcher {
 
 	/**
-	 * A list to help Foundation stop threads on reload
+	 * How long to wait after the last change of a file before we report it
 	 */
-	private static final Set<FolderWatcher> activeThreads = new HashSet<>();
+	private static final long DEBOUNCE_MILLIS = 500;
 
 	/**
-	 * Stop all active threads
+	 * How long the watching thread waits for changes at most, before checking for newly registered folders
 	 */
-	public static void stopThreads() {
-		for (final FolderWatcher thread : activeThreads)
-			thread.stopWatching();
+	private static final long MAX_POLL_MILLIS = 1_000;
 
-		activeThreads.clear();
-	}
+	/**
+	 * The shared thread watching all folders, created when the first watcher is registered
+	 */
+	private static WatcherThread watcherThread;
 
 	/**
-	 * Workaround for duplicated values in the loop
+	 * Stop all active watchers and the shared watching thread
 	 */
-	private final Map<String, BukkitTask> scheduledUpdates = new HashMap<>();
+	public static synchronized void stopThreads() {
+		if (watcherThread != null) {
+			watcherThread.shutdown();
+
+			watcherThread = null;
+		}
+	}
 
 	/**
 	 * The folder that is being watched
@@ -52,10 +72,10 @@ public abstract class FolderWatcher extends Thread {
 	private final Path folder;
 
 	/**
-	 * A one-way flag used to stop the thread while loop deadlock
+	 * A one-way flag indicating if we are still reporting changes
 	 */
 	@Getter
-	private boolean watching = true;
+	private volatile boolean watching = true;
 
 	/**
 	 * Start a new file watcher and start watching the given folder
@@ -66,104 +86,387 @@ public abstract class FolderWatcher extends Thread {
 		Valid.checkBoolean(folder.exists(), folder + " does not exists!");
 		Valid.checkBoolean(folder.isDirectory(), folder + " must be a directory!");
 
-		this.folder = folder.toPath();
-		this.start();
+		this.folder = folder.toPath().toAbsolutePath().normalize();
 
-		for (final FolderWatcher other : activeThreads)
-			//Valid.checkBoolean(other.folder.toString().equals(this.folder.toString()), "Tried to add a duplicate file watcher for " + this.folder);
-			if (other.folder.toString().equals(this.folder.toString()))
-				Common.warning("A duplicate file watcher for '" + folder.getPath() + "' was added. This is untested and may causes fatal issues!");
+		synchronized (FolderWatcher.class) {
+			if (watcherThread == null) {
+				watcherThread = new WatcherThread();
+				watcherThread.start();
+			}
 
-		activeThreads.add(this);
+			watcherThread.register(this);
+		}
 	}
 
 	/**
-	 * Starts watching the given folder and reporting changes
+	 * Called automatically when the file gets modified
+	 *
+	 * @param file
+	 */
+	protected abstract void onModified(File file);
+
+	/**
+	 * Stops listening for folder changes
 	 */
+	public void stopWatching() {
+		Valid.checkBoolean(this.watching, "The folder watcher for folder " + this.folder + " is no longer watching!");
+
+		this.watching = false;
+
+		synchronized (FolderWatcher.class) {
+			if (watcherThread != null)
+				watcherThread.unregister(this);
+		}
+	}
+
+	/**
+	 * Return true if we are still watching the folder.
+	 *
+	 * @deprecated watchers no longer extend {@link Thread} and share one thread, use {@link #isWatching()}
+	 * @return
+	 */
+	@Deprecated
+	public boolean isAlive() {
+		return this.watching;
+	}
+
+	/**
+	 * Return the name of the shared thread watching the folder.
+	 *
+	 * @deprecated watchers no longer extend {@link Thread} and share one thread
+	 * @return
+	 */
+	@Deprecated
+	public String getName() {
+		return "Foundation Folder Watcher";
+	}
+
+	/**
+	 * Stops listening for folder changes if still watching.
+	 *
+	 * @deprecated watchers no longer extend {@link Thread} and share one thread, use {@link #stopWatching()}
+	 */
+	@Deprecated
+	public void interrupt() {
+		if (this.watching)
+			this.stopWatching();
+	}
+
 	@Override
-	public final void run() {
-		final FileSystem fileSystem = this.folder.getFileSystem();
+	public boolean equals(Object obj) {
+		return obj instanceof FolderWatcher && ((FolderWatcher) obj).folder.toString().equals(this.folder.toString());
+	}
 
-		try (WatchService service = fileSystem.newWatchService()) {
-			final WatchKey registration = this.folder.register(service, ENTRY_MODIFY);
+	@Override
+	public int hashCode() {
+		return this.folder.toString().hashCode();
+	}
 
-			while (this.watching)
-				try {
-					final WatchKey watchKey = service.take();
+	/**
+	 * The single thread multiplexing all folder registrations
+	 */
+	private static final class WatcherThread extends Thread {
 
-					for (final WatchEvent<?> watchEvent : watchKey.pollEvents()) {
-						final Kind<?> kind = watchEvent.kind();
+		/**
+		 * The watch service all folders are registered with
+		 */
+		private final WatchService service;
 
-						if (kind == ENTRY_MODIFY) {
-							final Path watchEventPath = (Path) watchEvent.context();
-							final File fileModified = new File(SimplePlugin.getData(), watchEventPath.toFile().getName());
+		/**
+		 * Registered watchers by their folder key
+		 */
+		private final Map<WatchKey, List<FolderWatcher>> watchers = new HashMap<>();
 
-							final String path = fileModified.getAbsolutePath();
-							final BukkitTask pendingTask = this.scheduledUpdates.remove(path);
+		/**
+		 * Files with pending changes and the time we report them at
+		 */
+		private final Map<Path, Long> pendingChanges = new LinkedHashMap<>();
 
-							// Cancel the old task and reschedule
-							if (pendingTask != null)
-								pendingTask.cancel();
+		/**
+		 * Last known content checksums, used to ignore saves that change nothing
+		 */
+		private final Map<Path, Long> checksums = new HashMap<>();
 
-							// Force run sync -- reschedule five seconds later to ensure no further edits take place
-							this.scheduledUpdates.put(path, Common.runLater(10, () -> {
-								if (!this.watching)
-									return;
+		/**
+		 * Newly watched folders we have yet to compute checksums for on this thread
+		 */
+		private final Deque<Path> pendingChecksums = new ArrayDeque<>();
 
-								try {
-									this.onModified(fileModified);
+		/**
+		 * A one-way flag used to stop the thread loop
+		 */
+		private volatile boolean running = true;
 
-									this.scheduledUpdates.remove(path);
+		WatcherThread() {
+			super("Foundation Folder Watcher");
 
-								} catch (final Throwable t) {
-									Common.error(t, "Error in calling onModified when watching changed file " + fileModified);
-								}
-							}));
+			this.setDaemon(true);
 
-							break;
-						}
+			try {
+				this.service = FileSystems.getDefault().newWatchService();
+
+			} catch (final Exception ex) {
+				throw new IllegalStateException("Unable to create a watch service", ex);
+			}
+		}
+
+		/*
+		 * Register the watcher, reusing the key if the folder is already watched
+		 */
+		synchronized void register(FolderWatcher watcher) {
+			try {
+				final WatchKey key = watcher.folder.register(this.service, ENTRY_MODIFY, ENTRY_CREATE);
+				final List<FolderWatcher> registered = this.watchers.computeIfAbsent(key, k -> new ArrayList<>());
+
+				if (!registered.isEmpty())
+					Common.warning("A duplicate file watcher for '" + watcher.folder + "' was added. Both will be notified of changes.");
+
+				else
+					this.pendingChecksums.add(watcher.folder);
+
+				registered.add(watcher);
+
+			} catch (final Throwable t) {
+				Common.error(t, "Error registering folder watcher for folder " + watcher.folder);
+			}
+		}
+
+		/*
+		 * Remove the watcher and stop watching the folder if nobody else watches it
+		 */
+		synchronized void unregister(FolderWatcher watcher) {
+			for (final Iterator<Map.Entry<WatchKey, List<FolderWatcher>>> it = this.watchers.entrySet().iterator(); it.hasNext();) {
+				final Map.Entry<WatchKey, List<FolderWatcher>> entry = it.next();
+
+				if (entry.getValue().removeIf(other -> other == watcher) && entry.getValue().isEmpty()) {
+					entry.getKey().cancel();
+
+					it.remove();
+				}
+			}
+		}
+
+		/*
+		 * Stop all watchers and the thread
+		 */
+		void shutdown() {
+			final List<FolderWatcher> registered = new ArrayList<>();
+
+			synchronized (this) {
+				for (final List<FolderWatcher> list : this.watchers.values())
+					registered.addAll(list);
+
+				this.watchers.clear();
+				this.pendingChanges.clear();
+				this.pendingChecksums.clear();
+			}
+
+			for (final FolderWatcher watcher : registered)
+				watcher.watching = false;
+
+			this.running = false;
+
+			try {
+				this.service.close();
+
+			} catch (final Exception ex) {
+				// ignore
+			}
+		}
+
+		@Override
+		public void run() {
+			while (this.running)
+				try {
+					final WatchKey watchKey = this.service.poll(this.getPollTimeout(), TimeUnit.MILLISECONDS);
+
+					if (watchKey != null) {
+						this.queueChanges(watchKey);
+
+						if (!watchKey.reset())
+							this.unregisterKey(watchKey);
 					}
 
-					if (!watchKey.reset())
-						Common.error(new FoException("Failed to reset watch key! Restarting sync engine.."));
+					this.computePendingChecksums();
+					this.reportChanges();
+
+				} catch (final ClosedWatchServiceException | InterruptedException ex) {
+					break;
 
 				} catch (final Throwable t) {
-					Common.error(t, "Error in handling watching thread loop for folder " + this.getFolder());
+					Common.error(t, "Error in handling folder watching thread loop");
 				}
+		}
+
+		/*
+		 * Return how long to wait for new events until the nearest pending change is due
+		 */
+		private synchronized long getPollTimeout() {
+			if (!this.pendingChecksums.isEmpty())
+				return 1;
 
-			registration.cancel();
+			final long now = System.currentTimeMillis();
+			long timeout = Long.MAX_VALUE;
 
-		} catch (final Throwable t) {
-			Common.error(t, "Error in initializing watching thread loop for folder " + this.getFolder());
+			for (final long dueTime : this.pendingChanges.values())
+				timeout = Math.min(timeout, dueTime - now);
+
+			return Math.max(1, Math.min(timeout, MAX_POLL_MILLIS));
 		}
 
-	}
+		/*
+		 * Coalesce events of the key into pending changes, postponing files edited again
+		 */
+		private synchronized void queueChanges(WatchKey watchKey) {
+			final Path folder = (Path) watchKey.watchable();
+			final long dueTime = System.currentTimeMillis() + DEBOUNCE_MILLIS;
 
-	/**
-	 * Called automatically when the file gets modified
-	 *
-	 * @param file
-	 */
-	protected abstract void onModified(File file);
+			for (final WatchEvent<?> watchEvent : watchKey.pollEvents()) {
+				if (watchEvent.kind() == OVERFLOW)
+					continue;
 
-	/**
-	 * Stops listening for folder changes
-	 */
-	public void stopWatching() {
-		Valid.checkBoolean(this.watching, "The folder watcher for folder " + this.folder + " is no longer watching!");
+				final Path path = folder.resolve((Path) watchEvent.context());
 
-		this.watching = false;
+				// Move to the end so changes are reported in order
+				this.pendingChanges.remove(path);
+				this.pendingChanges.put(path, dueTime);
+			}
+		}
+
+		/*
+		 * Report due changes to their watchers on the main thread if the content changed
+		 */
+		private void reportChanges() {
+			final long now = System.currentTimeMillis();
+			final Map<File, List<FolderWatcher>> changes = new LinkedHashMap<>();
+
+			synchronized (this) {
+				for (final Iterator<Map.Entry<Path, Long>> it = this.pendingChanges.entrySet().iterator(); it.hasNext();) {
+					final Map.Entry<Path, Long> entry = it.next();
+					final Path path = entry.getKey();
+
+					if (entry.getValue() > now)
+						continue;
+
+					it.remove();
+
+					if (!Files.isRegularFile(path) || !this.updateChecksum(path))
+						continue;
+
+					final List<FolderWatcher> folderWatchers = this.getWatchers(path.getParent());
+
+					if (!folderWatchers.isEmpty())
+						changes.put(path.toFile(), folderWatchers);
+				}
+			}
+
+			if (!changes.isEmpty())
+				Common.runLater(() -> {
+					for (final Map.Entry<File, List<FolderWatcher>> entry : changes.entrySet())
+						for (final FolderWatcher watcher : entry.getValue()) {
+							if (!watcher.watching)
+								continue;
+
+							try {
+								watcher.onModified(entry.getKey());
+
+							} catch (final Throwable t) {
+								Common.error(t, "Error in calling onModified when watching changed file " + entry.getKey());
+							}
+						}
+				});
+		}
+
+		private synchronized void unregisterKey(WatchKey watchKey) {
+			final List<FolderWatcher> removed = this.watchers.remove(watchKey);
+
+			if (removed != null)
+				for (final FolderWatcher watcher : removed)
+					Common.warning("Folder " + watcher.folder + " is no longer accessible, stopped watching it for changes.");
+		}
+
+		private List<FolderWatcher> getWatchers(Path folder) {
+			final List<FolderWatcher> found = new ArrayList<>();
+
+			for (final Map.Entry<WatchKey, List<FolderWatcher>> entry : this.watchers.entrySet())
+				if (entry.getKey().watchable().equals(folder))
+					found.addAll(entry.getValue());
+
+			return found;
+		}
+
+		/*
+		 * Compute checksums for newly watched folders here instead of on the thread registering them,
+		 * which may be the main thread
+		 */
+		private void computePendingChecksums() {
+			while (true) {
+				final Path folder;
+
+				synchronized (this) {
+					folder = this.pendingChecksums.poll();
+				}
+
+				if (folder == null)
+					return;
+
+				this.computeChecksums(folder);
+			}
+		}
+
+		/*
+		 * Remember checksums of files in the folder so that the first save without changes is ignored,
+		 * skipping files changed since we started watching which are compared once they are due
+		 */
+		private void computeChecksums(Path folder) {
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+				for (final Path path : stream) {
+					final Long checksum = Files.isRegularFile(path) ? readChecksum(path) : null;
+
+					if (checksum != null)
+						synchronized (this) {
+							if (!this.pendingChanges.containsKey(path))
+								this.checksums.put(path, checksum);
+						}
+				}
+
+			} catch (final Throwable t) {
+				Common.error(t, "Error reading files in watched folder " + folder);
+			}
+		}
+
+		/*
+		 * Update the checksum of the file, returning true if it changed since last time
+		 */
+		private boolean updateChecksum(Path path) {
+			final Long checksum = readChecksum(path);
+
+			// File is being written or was removed, report it anyway
+			if (checksum == null) {
+				this.checksums.remove(path);
+
+				return true;
+			}
+
+			final Long oldChecksum = this.checksums.put(path, checksum);
+
+			return oldChecksum == null || !oldChecksum.equals(checksum);
+		}
+
+		/*
+		 * Return the checksum of the file content, or null if it cannot be read
+		 */
+		private static Long readChecksum(Path path) {
+			final CRC32 crc = new CRC32();
 
-		for (final BukkitTask task : this.scheduledUpdates.values())
 			try {
-				task.cancel();
-			} catch (final Exception ex) {
-				// ignore
+				crc.update(Files.readAllBytes(path));
+
+			} catch (final Throwable t) {
+				return null;
 			}
-	}
 
-	@Override
-	public boolean equals(Object obj) {
-		return obj instanceof FolderWatcher && ((FolderWatcher) obj).folder.toString().equals(this.folder.toString());
+			return crc.getValue();
+		}
 	}
-}
\ No newline at end of file
+}
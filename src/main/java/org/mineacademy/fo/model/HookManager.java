@@ -12,6 +12,8 @@ import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -27,11 +29,14 @@ import org.bukkit.block.Block;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
 import org.bukkit.permissions.Permissible;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.RegisteredServiceProvider;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.scheduler.BukkitTask;
 import org.mineacademy.fo.Common;
 import org.mineacademy.fo.MinecraftVersion;
 import org.mineacademy.fo.MinecraftVersion.V;
@@ -89,9 +94,13 @@ import io.lumine.mythic.core.mobs.ActiveMob;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
 import me.clip.placeholderapi.PlaceholderAPI;
 import me.clip.placeholderapi.PlaceholderAPIPlugin;
 import me.clip.placeholderapi.PlaceholderHook;
+import me.clip.placeholderapi.events.ExpansionRegisterEvent;
+import me.clip.placeholderapi.events.ExpansionUnregisterEvent;
+import me.clip.placeholderapi.events.ExpansionsLoadedEvent;
 import me.clip.placeholderapi.expansion.PlaceholderExpansion;
 import me.clip.placeholderapi.expansion.Relational;
 import net.citizensnpcs.api.CitizensAPI;
@@ -1517,6 +1526,11 @@ public final class HookManager {
 	public static void addPlaceholder(final String variable, final Function<Player, String> value) {
 		Variables.addExpansion(new SimpleExpansion() {
 
+			@Override
+			public boolean canReplace(String identifier) {
+				return variable.equalsIgnoreCase(identifier);
+			}
+
 			@Override
 			protected String onReplace(@NonNull CommandSender sender, String identifier) {
 				return variable.equalsIgnoreCase(identifier) && sender instanceof Player ? value.apply((Player) sender) : null;
@@ -2530,10 +2544,41 @@ class VaultHook {
 
 class PlaceholderAPIHook {
 
+	/**
+	 * How long a variable may take to replace on the main thread before we interrupt it
+	 */
+	private static final long MAIN_THREAD_TIMEOUT = 1_500;
+
+	/**
+	 * How long a variable may take to replace off the main thread before we interrupt it
+	 */
+	private static final long ASYNC_TIMEOUT = 4_000;
+
 	private final VariablesInjector injector;
 
+	/**
+	 * Refreshes the expansion map when expansions are registered or unregistered
+	 */
+	private final ExpansionListener listener;
+
+	/**
+	 * Interrupts variables which take too long to replace
+	 */
+	private final Watchdog watchdog;
+
+	/**
+	 * Registered expansions by their lowercased identifier, copied on write,
+	 * null when it must be loaded from PlaceholderAPI again
+	 */
+	private volatile Map<String, PlaceholderExpansion> expansions;
+
 	PlaceholderAPIHook() {
 		injector = new VariablesInjector();
+		listener = new ExpansionListener();
+		watchdog = new Watchdog();
+
+		watchdog.start();
+		Common.registerEvents(listener);
 
 		try {
 			injector.register();
@@ -2544,6 +2589,9 @@ class PlaceholderAPIHook {
 	}
 
 	final void unregister() {
+		HandlerList.unregisterAll(listener);
+		watchdog.shutdown();
+
 		if (injector != null)
 			try {
 				injector.unregister();
@@ -2568,90 +2616,144 @@ class PlaceholderAPIHook {
 		}
 	}
 
-	private String setPlaceholders(final OfflinePlayer player, String text) {
-		final String oldText = text;
-		final Map<String, PlaceholderExpansion> hooks = new HashMap<>();
+	/*
+	 * Replace %identifier_params% variables and then {identifier_params} variables
+	 * in the result, so that values and %variables% can contain {variables}
+	 */
+	private String setPlaceholders(@Nullable OfflinePlayer player, String text) {
+		if (text.indexOf('%') == -1 && text.indexOf('{') == -1)
+			return text;
 
-		// MineAcademy edit: Case insensitive
-		for (final PlaceholderExpansion expansion : PlaceholderAPIPlugin.getInstance().getLocalExpansionManager().getExpansions())
-			hooks.put(expansion.getIdentifier().toLowerCase(), expansion);
+		final Map<String, PlaceholderExpansion> hooks = this.getExpansions();
 
 		if (hooks.isEmpty())
 			return text;
 
-		text = this.setPlaceholders(player, oldText, text, hooks, Variables.VARIABLE_PATTERN.matcher(text));
-		text = this.setPlaceholders(player, oldText, text, hooks, Variables.BRACKET_VARIABLE_PATTERN.matcher(text));
+		text = this.setPlaceholders(player, text, '%', hooks);
+		text = this.setPlaceholders(player, text, '{', hooks);
 
 		return text;
 	}
 
-	private String setPlaceholders(@Nullable OfflinePlayer player, String oldText, String text, Map<String, PlaceholderExpansion> hooks, Matcher matcher) {
-		while (matcher.find()) {
-			String format = matcher.group(1);
-			boolean frontSpace = false;
-			boolean backSpace = false;
+	/*
+	 * Replace variables starting with the given character in one pass
+	 */
+	private String setPlaceholders(@Nullable OfflinePlayer player, String text, char opening, Map<String, PlaceholderExpansion> hooks) {
+		if (text.indexOf(opening) == -1)
+			return text;
 
-			if (format.startsWith("+")) {
-				frontSpace = true;
+		final StringBuilder builder = new StringBuilder(text.length() + 16);
+		Map<String, String> replaced = null;
+		int index = 0;
+		int appended = 0;
 
-				format = format.substring(1);
+		while (index < text.length()) {
+			final char character = text.charAt(index);
+			final int end = character == opening ? Variables.findVariableEnd(text, index) : -1;
+
+			if (end == -1) {
+				index++;
+
+				continue;
 			}
 
-			if (format.endsWith("+")) {
-				backSpace = true;
+			final String variable = text.substring(index, end + 1);
+			String value = replaced != null ? replaced.get(variable) : null;
 
-				format = format.substring(0, format.length() - 1);
+			if (value == null) {
+				value = this.replaceVariable(player, text, variable, hooks);
+
+				if (value != null) {
+					if (replaced == null)
+						replaced = new HashMap<>();
+
+					replaced.put(variable, value);
+				}
 			}
 
-			final int index = format.indexOf("_");
+			if (value != null) {
+				builder.append(text, appended, index).append(value);
+				appended = end + 1;
+			}
 
-			if (index <= 0 || index >= format.length())
-				continue;
+			index = end + 1;
+		}
 
-			final String identifier = format.substring(0, index).toLowerCase();
-			final String params = format.substring(index + 1);
-			final String finalFormat = format;
+		if (appended == 0)
+			return text;
 
-			if (hooks.containsKey(identifier)) {
+		return builder.append(text, appended, text.length()).toString();
+	}
+
+	/*
+	 * Return the replaced variable including its brackets, or null if no expansion handles it
+	 */
+	private String replaceVariable(@Nullable OfflinePlayer player, String text, String variable, Map<String, PlaceholderExpansion> hooks) {
+		String format = variable.substring(1, variable.length() - 1);
+		boolean frontSpace = false;
+		boolean backSpace = false;
 
-				// Wait 0.5 seconds then kill the thread to prevent server
-				// crashing on PlaceholderAPI variables hanging up on the main thread
-				final Thread currentThread = Thread.currentThread();
-				final boolean main = Bukkit.isPrimaryThread();
-				final BukkitTask watchDog = Common.runLater(main ? 30 : 80, () -> {
-					Common.logFramed(
-							"IMPORTANT: PREVENTED SERVER CRASH FROM PLACEHOLDERAPI",
-							"",
-							"Replacing PlaceholderAPI variable took over " + (main ? "1.5" : "4") + " sec",
-							"and was interrupted to prevent hanging the server.",
-							"",
-							"This is typically caused when a variable sends a",
-							"blocking HTTP request, such as checking stuff on",
-							"the Internet or resolving offline player names.",
-							"This is NOT an error in " + SimplePlugin.getNamed() + ", you need",
-							"to contact the placeholder expansion's author instead.",
-							"",
-							"Variable: " + finalFormat,
-							"Text: " + oldText,
-							"Player: " + (player == null ? "none" : player.getName()));
-
-					currentThread.stop();
-				});
-
-				String value = hooks.get(identifier).onRequest(player, params);
-
-				// Indicate we no longer have to kill the thread.
-				watchDog.cancel();
+		if (format.startsWith("+")) {
+			frontSpace = true;
 
-				if (value != null) {
-					value = Matcher.quoteReplacement(Common.colorize(value));
+			format = format.substring(1);
+		}
 
-					text = text.replaceAll(Pattern.quote(matcher.group()), value.isEmpty() ? "" : (frontSpace ? " " : "") + value + (backSpace ? " " : ""));
-				}
-			}
+		if (format.endsWith("+")) {
+			backSpace = true;
+
+			format = format.substring(0, format.length() - 1);
 		}
 
-		return text;
+		final int index = format.indexOf("_");
+
+		if (index <= 0 || index >= format.length())
+			return null;
+
+		// MineAcademy edit: Case insensitive
+		final PlaceholderExpansion expansion = hooks.get(format.substring(0, index).toLowerCase());
+
+		if (expansion == null)
+			return null;
+
+		final String params = format.substring(index + 1);
+		final boolean main = Bukkit.isPrimaryThread();
+		final Watchdog.Request request = watchdog.track(main ? MAIN_THREAD_TIMEOUT : ASYNC_TIMEOUT, player, format, text);
+		String value;
+
+		try {
+			value = expansion.onRequest(player, params);
+
+		} finally {
+
+			// Indicate we no longer have to kill the thread.
+			watchdog.untrack(request);
+		}
+
+		if (value == null)
+			return null;
+
+		value = Common.colorize(value);
+
+		return value.isEmpty() ? "" : (frontSpace ? " " : "") + value + (backSpace ? " " : "");
+	}
+
+	/*
+	 * Return registered expansions, loading them from PlaceholderAPI if they changed
+	 */
+	private Map<String, PlaceholderExpansion> getExpansions() {
+		Map<String, PlaceholderExpansion> expansions = this.expansions;
+
+		if (expansions == null) {
+			expansions = new HashMap<>();
+
+			for (final PlaceholderExpansion expansion : PlaceholderAPIPlugin.getInstance().getLocalExpansionManager().getExpansions())
+				expansions.put(expansion.getIdentifier().toLowerCase(), expansion);
+
+			this.expansions = expansions;
+		}
+
+		return expansions;
 	}
 
 	final String replaceRelationPlaceholders(final Player one, final Player two, final String message) {
@@ -2708,6 +2810,164 @@ class PlaceholderAPIHook {
 		return text;
 	}
 
+	/**
+	 * Keeps the expansion map in sync without loading it from PlaceholderAPI on every call
+	 */
+	private final class ExpansionListener implements Listener {
+
+		@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+		public void onRegister(ExpansionRegisterEvent event) {
+			final Map<String, PlaceholderExpansion> expansions = PlaceholderAPIHook.this.expansions;
+
+			if (expansions != null) {
+				final Map<String, PlaceholderExpansion> copy = new HashMap<>(expansions);
+
+				copy.put(event.getExpansion().getIdentifier().toLowerCase(), event.getExpansion());
+				PlaceholderAPIHook.this.expansions = copy;
+			}
+		}
+
+		@EventHandler(priority = EventPriority.MONITOR)
+		public void onUnregister(ExpansionUnregisterEvent event) {
+			final Map<String, PlaceholderExpansion> expansions = PlaceholderAPIHook.this.expansions;
+
+			if (expansions != null) {
+				final Map<String, PlaceholderExpansion> copy = new HashMap<>(expansions);
+
+				copy.remove(event.getExpansion().getIdentifier().toLowerCase(), event.getExpansion());
+				PlaceholderAPIHook.this.expansions = copy;
+			}
+		}
+
+		@EventHandler(priority = EventPriority.MONITOR)
+		public void onLoad(ExpansionsLoadedEvent event) {
+			PlaceholderAPIHook.this.expansions = null;
+		}
+	}
+
+	/**
+	 * A single thread checking deadlines of variables being replaced, stopping
+	 * threads stuck on variables that hang up, such as when sending blocking HTTP requests
+	 */
+	private static final class Watchdog extends Thread {
+
+		/**
+		 * Variables being replaced right now
+		 */
+		private final Set<Request> requests = ConcurrentHashMap.newKeySet();
+
+		/**
+		 * A one-way flag used to stop the thread loop
+		 */
+		private volatile boolean running = true;
+
+		Watchdog() {
+			super("Foundation PlaceholderAPI Watchdog");
+
+			this.setDaemon(true);
+		}
+
+		/*
+		 * Start tracking a variable replaced on the current thread
+		 */
+		Request track(long timeout, @Nullable OfflinePlayer player, String variable, String text) {
+			final Request request = new Request(Thread.currentThread(), System.currentTimeMillis() + timeout, timeout, player, variable, text);
+
+			this.requests.add(request);
+
+			return request;
+		}
+
+		/*
+		 * Stop tracking the variable, once done the watchdog will no longer stop the thread
+		 */
+		void untrack(Request request) {
+			request.state.compareAndSet(Request.RUNNING, Request.DONE);
+
+			this.requests.remove(request);
+		}
+
+		/*
+		 * Stop the thread loop
+		 */
+		void shutdown() {
+			this.running = false;
+			this.interrupt();
+		}
+
+		@Override
+		public void run() {
+			while (this.running)
+				try {
+					Thread.sleep(100);
+
+					final long now = System.currentTimeMillis();
+
+					for (final Request request : this.requests)
+						if (now > request.deadline && this.requests.remove(request) && request.state.compareAndSet(Request.RUNNING, Request.KILLED))
+							this.kill(request);
+
+				} catch (final InterruptedException ex) {
+					break;
+
+				} catch (final Throwable t) {
+					Common.error(t, "Error in PlaceholderAPI watchdog thread loop");
+				}
+		}
+
+		@SuppressWarnings("deprecation")
+		private void kill(Request request) {
+			boolean stopped = true;
+
+			try {
+				request.thread.stop();
+
+			} catch (final UnsupportedOperationException ex) {
+
+				// Java 20+ no longer supports stopping threads
+				request.thread.interrupt();
+
+				stopped = false;
+			}
+
+			Common.logFramed(
+					"IMPORTANT: PREVENTED SERVER CRASH FROM PLACEHOLDERAPI",
+					"",
+					"Replacing PlaceholderAPI variable took over " + (request.timeout / 1000D) + " sec",
+					stopped ? "and was interrupted to prevent hanging the server." : "and was interrupted, but Java 20+ cannot force stop it.",
+					"",
+					"This is typically caused when a variable sends a",
+					"blocking HTTP request, such as checking stuff on",
+					"the Internet or resolving offline player names.",
+					"This is NOT an error in " + SimplePlugin.getNamed() + ", you need",
+					"to contact the placeholder expansion's author instead.",
+					"",
+					"Variable: " + request.variable,
+					"Text: " + request.text,
+					"Player: " + (request.player == null ? "none" : request.player.getName()));
+		}
+
+		/**
+		 * A variable being replaced
+		 */
+		@RequiredArgsConstructor
+		private static final class Request {
+
+			/**
+			 * States of the request, it is either finished by the replacing thread or killed by the watchdog, never both
+			 */
+			private static final int RUNNING = 0, DONE = 1, KILLED = 2;
+
+			private final AtomicInteger state = new AtomicInteger(RUNNING);
+			private final Thread thread;
+			private final long deadline;
+			private final long timeout;
+			private final OfflinePlayer player;
+			private final String variable;
+			private final String text;
+		}
+	}
+
 	private class VariablesInjector extends PlaceholderExpansion {
 
 		/**
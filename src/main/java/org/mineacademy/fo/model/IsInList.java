@@ -2,6 +2,7 @@ package org.mineacademy.fo.model;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.regex.Pattern;
 
 import org.mineacademy.fo.Common;
@@ -27,6 +28,11 @@ public final class IsInList<T> implements Iterable<T> {
 	@Getter
 	private final StrictSet<T> list;
 
+	/**
+	 * The list as strings normalized for {@link #startsWith(Object)}
+	 */
+	private final CompiledList compiledList;
+
 	/**
 	 * Is everything matched?
 	 */
@@ -41,6 +47,13 @@ public final class IsInList<T> implements Iterable<T> {
 	private IsInList(final Iterable<T> list, boolean matchAll) {
 		this.list = new StrictSet<>(list);
 		this.matchAll = matchAll;
+
+		final List<String> strings = new ArrayList<>();
+
+		for (final T item : this.list)
+			strings.add(item.toString());
+
+		this.compiledList = CompiledList.of(strings, false);
 	}
 
 	/**
@@ -74,16 +87,7 @@ public final class IsInList<T> implements Iterable<T> {
 		if (this.matchAll)
 			return true;
 
-		final String evaluatedString = toEvaluateAgainst.toString().toLowerCase();
-
-		for (final T item : this.list) {
-			final String itemString = item.toString().toLowerCase();
-
-			if (evaluatedString.startsWith(itemString))
-				return true;
-		}
-
-		return false;
+		return this.compiledList.startsWithAny(toEvaluateAgainst.toString());
 	}
 
 	/**
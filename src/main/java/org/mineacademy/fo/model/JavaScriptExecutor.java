@@ -1,14 +1,19 @@
 package org.mineacademy.fo.model;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.annotation.Nullable;
-import javax.script.ScriptContext;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineFactory;
 import javax.script.ScriptEngineManager;
@@ -19,12 +24,14 @@ import org.bukkit.command.CommandSender;
 import org.mineacademy.fo.Common;
 import org.mineacademy.fo.ReflectionUtil;
 import org.mineacademy.fo.Valid;
+import org.mineacademy.fo.collection.LruCache;
 import org.mineacademy.fo.exception.EventHandledException;
 import org.mineacademy.fo.exception.FoScriptException;
 import org.mineacademy.fo.plugin.SimplePlugin;
 import org.mineacademy.fo.remain.Remain;
 
 import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
 
 /**
  * An engine that compiles and executes code on the fly.
@@ -34,11 +41,31 @@ import lombok.NonNull;
  */
 public final class JavaScriptExecutor {
 
+	/**
+	 * Maximum amount of compiled scripts to keep in memory, the least recently used is dropped when full
+	 */
+	private static final int SCRIPT_CACHE_LIMIT = 1_000;
+
+	/**
+	 * The pattern for player.hasPermission("...") calls we replace before running the code
+	 */
+	private static final Pattern HAS_PERMISSION_PATTERN = Pattern.compile("player\\.hasPermission\\(\"([^\"]+)\"\\)");
+
 	/**
 	 * The engine singleton
 	 */
 	private static final ScriptEngine engine;
 
+	/**
+	 * Scripts compiled once by their code
+	 */
+	private static final LruCache<String, CachedScript> scripts = new LruCache<>(SCRIPT_CACHE_LIMIT);
+
+	/**
+	 * Variables for executing scripts, one per thread so that scripts can run concurrently
+	 */
+	private static final ThreadLocal<Bindings> threadBindings = new ThreadLocal<>();
+
 	// Load the engine
 	static {
 		Thread.currentThread().setContextClassLoader(SimplePlugin.class.getClassLoader());
@@ -130,14 +157,15 @@ public final class JavaScriptExecutor {
 			replacements = new HashMap<>();
 
 		// Workaround hasPermission for null senders (i.e. Discord)
-		final Pattern pattern = Pattern.compile("player\\.hasPermission\\(\"([^\"]+)\"\\)");
-		final Matcher matcher = pattern.matcher(javascript);
+		if (javascript.contains("player.hasPermission(")) {
+			final Matcher matcher = HAS_PERMISSION_PATTERN.matcher(javascript);
 
-		while (matcher.find()) {
-			final String permission = matcher.group(1);
-			final boolean hasPermission = sender == null ? false : sender.hasPermission(permission);
+			while (matcher.find()) {
+				final String permission = matcher.group(1);
+				final boolean hasPermission = sender == null ? false : sender.hasPermission(permission);
 
-			javascript = javascript.replace(matcher.group(), String.valueOf(hasPermission));
+				javascript = javascript.replace(matcher.group(), String.valueOf(hasPermission));
+			}
 		}
 
 		// Find and replace all %syntax% and {syntax} variables since they were not replaced for Discord
@@ -198,29 +226,54 @@ public final class JavaScriptExecutor {
 	 * @throws FoScriptException
 	 */
 	public static Object run(@NonNull String javascript, Map<String, Object> replacements) throws FoScriptException {
-		synchronized (SimplePlugin.getInstance()) {
-			if (replacements == null)
-				replacements = new HashMap<>();
+		if (replacements == null)
+			replacements = new HashMap<>();
+
+		// Mohist is unsupported
+		if (Bukkit.getName().equals("Mohist"))
+			return null;
 
-			// Mohist is unsupported
-			if (Bukkit.getName().equals("Mohist"))
-				return null;
+		// Speed up
+		if (javascript.equals("true") || javascript.equals("!false") || javascript.equals("yes"))
+			return true;
 
-			// Speed up
-			if (javascript.equals("true") || javascript.equals("!false") || javascript.equals("yes"))
-				return true;
+		if (javascript.equals("false") || javascript.equals("!true") || javascript.equals("no"))
+			return false;
+
+		final CachedScript script = getScript(javascript);
 
-			if (javascript.equals("false") || javascript.equals("!true") || javascript.equals("no"))
-				return false;
+		// Evaluate simple conditions without the script engine
+		if (script.expression != null)
+			try {
+				final long startTime = System.nanoTime();
+				final Boolean result = script.expression.evaluate(replacements);
 
-			if (engine == null) {
-				Common.warning("Not running script because JavaScript library is missing (try installing mineacademy.org/nashorn). Script: " + javascript);
+				script.timings.record(System.nanoTime() - startTime);
+
+				return result;
 
-				return null;
+			} catch (final ScriptExpression.FallbackException ex) {
+				// Let the engine handle it
 			}
 
+		if (engine == null) {
+			Common.warning("Not running script because JavaScript library is missing (try installing mineacademy.org/nashorn). Script: " + javascript);
+
+			return null;
+		}
+
+		// Take the bindings of this thread, a script calling us again gets new ones
+		Bindings bindings = threadBindings.get();
+
+		if (bindings == null)
+			bindings = engine.createBindings();
+		else
+			threadBindings.set(null);
+
+		try {
+
 			// CLear past variables
-			engine.getBindings(ScriptContext.ENGINE_SCOPE).clear();
+			bindings.clear();
 
 			// Put new variables
 			for (final Map.Entry<String, Object> replacement : replacements.entrySet()) {
@@ -230,61 +283,197 @@ public final class JavaScriptExecutor {
 				final Object value = replacement.getValue();
 				Valid.checkNotNull(value, "Value can't be null in javascript variables for key " + key + ": " + replacements);
 
-				engine.put(key, value);
+				bindings.put(key, value);
 			}
 
+			final CompiledScript compiled = script.compile(javascript);
+			final long startTime = System.nanoTime();
+			final Object result;
+
 			try {
-				final Object result = engine.eval(javascript);
+				result = compiled != null ? compiled.eval(bindings) : engine.eval(javascript, bindings);
 
-				if (result instanceof String) {
-					String resultString = Common.stripColors((String) result).trim().toLowerCase();
+			} finally {
+				script.timings.record(System.nanoTime() - startTime);
+			}
 
-					if (resultString.startsWith("\"") || resultString.startsWith("'"))
-						resultString = resultString.substring(1);
+			if (result instanceof String) {
+				String resultString = Common.stripColors((String) result).trim().toLowerCase();
 
-					if (resultString.endsWith("\"") || resultString.endsWith("'"))
-						resultString = resultString.substring(0, resultString.length() - 1);
+				if (resultString.startsWith("\"") || resultString.startsWith("'"))
+					resultString = resultString.substring(1);
 
-					if (resultString.equals("true"))
-						return true;
+				if (resultString.endsWith("\"") || resultString.endsWith("'"))
+					resultString = resultString.substring(0, resultString.length() - 1);
 
-					else if (resultString.equals("false"))
-						return false;
-				}
+				if (resultString.equals("true"))
+					return true;
 
-				return result;
+				else if (resultString.equals("false"))
+					return false;
+			}
 
-			} catch (ClassCastException | ScriptException ex) {
+			return result;
 
-				// Special support for throwing exceptions in the JS code so that users
-				// can send messages to player directly if upstream supports that
-				final String cause = ex.getCause() != null ? ex.getCause().toString() : "";
+		} catch (ClassCastException | ScriptException ex) {
 
-				if (ex.getCause() != null && cause.contains("event handled")) {
-					final String[] errorMessageSplit = cause.contains("event handled: ") ? cause.split("event handled\\: ") : new String[0];
-					final Object sender = replacements.get("player");
+			// Special support for throwing exceptions in the JS code so that users
+			// can send messages to player directly if upstream supports that
+			final String cause = ex.getCause() != null ? ex.getCause().toString() : "";
 
-					if (errorMessageSplit.length == 2 && sender instanceof CommandSender)
-						Common.tellNoPrefix((CommandSender) sender, errorMessageSplit[1]);
+			if (ex.getCause() != null && cause.contains("event handled")) {
+				final String[] errorMessageSplit = cause.contains("event handled: ") ? cause.split("event handled\\: ") : new String[0];
+				final Object sender = replacements.get("player");
 
-					throw new EventHandledException(true);
-				}
+				if (errorMessageSplit.length == 2 && sender instanceof CommandSender)
+					Common.tellNoPrefix((CommandSender) sender, errorMessageSplit[1]);
 
-				final String message = ex.toString();
-				final List<String> errorMessage = Common.newList("Error parsing JavaScript!");
+				throw new EventHandledException(true);
+			}
 
-				if (message.contains("Cannot cast org.openjdk.nashorn.internal.runtime.Undefined to org.bukkit.Statistic"))
-					errorMessage.add("Your code uses invalid Statistic enum for your MC version. Do NOT report this, check Bukkit javadocs.");
+			final String message = ex.toString();
+			final List<String> errorMessage = Common.newList("Error parsing JavaScript!");
 
-				if (message.contains("ReferenceError:") && message.contains("is not defined"))
-					errorMessage.add("Invalid or unparsed variable!");
+			if (message.contains("Cannot cast org.openjdk.nashorn.internal.runtime.Undefined to org.bukkit.Statistic"))
+				errorMessage.add("Your code uses invalid Statistic enum for your MC version. Do NOT report this, check Bukkit javadocs.");
 
-				if (ex instanceof ScriptException)
-					errorMessage.add("Line: " + ((ScriptException) ex).getLineNumber() + ". Error: " + ex.getMessage());
-				else
-					errorMessage.add("Error: " + ex.getMessage());
-				throw new FoScriptException(String.join(" ", errorMessage), javascript, ex instanceof ScriptException ? ((ScriptException) ex).getLineNumber() : -1, ex);
-			}
+			if (message.contains("ReferenceError:") && message.contains("is not defined"))
+				errorMessage.add("Invalid or unparsed variable!");
+
+			if (ex instanceof ScriptException)
+				errorMessage.add("Line: " + ((ScriptException) ex).getLineNumber() + ". Error: " + ex.getMessage());
+			else
+				errorMessage.add("Error: " + ex.getMessage());
+			throw new FoScriptException(String.join(" ", errorMessage), javascript, ex instanceof ScriptException ? ((ScriptException) ex).getLineNumber() : -1, ex);
+
+		} finally {
+			threadBindings.set(bindings);
+		}
+	}
+
+	/*
+	 * Return the cached script, parsing simple conditions once
+	 */
+	private static CachedScript getScript(String javascript) {
+		return scripts.computeIfAbsent(javascript, code -> new CachedScript(ScriptExpression.compile(code)));
+	}
+
+	// ------------------------------------------------------------------------------------------------------------
+	// Timings
+	// ------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Return an immutable view of how long cached scripts took to execute, by their code
+	 *
+	 * @return
+	 */
+	public static Map<String, ScriptTimings> getTimings() {
+		final Map<String, ScriptTimings> timings = new HashMap<>();
+
+		for (final Map.Entry<String, CachedScript> entry : scripts.toMap().entrySet())
+			timings.put(entry.getKey(), entry.getValue().timings);
+
+		return Collections.unmodifiableMap(timings);
+	}
+
+	/**
+	 * Clear compiled scripts and their timings
+	 */
+	public static void clearCache() {
+		scripts.clear();
+	}
+
+	/**
+	 * A script parsed or compiled once
+	 */
+	@RequiredArgsConstructor
+	private static final class CachedScript {
+
+		/**
+		 * The condition evaluated without the engine, null if the script is not a simple condition
+		 */
+		private final ScriptExpression expression;
+
+		/**
+		 * The script compiled by the engine when first needed
+		 */
+		private volatile CompiledScript compiled;
+
+		private final ScriptTimings timings = new ScriptTimings();
+
+		/*
+		 * Compile the script by the engine once, returning null if the engine does not support compiling
+		 */
+		private CompiledScript compile(String javascript) throws ScriptException {
+			if (this.compiled == null && engine instanceof Compilable)
+				this.compiled = ((Compilable) engine).compile(javascript);
+
+			return this.compiled;
+		}
+	}
+
+	/**
+	 * Execution statistics of a script
+	 */
+	public static final class ScriptTimings {
+
+		private final LongAdder calls = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final AtomicLong maxNanos = new AtomicLong();
+
+		private ScriptTimings() {
+		}
+
+		/*
+		 * Record one execution
+		 */
+		private void record(long nanos) {
+			this.calls.increment();
+			this.totalNanos.add(nanos);
+			this.maxNanos.accumulateAndGet(nanos, Math::max);
+		}
+
+		/**
+		 * Return how many times the script was executed
+		 *
+		 * @return
+		 */
+		public long getCalls() {
+			return this.calls.sum();
+		}
+
+		/**
+		 * Return how long all executions took together, in nanoseconds
+		 *
+		 * @return
+		 */
+		public long getTotalNanos() {
+			return this.totalNanos.sum();
+		}
+
+		/**
+		 * Return how long the slowest execution took, in nanoseconds
+		 *
+		 * @return
+		 */
+		public long getMaxNanos() {
+			return this.maxNanos.get();
+		}
+
+		/**
+		 * Return how long an execution took on average, in nanoseconds
+		 *
+		 * @return
+		 */
+		public long getAverageNanos() {
+			final long calls = this.calls.sum();
+
+			return calls == 0 ? 0 : this.totalNanos.sum() / calls;
+		}
+
+		@Override
+		public String toString() {
+			return "ScriptTimings{calls=" + this.getCalls() + ", average=" + this.getAverageNanos() + "ns, max=" + this.getMaxNanos() + "ns}";
 		}
 	}
-}
\ No newline at end of file
+}
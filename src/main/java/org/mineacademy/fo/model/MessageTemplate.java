@@ -0,0 +1,400 @@
+package org.mineacademy.fo.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.bukkit.command.CommandSender;
+import org.mineacademy.fo.Common;
+import org.mineacademy.fo.SerializeUtil;
+import org.mineacademy.fo.SerializeUtil.Mode;
+import org.mineacademy.fo.collection.LruCache;
+import org.mineacademy.fo.settings.SimpleLocalization;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Represents a message parsed once into literal parts and {0} or {name}
+ * placeholder slots, so that sending it many times only fills the slots
+ * instead of replacing and colorizing the whole message again.
+ *
+ * Literal parts are colorized once when compiling and used by {@link #renderColorized(Object...)}
+ * and {@link #send(CommandSender, Object...)}. Values filled into slots are never colorized,
+ * so text from players keeps its color codes as typed.
+ *
+ * Static variables such as {server} or {plugin_name} are kept in literal parts and replaced
+ * when colorizing, {prefix} is kept and handled when sending the message.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public final class MessageTemplate {
+
+	/**
+	 * Maximum amount of templates stored in the cache for {@link #of(String)}, the least recently used is dropped when full
+	 */
+	private static final int CACHE_LIMIT = 5_000;
+
+	/**
+	 * Templates compiled through {@link #of(String)}
+	 */
+	private static final LruCache<String, MessageTemplate> cache = new LruCache<>(CACHE_LIMIT);
+
+	/**
+	 * Reusable builder for rendering, one per thread
+	 */
+	private static final ThreadLocal<StringBuilder> builder = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+	/**
+	 * The message this template was compiled from
+	 */
+	@Getter
+	private final String message;
+
+	/**
+	 * Literal parts, there is one more part than slots and parts
+	 * can be empty
+	 */
+	private final String[] parts;
+
+	/**
+	 * Literal parts colorized
+	 */
+	private final String[] colorizedParts;
+
+	/**
+	 * Placeholder slots placed between the parts
+	 */
+	private final Slot[] slots;
+
+	/**
+	 * Render this template replacing {0}, {1} etc. with the given values
+	 *
+	 * @param replacements
+	 * @return
+	 */
+	public String render(Object... replacements) {
+		final StringBuilder builder = MessageTemplate.builder.get();
+
+		builder.setLength(0);
+		this.renderParts(builder, this.parts, replacements);
+
+		return builder.toString();
+	}
+
+	/**
+	 * Render this template with colorized literal parts replacing {0}, {1} etc. with the given values,
+	 * which are not colorized
+	 *
+	 * @param replacements
+	 * @return
+	 */
+	public String renderColorized(Object... replacements) {
+		final StringBuilder builder = MessageTemplate.builder.get();
+
+		builder.setLength(0);
+		this.renderParts(builder, this.colorizedParts, replacements);
+
+		return builder.toString();
+	}
+
+	/**
+	 * Render this template replacing {key} with values from the given map,
+	 * keys can be written with or without brackets
+	 *
+	 * @param replacements
+	 * @return
+	 */
+	public String render(@NonNull Map<String, ?> replacements) {
+		final StringBuilder builder = MessageTemplate.builder.get();
+
+		builder.setLength(0);
+		this.renderParts(builder, this.parts, replacements);
+
+		return builder.toString();
+	}
+
+	/**
+	 * Render this template with colorized literal parts replacing {key} with values from the given map,
+	 * which are not colorized, keys can be written with or without brackets
+	 *
+	 * @param replacements
+	 * @return
+	 */
+	public String renderColorized(@NonNull Map<String, ?> replacements) {
+		final StringBuilder builder = MessageTemplate.builder.get();
+
+		builder.setLength(0);
+		this.renderParts(builder, this.colorizedParts, replacements);
+
+		return builder.toString();
+	}
+
+	/**
+	 * Append this template to the given builder replacing {0}, {1} etc. with the given values,
+	 * other placeholders are kept
+	 *
+	 * @param builder
+	 * @param replacements
+	 */
+	public void renderTo(@NonNull StringBuilder builder, Object... replacements) {
+		this.renderParts(builder, this.parts, replacements);
+	}
+
+	/*
+	 * Append the given literal parts and slots filled from the array
+	 */
+	private void renderParts(StringBuilder builder, String[] parts, Object[] replacements) {
+		for (int i = 0; i < this.slots.length; i++) {
+			final Slot slot = this.slots[i];
+
+			builder.append(parts[i]);
+
+			if (replacements != null && slot.index >= 0 && slot.index < replacements.length)
+				slot.append(builder, replacements[slot.index]);
+			else
+				builder.append(slot.raw);
+		}
+
+		builder.append(parts[this.slots.length]);
+	}
+
+	/**
+	 * Append this template to the given builder replacing {key} with values from the given map,
+	 * other placeholders are kept
+	 *
+	 * @param builder
+	 * @param replacements
+	 */
+	public void renderTo(@NonNull StringBuilder builder, @NonNull Map<String, ?> replacements) {
+		this.renderParts(builder, this.parts, replacements);
+	}
+
+	/*
+	 * Append the given literal parts and slots filled from the map
+	 */
+	private void renderParts(StringBuilder builder, String[] parts, Map<String, ?> replacements) {
+		for (int i = 0; i < this.slots.length; i++) {
+			final Slot slot = this.slots[i];
+
+			builder.append(parts[i]);
+
+			if (replacements.containsKey(slot.name))
+				slot.append(builder, replacements.get(slot.name));
+
+			else if (replacements.containsKey("{" + slot.name + "}"))
+				slot.append(builder, replacements.get("{" + slot.name + "}"));
+
+			else
+				builder.append(slot.raw);
+		}
+
+		builder.append(parts[this.slots.length]);
+	}
+
+	/**
+	 * Render this template with {player} set to the receiver's name and send it
+	 *
+	 * @param receiver
+	 * @param replacements
+	 */
+	public void send(@NonNull CommandSender receiver, Object... replacements) {
+		final StringBuilder builder = MessageTemplate.builder.get();
+
+		builder.setLength(0);
+
+		for (int i = 0; i < this.slots.length; i++) {
+			final Slot slot = this.slots[i];
+
+			builder.append(this.colorizedParts[i]);
+
+			if (replacements != null && slot.index >= 0 && slot.index < replacements.length)
+				slot.append(builder, replacements[slot.index]);
+
+			else if ("player".equals(slot.name))
+				slot.append(builder, Common.resolveSenderName(receiver));
+
+			else
+				builder.append(slot.raw);
+		}
+
+		builder.append(this.colorizedParts[this.slots.length]);
+
+		Common.tell(receiver, builder.toString());
+	}
+
+	/**
+	 * Return true if this template has no placeholders
+	 *
+	 * @return
+	 */
+	public boolean isStatic() {
+		return this.slots.length == 0;
+	}
+
+	@Override
+	public String toString() {
+		return "MessageTemplate{" + this.message + "}";
+	}
+
+	// ------------------------------------------------------------------------------------------------------------
+	// Static
+	// ------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Return a compiled template for the given message, compiling it only once
+	 * and caching it until {@link #clearCache()} is called on reload.
+	 *
+	 * @param message
+	 * @return
+	 */
+	public static MessageTemplate of(@NonNull String message) {
+		return cache.computeIfAbsent(message, MessageTemplate::compile);
+	}
+
+	/**
+	 * Clear cached templates, called automatically on reload
+	 */
+	public static void clearCache() {
+		cache.clear();
+	}
+
+	/**
+	 * Compile the given message into a new template, see {@link #of(String)}
+	 * to reuse compiled templates
+	 *
+	 * @param message
+	 * @return
+	 */
+	public static MessageTemplate compile(@NonNull String message) {
+		final List<String> parts = new ArrayList<>();
+		final List<Slot> slots = new ArrayList<>();
+		final StringBuilder literal = new StringBuilder();
+
+		int index = 0;
+
+		while (index < message.length()) {
+			final int start = message.indexOf('{', index);
+			final int end = start == -1 ? -1 : message.indexOf('}', start + 1);
+
+			if (start == -1 || end == -1) {
+				literal.append(message, index, message.length());
+
+				break;
+			}
+
+			final String raw = message.substring(start, end + 1);
+			final String variable = raw.substring(1, raw.length() - 1);
+
+			literal.append(message, index, start);
+
+			// Nested or static variables are kept in literal parts
+			if (variable.isEmpty() || variable.indexOf('{') != -1 || isStatic(variable)) {
+				if (variable.indexOf('{') != -1) {
+					literal.append('{');
+					index = start + 1;
+
+				} else {
+					literal.append(raw);
+					index = end + 1;
+				}
+
+				continue;
+			}
+
+			parts.add(literal.toString());
+			slots.add(new Slot(raw, variable));
+
+			literal.setLength(0);
+			index = end + 1;
+		}
+
+		parts.add(literal.toString());
+
+		final String[] colorizedParts = new String[parts.size()];
+
+		for (int i = 0; i < colorizedParts.length; i++)
+			colorizedParts[i] = Common.colorize(parts.get(i));
+
+		return new MessageTemplate(message, parts.toArray(new String[parts.size()]), colorizedParts, slots.toArray(new Slot[slots.size()]));
+	}
+
+	/*
+	 * Return true if the variable is replaced by colorizing or must be handled when sending
+	 */
+	private static boolean isStatic(String variable) {
+		return variable.charAt(0) == '#' || "server".equals(variable) || "plugin_name".equals(variable) || "plugin_version".equals(variable);
+	}
+
+	/**
+	 * Represents a placeholder in the template
+	 */
+	private static final class Slot {
+
+		/**
+		 * The placeholder as written in the message, used when no value is given
+		 */
+		private final String raw;
+
+		/**
+		 * The name without brackets and + signs
+		 */
+		private final String name;
+
+		/**
+		 * The index for {0} style placeholders, or -1
+		 */
+		private final int index;
+
+		/**
+		 * Should we add a space before or after non empty values? Written as {+name+}
+		 */
+		private final boolean frontSpace, backSpace;
+
+		Slot(String raw, String variable) {
+			this.raw = raw;
+			this.frontSpace = variable.length() > 1 && variable.startsWith("+");
+			this.backSpace = variable.length() > 1 && variable.endsWith("+");
+
+			this.name = variable.substring(this.frontSpace ? 1 : 0, variable.length() - (this.backSpace ? 1 : 0));
+			this.index = parseIndex(this.name);
+		}
+
+		/*
+		 * Append the given value serialized, without colorizing it
+		 */
+		void append(StringBuilder builder, Object value) {
+			Object serialized = SerializeUtil.serialize(Mode.YAML, value);
+
+			if (serialized == null)
+				serialized = SimpleLocalization.NONE;
+
+			final String text = serialized.toString();
+
+			if (text.isEmpty())
+				return;
+
+			final boolean spaces = (this.frontSpace || this.backSpace) && !Common.stripColors(text).isEmpty();
+
+			if (spaces && this.frontSpace)
+				builder.append(' ');
+
+			builder.append(text);
+
+			if (spaces && this.backSpace)
+				builder.append(' ');
+		}
+
+		private static int parseIndex(String name) {
+			if (name.isEmpty() || name.length() > 3)
+				return -1;
+
+			for (int i = 0; i < name.length(); i++)
+				if (!Character.isDigit(name.charAt(i)))
+					return -1;
+
+			return Integer.parseInt(name);
+		}
+	}
+}
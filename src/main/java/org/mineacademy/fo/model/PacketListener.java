@@ -2,10 +2,16 @@ package org.mineacademy.fo.model;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 
 import org.bukkit.entity.Player;
@@ -13,7 +19,9 @@ import org.mineacademy.fo.Common;
 import org.mineacademy.fo.MinecraftVersion;
 import org.mineacademy.fo.MinecraftVersion.V;
 import org.mineacademy.fo.ReflectionUtil;
+import org.mineacademy.fo.collection.LruCache;
 import org.mineacademy.fo.collection.SerializedMap;
+import org.mineacademy.fo.collection.expiringmap.NamedThreadFactory;
 import org.mineacademy.fo.exception.EventHandledException;
 import org.mineacademy.fo.exception.FoException;
 import org.mineacademy.fo.exception.RegexTimeoutException;
@@ -49,6 +57,46 @@ public abstract class PacketListener {
 	 */
 	private static Class<?> textComponentClass;
 
+	/**
+	 * Cached result for chat messages {@link SimpleChatAdapter#onMessage(String)} did not change
+	 */
+	private static final String UNCHANGED = new String("unchanged");
+
+	/**
+	 * How many threads run async routed listeners
+	 */
+	private static final int ROUTER_THREADS = 2;
+
+	/**
+	 * How many packets can wait for async routed listeners, further packets are dropped for them
+	 */
+	private static final int ROUTER_QUEUE_LIMIT = 10_000;
+
+	/**
+	 * Runs async routed listeners, its threads stop when idle
+	 */
+	private static final ThreadPoolExecutor routerExecutor = new ThreadPoolExecutor(ROUTER_THREADS, ROUTER_THREADS, 30, TimeUnit.SECONDS,
+			new ArrayBlockingQueue<>(ROUTER_QUEUE_LIMIT), new NamedThreadFactory("Foundation Packet Router %s"));
+
+	static {
+		routerExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Routes packets from one adapter per packet type to handlers added through {@link #addRoutedListener(PacketType, Consumer)},
+	 * async handlers get a copy of the packet
+	 */
+	private static final PacketRouter<PacketType, PacketEvent> router = new PacketRouter<>(routerExecutor,
+			event -> event.isServerPacket()
+					? PacketEvent.fromServer(event.getSource(), event.getPacket().deepClone(), event.getPlayer())
+					: PacketEvent.fromClient(event.getSource(), event.getPacket().deepClone(), event.getPlayer()),
+			(handler, throwable) -> Common.error(throwable, "Error handling packet " + handler.getKey() + " in " + handler.getName()));
+
+	/**
+	 * Packet types we registered an adapter for
+	 */
+	private static final Set<PacketType> routedTypes = new HashSet<>();
+
 	/**
 	 * Called automatically when you use \@AutoRegister, inject
 	 * your packet listeners here.
@@ -144,6 +192,89 @@ public abstract class PacketListener {
 		});
 	}
 
+	// ------------------------------------------------------------------------------------------------------------
+	// Routing
+	// ------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * A convenience method for listening to packets of the given type through a single adapter
+	 * shared by all routed listeners for that type, see {@link #addRoutedListener(ListenerPriority, PacketType, boolean, Consumer)}.
+	 *
+	 * @param type
+	 * @param consumer
+	 * @return
+	 */
+	protected PacketRouter.Handler<PacketEvent> addRoutedListener(final PacketType type, final Consumer<PacketEvent> consumer) {
+		return this.addRoutedListener(ListenerPriority.NORMAL, type, false, consumer);
+	}
+
+	/**
+	 * A convenience method for listening to packets of the given type through a single adapter
+	 * shared by all routed listeners for that type, with timings available from {@link #getRoutedHandlers()}.
+	 * <p>
+	 * The shared adapter listens at {@link ListenerPriority#NORMAL}, the priority here only orders routed listeners
+	 * among themselves. Use {@link #addSendingListener(ListenerPriority, PacketType, Consumer)} or
+	 * {@link #addReceivingListener(ListenerPriority, PacketType, Consumer)} to listen before or after other plugins.
+	 *
+	 * @param priority
+	 * @param type
+	 * @param async if true, the consumer is called off the packet thread with a copy of the packet, changing it has no effect
+	 * @param consumer
+	 * @return the handler, used to remove it or read its timings
+	 */
+	protected PacketRouter.Handler<PacketEvent> addRoutedListener(final ListenerPriority priority, final PacketType type, final boolean async, final Consumer<PacketEvent> consumer) {
+		final PacketRouter.Handler<PacketEvent> handler = router.register(type, this.getClass().getSimpleName() + " " + type.name(), priority.ordinal(), async, consumer);
+
+		synchronized (routedTypes) {
+			if (routedTypes.add(type))
+				this.addPacketListener(new SimpleAdapter(ListenerPriority.NORMAL, type) {
+
+					@Override
+					public void onPacketSending(final PacketEvent event) {
+						if (event.getPlayer() != null)
+							router.dispatch(type, event);
+					}
+
+					@Override
+					public void onPacketReceiving(final PacketEvent event) {
+						if (event.getPlayer() != null)
+							router.dispatch(type, event);
+					}
+				});
+		}
+
+		return handler;
+	}
+
+	/**
+	 * Remove a listener added through {@link #addRoutedListener(ListenerPriority, PacketType, boolean, Consumer)}
+	 *
+	 * @param handler
+	 */
+	protected void removeRoutedListener(final PacketRouter.Handler<PacketEvent> handler) {
+		router.unregister(handler);
+	}
+
+	/**
+	 * Return all routed listeners with their timings
+	 *
+	 * @return
+	 */
+	public static List<PacketRouter.Handler<PacketEvent>> getRoutedHandlers() {
+		return router.getHandlers();
+	}
+
+	/**
+	 * Remove all routed listeners, called automatically on reload since packet adapters are unregistered
+	 */
+	public static void clearRoutes() {
+		router.clear();
+
+		synchronized (routedTypes) {
+			routedTypes.clear();
+		}
+	}
+
 	/**
 	 * Sets the hoverable text in the server's menu
 	 * To use this, create a new addSendingListener for PacketType.Status.Server.SERVER_INFO
@@ -182,11 +313,51 @@ public abstract class PacketListener {
 	 */
 	protected abstract class SimpleChatAdapter extends SimpleAdapter {
 
+		/**
+		 * Maximum amount of cached results, the least recently used is dropped when full
+		 */
+		private static final int RESULT_CACHE_LIMIT = 1_000;
+
+		/**
+		 * Longer messages are not cached
+		 */
+		private static final int RESULT_CACHE_MAX_LENGTH = 4_096;
+
 		/**
 		 * Players being processed RIGHT NOW inside the method. Prevents dead loop.
 		 */
 		private final Set<String> processedPlayers = new HashSet<>();
 
+		/**
+		 * Original JSON - the rewritten JSON or {@link PacketListener#UNCHANGED}, see {@link #cacheResults()}
+		 */
+		private final LruCache<String, String> results = new LruCache<>(RESULT_CACHE_LIMIT);
+
+		/**
+		 * Lowercased literals from {@link #getRequiredLiterals()}, null if not read yet
+		 */
+		private volatile String[] requiredLiterals;
+
+		/**
+		 * Was the current message skipped because it has none of the required literals?
+		 */
+		private boolean prefiltered;
+
+		/**
+		 * The cached result for the current message, or null
+		 */
+		private String cachedResult;
+
+		/**
+		 * Packet statistics
+		 */
+		private final LongAdder packets = new LongAdder(), totalNanos = new LongAdder(), prefilteredPackets = new LongAdder(), cacheHits = new LongAdder();
+
+		/**
+		 * When statistics were last reset, in milliseconds
+		 */
+		private volatile long statisticsStart = System.currentTimeMillis();
+
 		/**
 		 * The event field for convenient calling in the overridable methods
 		 */
@@ -260,10 +431,32 @@ public abstract class PacketListener {
 
 			// Lock processing to one instance only to prevent another packet filtering
 			// in a filtering
+			final long startTime = System.nanoTime();
+
 			try {
 				this.processedPlayers.add(playerName);
 
 				final String legacyText = this.compileChatMessage(event);
+				final String originalJson = this.jsonMessage;
+
+				if (this.prefiltered) {
+					this.prefilteredPackets.increment();
+
+					return;
+				}
+
+				if (this.cachedResult != null) {
+					this.cacheHits.increment();
+
+					if (this.cachedResult != UNCHANGED) {
+						this.jsonMessage = this.cachedResult;
+
+						this.writeJsonMessage(event);
+					}
+
+					return;
+				}
+
 				String parsedText = legacyText;
 
 				try {
@@ -287,12 +480,78 @@ public abstract class PacketListener {
 				if (this.jsonMessage != null && !this.jsonMessage.isEmpty())
 					this.jsonMessage = this.onJsonMessage(this.jsonMessage);
 
-				if (!legacyText.equals(parsedText))
+				final boolean edited = !legacyText.equals(parsedText);
+
+				if (edited)
 					this.writeEditedMessage(parsedText, event);
 
+				if (this.isCaching() && originalJson != null && originalJson.length() < RESULT_CACHE_MAX_LENGTH)
+					this.results.put(originalJson, edited ? this.jsonMessage : UNCHANGED);
+
 			} finally {
 				this.processedPlayers.remove(this.player.getName());
+
+				this.packets.increment();
+				this.totalNanos.add(System.nanoTime() - startTime);
+			}
+		}
+
+		/*
+		 * Convert the JSON message to legacy text, unless it has none of the required literals
+		 * or its result is cached, returning an empty string then
+		 */
+		private String toLegacyText() {
+			final String[] literals = this.getLowercaseLiterals();
+
+			if (literals != null && !containsAny(this.jsonMessage.toLowerCase(Locale.ROOT), literals)) {
+				this.prefiltered = true;
+
+				return "";
+			}
+
+			if (this.isCaching()) {
+				this.cachedResult = this.results.get(this.jsonMessage);
+
+				if (this.cachedResult != null)
+					return "";
+			}
+
+			return Remain.toLegacyText(this.jsonMessage, false);
+		}
+
+		/*
+		 * Return required literals lowercased, or null if every message is checked
+		 */
+		private String[] getLowercaseLiterals() {
+			String[] literals = this.requiredLiterals;
+
+			if (literals == null) {
+				final Collection<String> declared = this.getRequiredLiterals();
+
+				if (declared == null)
+					literals = new String[0];
+
+				else {
+					final List<String> lowercase = new ArrayList<>();
+
+					for (final String literal : declared)
+						if (literal != null && !literal.isEmpty())
+							lowercase.add(literal.toLowerCase(Locale.ROOT));
+
+					literals = lowercase.toArray(new String[lowercase.size()]);
+				}
+
+				this.requiredLiterals = literals;
 			}
+
+			return literals.length == 0 ? null : literals;
+		}
+
+		/*
+		 * Are results cached for the current message?
+		 */
+		private boolean isCaching() {
+			return this.cacheResults() && !this.editJson();
 		}
 
 		/*
@@ -302,6 +561,8 @@ public abstract class PacketListener {
 
 			// Reset
 			this.jsonMessage = null;
+			this.prefiltered = false;
+			this.cachedResult = null;
 
 			// Components
 			if (MinecraftVersion.atLeast(V.v1_7)) {
@@ -318,7 +579,7 @@ public abstract class PacketListener {
 					}
 
 					if (this.jsonMessage != null)
-						return Remain.toLegacyText(this.jsonMessage, false);
+						return this.toLegacyText();
 
 					try {
 						final StructureModifier<Object> adventureModifier = event.getPacket().getModifier().withType(AdventureComponentConverter.getComponentClass());
@@ -404,7 +665,7 @@ public abstract class PacketListener {
 
 					// Catch errors from other plugins and silence them
 					try {
-						legacyText = Remain.toLegacyText(this.jsonMessage, false);
+						legacyText = this.toLegacyText();
 
 					} catch (final Throwable t) {
 						return "";
@@ -438,11 +699,18 @@ public abstract class PacketListener {
 		 * Writes the edited message as JSON format from the event
 		 */
 		private void writeEditedMessage(String message, PacketEvent event) {
-			final PacketContainer packet = event.getPacket();
-
 			if (!this.editJson())
 				this.jsonMessage = Remain.toJson(message);
 
+			this.writeJsonMessage(event);
+		}
+
+		/*
+		 * Writes the current JSON message to the packet
+		 */
+		private void writeJsonMessage(PacketEvent event) {
+			final PacketContainer packet = event.getPacket();
+
 			if (this.systemChat) {
 
 				// We first need to get rid of Adventure library adding an extra field, so that the string JSON will be used below
@@ -510,6 +778,107 @@ public abstract class PacketListener {
 		protected boolean editJson() {
 			return false;
 		}
+
+		/**
+		 * Return literals at least one of which must appear in a message for it to be checked,
+		 * or null (default) to check all messages.
+		 * <p>
+		 * Literals are searched case insensitive in the raw JSON before it is parsed, messages
+		 * without any are passed unchanged without calling {@link #onMessage(String)} or {@link #onJsonMessage(String)}.
+		 * Text split into differently formatted parts or escaped in JSON may not be found.
+		 * <p>
+		 * This is read once when the first message is checked.
+		 *
+		 * @return
+		 */
+		protected Collection<String> getRequiredLiterals() {
+			return null;
+		}
+
+		/**
+		 * Return true to remember how {@link #onMessage(String)} changed each message and apply
+		 * the same change next time without calling it or {@link #onJsonMessage(String)},
+		 * false (default) to call them for all messages.
+		 * <p>
+		 * Only return true if the result depends only on the message and not on the player or time,
+		 * and messages are not cancelled for some players only. Ignored when {@link #editJson()} is true.
+		 *
+		 * @return
+		 */
+		protected boolean cacheResults() {
+			return false;
+		}
+
+		/**
+		 * Return how many packets were checked since statistics were reset
+		 *
+		 * @return
+		 */
+		public long getPackets() {
+			return this.packets.sum();
+		}
+
+		/**
+		 * Return how many packets were checked per second since statistics were reset
+		 *
+		 * @return
+		 */
+		public double getPacketsPerSecond() {
+			final long elapsed = System.currentTimeMillis() - this.statisticsStart;
+
+			return elapsed <= 0 ? 0 : this.packets.sum() * 1000D / elapsed;
+		}
+
+		/**
+		 * Return how long checking a packet took on average, in nanoseconds
+		 *
+		 * @return
+		 */
+		public long getAverageNanos() {
+			final long packets = this.packets.sum();
+
+			return packets == 0 ? 0 : this.totalNanos.sum() / packets;
+		}
+
+		/**
+		 * Return how many packets were passed without parsing because they had none of the required literals
+		 *
+		 * @return
+		 */
+		public long getPrefilteredPackets() {
+			return this.prefilteredPackets.sum();
+		}
+
+		/**
+		 * Return how many packets used a cached result
+		 *
+		 * @return
+		 */
+		public long getCacheHits() {
+			return this.cacheHits.sum();
+		}
+
+		/**
+		 * Reset packet statistics
+		 */
+		public void resetStatistics() {
+			this.packets.reset();
+			this.totalNanos.reset();
+			this.prefilteredPackets.reset();
+			this.cacheHits.reset();
+			this.statisticsStart = System.currentTimeMillis();
+		}
+	}
+
+	/*
+	 * Return true if the text contains any of the literals
+	 */
+	private static boolean containsAny(String text, String[] literals) {
+		for (final String literal : literals)
+			if (text.contains(literal))
+				return true;
+
+		return false;
 	}
 
 	/**
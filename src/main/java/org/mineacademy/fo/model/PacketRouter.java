@@ -0,0 +1,351 @@
+package org.mineacademy.fo.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Routes events of many handlers by their key, such as packets by their type, so that one listener
+ * per key dispatches to all handlers for it from an array sorted by priority.
+ *
+ * Each handler records how many events it handled and how long it took. Errors from a handler are
+ * reported and do not stop other handlers. Async handlers get a copy of the event on the given executor,
+ * made when the first async handler is reached, so that they never read an event changed or reused
+ * after dispatching. Events the executor rejects are counted as dropped for the handler.
+ *
+ * This class does not depend on ProtocolLib, see {@link PacketListener} for routing packets.
+ *
+ * @param <K> the key, such as the packet type
+ * @param <E> the event, such as the packet event
+ */
+public final class PacketRouter<K, E> {
+
+	/**
+	 * Handlers for each key sorted by priority, replaced when handlers change
+	 */
+	private final Map<K, Handler<E>[]> routes = new ConcurrentHashMap<>();
+
+	/**
+	 * Runs async handlers
+	 */
+	private final Executor asyncExecutor;
+
+	/**
+	 * Copies events for async handlers
+	 */
+	private final UnaryOperator<E> asyncCopier;
+
+	/**
+	 * Reports errors from handlers
+	 */
+	private final BiConsumer<Handler<E>, Throwable> errorHandler;
+
+	/**
+	 * Create a new router running async handlers on the given executor with copies of events
+	 * and reporting handler errors to the given error handler
+	 *
+	 * @param asyncExecutor should be bounded, events it rejects are dropped
+	 * @param asyncCopier returns a copy of the event safe to read from another thread
+	 * @param errorHandler
+	 */
+	public PacketRouter(@NonNull Executor asyncExecutor, @NonNull UnaryOperator<E> asyncCopier, @NonNull BiConsumer<Handler<E>, Throwable> errorHandler) {
+		this.asyncExecutor = asyncExecutor;
+		this.asyncCopier = asyncCopier;
+		this.errorHandler = errorHandler;
+	}
+
+	/**
+	 * Add a handler for events with the given key. Handlers with lower priority are called first,
+	 * handlers with the same priority in the order they were added.
+	 *
+	 * @param key
+	 * @param name shown in timings
+	 * @param priority
+	 * @param async if true, the handler gets copies of events on the executor
+	 * @param consumer
+	 * @return the handler, used to remove it or read its timings
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized Handler<E> register(@NonNull K key, @NonNull String name, int priority, boolean async, @NonNull Consumer<E> consumer) {
+		final Handler<E> handler = new Handler<>(key, name, priority, async, consumer);
+		final Handler<E>[] current = this.routes.get(key);
+		final List<Handler<E>> handlers = current == null ? new ArrayList<>() : new ArrayList<>(Arrays.asList(current));
+
+		handlers.add(handler);
+		handlers.sort(Comparator.comparingInt(Handler::getPriority));
+
+		this.routes.put(key, handlers.toArray(new Handler[handlers.size()]));
+
+		return handler;
+	}
+
+	/**
+	 * Remove the given handler
+	 *
+	 * @param handler
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized void unregister(@NonNull Handler<E> handler) {
+		final K key = (K) handler.key;
+		final Handler<E>[] current = this.routes.get(key);
+
+		if (current == null)
+			return;
+
+		final List<Handler<E>> handlers = new ArrayList<>(Arrays.asList(current));
+
+		if (!handlers.remove(handler))
+			return;
+
+		if (handlers.isEmpty())
+			this.routes.remove(key);
+		else
+			this.routes.put(key, handlers.toArray(new Handler[handlers.size()]));
+	}
+
+	/**
+	 * Return true if there are handlers for the given key
+	 *
+	 * @param key
+	 * @return
+	 */
+	public boolean isRouted(K key) {
+		return this.routes.containsKey(key);
+	}
+
+	/**
+	 * Pass the event to all handlers for its key
+	 *
+	 * @param key
+	 * @param event
+	 */
+	public void dispatch(K key, E event) {
+		final Handler<E>[] handlers = this.routes.get(key);
+
+		if (handlers == null)
+			return;
+
+		E copy = null;
+
+		for (final Handler<E> handler : handlers)
+			if (handler.async) {
+				try {
+					if (copy == null)
+						copy = this.asyncCopier.apply(event);
+
+				} catch (final Throwable t) {
+					handler.errors.increment();
+
+					this.errorHandler.accept(handler, t);
+					continue;
+				}
+
+				final E asyncEvent = copy;
+
+				try {
+					this.asyncExecutor.execute(() -> this.handle(handler, asyncEvent));
+
+				} catch (final RejectedExecutionException ex) {
+					handler.dropped.increment();
+				}
+
+			} else
+				this.handle(handler, event);
+	}
+
+	/*
+	 * Pass the event to the handler, recording how long it took
+	 */
+	private void handle(Handler<E> handler, E event) {
+		final long startTime = System.nanoTime();
+
+		try {
+			handler.consumer.accept(event);
+
+		} catch (final Throwable t) {
+			handler.errors.increment();
+
+			this.errorHandler.accept(handler, t);
+
+		} finally {
+			handler.record(System.nanoTime() - startTime);
+		}
+	}
+
+	/**
+	 * Return all handlers for all keys
+	 *
+	 * @return
+	 */
+	public List<Handler<E>> getHandlers() {
+		final List<Handler<E>> handlers = new ArrayList<>();
+
+		for (final Handler<E>[] keyHandlers : this.routes.values())
+			Collections.addAll(handlers, keyHandlers);
+
+		return handlers;
+	}
+
+	/**
+	 * Return handlers for the given key in the order they are called
+	 *
+	 * @param key
+	 * @return
+	 */
+	public List<Handler<E>> getHandlers(K key) {
+		final Handler<E>[] handlers = this.routes.get(key);
+
+		return handlers == null ? new ArrayList<>() : new ArrayList<>(Arrays.asList(handlers));
+	}
+
+	/**
+	 * Remove all handlers
+	 */
+	public synchronized void clear() {
+		this.routes.clear();
+	}
+
+	/**
+	 * Represents a handler with its timings
+	 *
+	 * @param <E>
+	 */
+	public static final class Handler<E> {
+
+		/**
+		 * The key this handler is registered for
+		 */
+		@Getter
+		private final Object key;
+
+		/**
+		 * The name shown in timings
+		 */
+		@Getter
+		private final String name;
+
+		/**
+		 * Handlers with lower priority are called first
+		 */
+		@Getter
+		private final int priority;
+
+		/**
+		 * Does this handler get events on the executor?
+		 */
+		@Getter
+		private final boolean async;
+
+		private final Consumer<E> consumer;
+
+		private final LongAdder calls = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final AtomicLong maxNanos = new AtomicLong();
+		private final LongAdder errors = new LongAdder();
+		private final LongAdder dropped = new LongAdder();
+
+		private Handler(Object key, String name, int priority, boolean async, Consumer<E> consumer) {
+			this.key = key;
+			this.name = name;
+			this.priority = priority;
+			this.async = async;
+			this.consumer = consumer;
+		}
+
+		/*
+		 * Record one event
+		 */
+		private void record(long nanos) {
+			this.calls.increment();
+			this.totalNanos.add(nanos);
+			this.maxNanos.accumulateAndGet(nanos, Math::max);
+		}
+
+		/**
+		 * Return how many events this handler got
+		 *
+		 * @return
+		 */
+		public long getCalls() {
+			return this.calls.sum();
+		}
+
+		/**
+		 * Return how long handling all events took together, in nanoseconds
+		 *
+		 * @return
+		 */
+		public long getTotalNanos() {
+			return this.totalNanos.sum();
+		}
+
+		/**
+		 * Return how long handling the slowest event took, in nanoseconds
+		 *
+		 * @return
+		 */
+		public long getMaxNanos() {
+			return this.maxNanos.get();
+		}
+
+		/**
+		 * Return how long handling an event took on average, in nanoseconds
+		 *
+		 * @return
+		 */
+		public long getAverageNanos() {
+			final long calls = this.calls.sum();
+
+			return calls == 0 ? 0 : this.totalNanos.sum() / calls;
+		}
+
+		/**
+		 * Return how many events this handler failed to handle
+		 *
+		 * @return
+		 */
+		public long getErrors() {
+			return this.errors.sum();
+		}
+
+		/**
+		 * Return how many events this async handler did not get because the executor was full
+		 *
+		 * @return
+		 */
+		public long getDropped() {
+			return this.dropped.sum();
+		}
+
+		/**
+		 * Reset timings
+		 */
+		public void resetTimings() {
+			this.calls.reset();
+			this.totalNanos.reset();
+			this.maxNanos.set(0);
+			this.errors.reset();
+			this.dropped.reset();
+		}
+
+		@Override
+		public String toString() {
+			return "Handler{" + this.name + ", key=" + this.key + ", priority=" + this.priority + (this.async ? ", async" : "")
+					+ ", calls=" + this.getCalls() + ", average=" + this.getAverageNanos() + "ns, max=" + this.getMaxNanos() + "ns, errors=" + this.getErrors() + (this.async ? ", dropped=" + this.getDropped() : "") + "}";
+		}
+	}
+}
@@ -0,0 +1,347 @@
+package org.mineacademy.fo.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.bukkit.entity.Player;
+import org.mineacademy.fo.Common;
+import org.mineacademy.fo.Valid;
+import org.mineacademy.fo.remain.Remain;
+
+import lombok.NonNull;
+
+/**
+ * Resolves variables used in registered messages for all online players once per period
+ * and stores them in a snapshot, so that scoreboards, tab lists or boss bars rendering
+ * the same messages for many viewers read the values instead of replacing variables
+ * for each viewer at render time.
+ *
+ * Variables marked as thread-safe are resolved in parallel off the main thread, others
+ * are resolved in one batch on the main thread.
+ *
+ * Messages not registered or players not resolved yet fall back to {@link Variables#replace(String, org.bukkit.command.CommandSender)}.
+ */
+public final class PlaceholderResolver {
+
+	/**
+	 * Registered messages parsed into literal parts and variables
+	 */
+	private static final Map<String, ParsedMessage> messages = new ConcurrentHashMap<>();
+
+	/**
+	 * Variable names or PlaceholderAPI identifiers safe to resolve off the main thread, lowercased
+	 */
+	private static final Set<String> threadSafe = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Player unique id - [Variable as written in the message - Replaced value]
+	 */
+	private static final Map<UUID, Map<String, String>> snapshots = new ConcurrentHashMap<>();
+
+	/**
+	 * Prevents starting a new asynchronous batch before the previous one finished
+	 */
+	private static final AtomicBoolean resolvingAsync = new AtomicBoolean();
+
+	/**
+	 * All variables used in registered messages
+	 */
+	private static volatile String[] variables = new String[0];
+
+	/**
+	 * The resolving task, null if not started
+	 */
+	private static SimpleTask task;
+
+	/**
+	 * How long the last main thread batch took, in nanoseconds
+	 */
+	private static volatile long lastBatchNanos;
+
+	// ------------------------------------------------------------------------------------------------------------
+	// Registering
+	// ------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Register a message so that its variables are resolved for all online players each period.
+	 * Variables are written as %variable% or {variable}, same as for {@link Variables}.
+	 *
+	 * @param message
+	 */
+	public static void register(@NonNull String message) {
+		if (!messages.containsKey(message) && messages.putIfAbsent(message, new ParsedMessage(message)) == null)
+			updateVariables();
+	}
+
+	/**
+	 * Stop resolving variables for the given message if they are not used in other messages
+	 *
+	 * @param message
+	 */
+	public static void unregister(@NonNull String message) {
+		if (messages.remove(message) != null)
+			updateVariables();
+	}
+
+	/**
+	 * Return true if the message is registered
+	 *
+	 * @param message
+	 * @return
+	 */
+	public static boolean isRegistered(String message) {
+		return messages.containsKey(message);
+	}
+
+	/**
+	 * Mark variables as safe to be resolved off the main thread. You can give a variable name such as
+	 * player_name or a PlaceholderAPI expansion identifier such as vault to mark all of its variables.
+	 *
+	 * Only do this for variables that do not call the Bukkit API in a non thread-safe way.
+	 *
+	 * @param variableOrIdentifier
+	 */
+	public static void addThreadSafe(@NonNull String variableOrIdentifier) {
+		threadSafe.add(variableOrIdentifier.toLowerCase());
+	}
+
+	/*
+	 * Collect variables from all registered messages
+	 */
+	private static synchronized void updateVariables() {
+		final Set<String> collected = new LinkedHashSet<>();
+
+		for (final ParsedMessage message : messages.values())
+			Collections.addAll(collected, message.variables);
+
+		variables = collected.toArray(new String[collected.size()]);
+	}
+
+	// ------------------------------------------------------------------------------------------------------------
+	// Resolving
+	// ------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Start resolving variables every given amount of ticks, restarting if already started
+	 *
+	 * @param periodTicks
+	 */
+	public static synchronized void start(int periodTicks) {
+		Valid.checkBoolean(periodTicks > 0, "Period must be at least one tick, got " + periodTicks);
+
+		if (task != null)
+			task.cancel();
+
+		task = Common.runTimer(periodTicks, PlaceholderResolver::resolve);
+	}
+
+	/**
+	 * Stop resolving variables and clear registered messages and values,
+	 * called automatically on reload
+	 */
+	public static synchronized void stop() {
+		if (task != null) {
+			try {
+				task.cancel();
+
+			} catch (final Throwable t) {
+				// Tasks are already cancelled on reload
+			}
+
+			task = null;
+		}
+
+		messages.clear();
+		snapshots.clear();
+		variables = new String[0];
+	}
+
+	/**
+	 * Return how long the last batch of variables resolved on the main thread took, in nanoseconds
+	 *
+	 * @return
+	 */
+	public static long getLastBatchNanos() {
+		return lastBatchNanos;
+	}
+
+	/*
+	 * Resolve variables for all online players, called on the main thread
+	 */
+	private static void resolve() {
+		final String[] variables = PlaceholderResolver.variables;
+		final List<Player> players = new ArrayList<>(Remain.getOnlinePlayers());
+		final Set<UUID> online = new HashSet<>();
+
+		for (final Player player : players)
+			online.add(player.getUniqueId());
+
+		snapshots.keySet().retainAll(online);
+
+		if (variables.length == 0 || players.isEmpty())
+			return;
+
+		final List<String> syncVariables = new ArrayList<>();
+		final List<String> asyncVariables = new ArrayList<>();
+
+		for (final String variable : variables)
+			if (isThreadSafe(variable))
+				asyncVariables.add(variable);
+			else
+				syncVariables.add(variable);
+
+		final long start = System.nanoTime();
+
+		for (final Player player : players) {
+			final Map<String, String> snapshot = snapshots.computeIfAbsent(player.getUniqueId(), uniqueId -> new ConcurrentHashMap<>());
+
+			for (final String variable : syncVariables)
+				snapshot.put(variable, Variables.replace(variable, player));
+		}
+
+		lastBatchNanos = System.nanoTime() - start;
+
+		if (!asyncVariables.isEmpty() && resolvingAsync.compareAndSet(false, true))
+			Common.runAsync(() -> {
+				try {
+					players.parallelStream().forEach(player -> {
+						final Map<String, String> snapshot = snapshots.get(player.getUniqueId());
+
+						if (snapshot != null && player.isOnline())
+							for (final String variable : asyncVariables)
+								snapshot.put(variable, Variables.replace(variable, player));
+					});
+
+				} catch (final Throwable t) {
+					Common.error(t, "Error resolving variables asynchronously");
+
+				} finally {
+					resolvingAsync.set(false);
+				}
+			});
+	}
+
+	/*
+	 * Return true if the variable name or its PlaceholderAPI identifier was marked thread-safe
+	 */
+	private static boolean isThreadSafe(String variable) {
+		if (threadSafe.isEmpty())
+			return false;
+
+		String name = variable.substring(1, variable.length() - 1).toLowerCase();
+
+		if (name.startsWith("+"))
+			name = name.substring(1);
+
+		if (name.endsWith("+"))
+			name = name.substring(0, name.length() - 1);
+
+		final int index = name.indexOf('_');
+
+		return threadSafe.contains(name) || index > 0 && threadSafe.contains(name.substring(0, index));
+	}
+
+	// ------------------------------------------------------------------------------------------------------------
+	// Rendering
+	// ------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Replace variables in the message from the last resolved values for the player, never blocking
+	 * on variables. Falls back to {@link Variables#replace(String, org.bukkit.command.CommandSender)}
+	 * if the message is not registered or its variables were not resolved for the player yet.
+	 *
+	 * @param message
+	 * @param player
+	 * @return
+	 */
+	public static String replace(@NonNull String message, @NonNull Player player) {
+		final ParsedMessage parsed = messages.get(message);
+		final Map<String, String> snapshot = parsed != null ? snapshots.get(player.getUniqueId()) : null;
+
+		if (snapshot != null) {
+			final String replaced = parsed.render(snapshot);
+
+			if (replaced != null)
+				return replaced;
+		}
+
+		return Variables.replace(message, player);
+	}
+
+	/**
+	 * A registered message split into colorized literal parts and variables
+	 */
+	private static final class ParsedMessage {
+
+		/**
+		 * Colorized literal parts, there is one more part than variables
+		 */
+		private final String[] parts;
+
+		/**
+		 * Variables as written in the message, placed between parts
+		 */
+		private final String[] variables;
+
+		/**
+		 * Length of the message, used to size the builder
+		 */
+		private final int length;
+
+		ParsedMessage(String message) {
+			final List<String> parts = new ArrayList<>();
+			final List<String> variables = new ArrayList<>();
+
+			int appended = 0;
+			int index = 0;
+
+			while (index < message.length()) {
+				final char character = message.charAt(index);
+				final int end = character == '%' || character == '{' ? Variables.findVariableEnd(message, index) : -1;
+
+				if (end == -1) {
+					index++;
+
+					continue;
+				}
+
+				parts.add(Common.colorize(message.substring(appended, index)));
+				variables.add(message.substring(index, end + 1));
+
+				appended = index = end + 1;
+			}
+
+			parts.add(Common.colorize(message.substring(appended)));
+
+			this.parts = parts.toArray(new String[parts.size()]);
+			this.variables = variables.toArray(new String[variables.size()]);
+			this.length = message.length();
+		}
+
+		/*
+		 * Render the message from resolved values, or return null if a value is missing
+		 */
+		String render(Map<String, String> snapshot) {
+			final StringBuilder builder = new StringBuilder(this.length + 16 * this.variables.length);
+
+			for (int i = 0; i < this.variables.length; i++) {
+				final String value = snapshot.get(this.variables[i]);
+
+				if (value == null)
+					return null;
+
+				builder.append(this.parts[i]).append(value);
+			}
+
+			return builder.append(this.parts[this.variables.length]).toString();
+		}
+	}
+}
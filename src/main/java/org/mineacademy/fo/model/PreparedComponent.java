@@ -0,0 +1,216 @@
+package org.mineacademy.fo.model;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.bukkit.command.CommandSender;
+import org.mineacademy.fo.Common;
+import org.mineacademy.fo.remain.Remain;
+
+import lombok.NonNull;
+import net.md_5.bungee.api.chat.BaseComponent;
+import net.md_5.bungee.api.chat.TextComponent;
+
+/**
+ * Represents an immutable chat component for messages sent many times, such as
+ * help pages or rules, which JSON and legacy text are only computed once.
+ *
+ * Sending checks the JSON size same as {@link SimpleComponent} and sends plain
+ * text instead if the JSON would kick the receiver,
+ * see {@link SimpleComponent#STRIP_OVERSIZED_COMPONENTS}.
+ */
+public final class PreparedComponent {
+
+	/**
+	 * The components, never changed
+	 */
+	private final BaseComponent[] components;
+
+	/**
+	 * The JSON, null until computed
+	 */
+	private volatile String json;
+
+	/**
+	 * The colorized legacy text, null until computed
+	 */
+	private volatile String legacy;
+
+	/**
+	 * How many times this was sent and how many times the JSON and legacy text were reused
+	 */
+	private final LongAdder sends = new LongAdder(), jsonHits = new LongAdder(), legacyHits = new LongAdder();
+
+	private PreparedComponent(BaseComponent[] components) {
+		this.components = components;
+	}
+
+	/**
+	 * Return a copy of the components
+	 *
+	 * @return
+	 */
+	public BaseComponent[] getComponents() {
+		final BaseComponent[] copy = new BaseComponent[this.components.length];
+
+		for (int i = 0; i < copy.length; i++)
+			copy[i] = this.components[i].duplicate();
+
+		return copy;
+	}
+
+	/**
+	 * Return the JSON, computed once
+	 *
+	 * @return
+	 */
+	public String getJson() {
+		String json = this.json;
+
+		if (json == null)
+			this.json = json = Remain.toJson(this.components);
+		else
+			this.jsonHits.increment();
+
+		return json;
+	}
+
+	/**
+	 * Return the colorized legacy text, computed once
+	 *
+	 * @return
+	 */
+	public String getLegacy() {
+		String legacy = this.legacy;
+
+		if (legacy == null)
+			this.legacy = legacy = Common.colorize(TextComponent.toLegacyText(this.components));
+		else
+			this.legacyHits.increment();
+
+		return legacy;
+	}
+
+	/**
+	 * Return true if there is no visible text
+	 *
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return Common.stripColors(this.getLegacy()).trim().isEmpty();
+	}
+
+	/**
+	 * Send this to the given receivers
+	 *
+	 * @param receivers
+	 */
+	public void send(final CommandSender... receivers) {
+		this.send(Arrays.asList(receivers));
+	}
+
+	/**
+	 * Send this to the given receivers
+	 *
+	 * @param <T>
+	 * @param receivers
+	 */
+	public <T extends CommandSender> void send(final Iterable<T> receivers) {
+		for (final CommandSender receiver : receivers)
+			this.send(receiver);
+	}
+
+	/**
+	 * Send this to the receiver, or plain text if the JSON would kick them
+	 *
+	 * @param receiver
+	 */
+	public void send(@NonNull final CommandSender receiver) {
+		this.sends.increment();
+
+		// Prevent clients being kicked out, so we just send plain message instead
+		if (SimpleComponent.STRIP_OVERSIZED_COMPONENTS && this.getJson().length() + 1 >= Short.MAX_VALUE) {
+			final String legacy = this.getLegacy();
+
+			if (legacy.length() + 1 >= Short.MAX_VALUE)
+				Common.warning("JSON Message to " + receiver.getName() + " was too large and could not be sent: '" + legacy + "'");
+
+			else {
+				final int oversize = this.getJson().length() + 1 - Short.MAX_VALUE;
+				Common.warning("JSON Message to " + receiver.getName() + " was " + oversize + " bytes oversize, removing interactive elements to avoid kick. Sending plain: '" + legacy + "'");
+
+				receiver.sendMessage(legacy);
+			}
+
+		} else
+			Remain.sendComponent(receiver, this.components);
+	}
+
+	/**
+	 * Return how many times this was sent
+	 *
+	 * @return
+	 */
+	public long getSends() {
+		return this.sends.sum();
+	}
+
+	/**
+	 * Return how many times the JSON was reused instead of serializing the components again
+	 *
+	 * @return
+	 */
+	public long getJsonHits() {
+		return this.jsonHits.sum();
+	}
+
+	/**
+	 * Return how many times the legacy text was reused instead of converting the components again
+	 *
+	 * @return
+	 */
+	public long getLegacyHits() {
+		return this.legacyHits.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "PreparedComponent{sends=" + this.getSends() + ", jsonHits=" + this.getJsonHits() + ", legacyHits=" + this.getLegacyHits() + ", legacy=" + this.getLegacy() + "}";
+	}
+
+	// ------------------------------------------------------------------------------------------------------------
+	// Static
+	// ------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Prepare a copy of the given components
+	 *
+	 * @param components
+	 * @return
+	 */
+	public static PreparedComponent of(@NonNull final BaseComponent... components) {
+		final BaseComponent[] copy = new BaseComponent[components.length];
+
+		for (int i = 0; i < copy.length; i++)
+			copy[i] = components[i].duplicate();
+
+		return new PreparedComponent(copy);
+	}
+
+	/**
+	 * Prepare the given message, colorizing it
+	 *
+	 * @param message
+	 * @return
+	 */
+	public static PreparedComponent of(@NonNull final String message) {
+		return new PreparedComponent(TextComponent.fromLegacyText(Common.colorize(message)));
+	}
+
+	/*
+	 * Prepare the component without copying it, it must not be changed afterwards
+	 */
+	static PreparedComponent wrap(final TextComponent component) {
+		return new PreparedComponent(new BaseComponent[] { component });
+	}
+}
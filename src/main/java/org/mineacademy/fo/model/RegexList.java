@@ -0,0 +1,887 @@
+package org.mineacademy.fo.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import org.mineacademy.fo.Common;
+import org.mineacademy.fo.Common.TimedCharSequence;
+
+import lombok.NonNull;
+
+/**
+ * Represents a list of regular expressions matched against messages together.
+ *
+ * Text that every match of a pattern must contain, such as "free" in "free\s*(diamonds|ranks)",
+ * is extracted when compiling and the text of all patterns is searched for in a single pass
+ * over the message. Only patterns whose text was found, or patterns we could not extract text
+ * from, are then run as full regular expressions. Results are the same as trying each pattern
+ * in order, but a message is no longer matched against thousands of rules one by one.
+ */
+public final class RegexList implements Iterable<Pattern> {
+
+	/**
+	 * How the text of a pattern is compared, depending on its case insensitive flags
+	 */
+	private static final int CASE_SENSITIVE = 0, ASCII_CASE_INSENSITIVE = 1, UNICODE_CASE_INSENSITIVE = 2;
+
+	/**
+	 * The patterns in the order they are tried
+	 */
+	private final Pattern[] patterns;
+
+	/**
+	 * True for patterns only run when their text is found in the message,
+	 * false for patterns always run
+	 */
+	private final boolean[] prefiltered;
+
+	/**
+	 * Automatons searching for the text of patterns, by {@link #CASE_SENSITIVE} etc., null if unused
+	 */
+	private final Automaton[] automatons = new Automaton[3];
+
+	/**
+	 * How many times each pattern was the first one matching a message
+	 */
+	private final AtomicLongArray hits;
+
+	/**
+	 * How many messages were checked and how many full regular expressions were run for them
+	 */
+	private final LongAdder checks = new LongAdder(), regexRuns = new LongAdder();
+
+	private RegexList(List<Pattern> patterns) {
+		this.patterns = patterns.toArray(new Pattern[patterns.size()]);
+		this.prefiltered = new boolean[this.patterns.length];
+		this.hits = new AtomicLongArray(this.patterns.length);
+
+		final List<List<String>> literals = new ArrayList<>();
+		final List<List<Integer>> owners = new ArrayList<>();
+
+		for (int mode = 0; mode < this.automatons.length; mode++) {
+			literals.add(new ArrayList<>());
+			owners.add(new ArrayList<>());
+		}
+
+		for (int index = 0; index < this.patterns.length; index++) {
+			final Pattern pattern = this.patterns[index];
+			final int mode = getCaseMode(pattern);
+			final List<String> required = LiteralParser.parse(pattern, mode);
+
+			if (required != null && !required.isEmpty()) {
+				this.prefiltered[index] = true;
+
+				for (final String literal : required) {
+					literals.get(mode).add(literal);
+					owners.get(mode).add(index);
+				}
+			}
+		}
+
+		for (int mode = 0; mode < this.automatons.length; mode++)
+			if (!literals.get(mode).isEmpty())
+				this.automatons[mode] = new Automaton(literals.get(mode), owners.get(mode), mode);
+	}
+
+	/**
+	 * Return true if any pattern matches the message, see {@link #findMatch(String)}
+	 *
+	 * @param message
+	 * @return
+	 */
+	public boolean isMatching(String message) {
+		return this.findMatch(message) != null;
+	}
+
+	/**
+	 * Return the first pattern that finds a match in the message, or null if none does.
+	 * The message is prepared with {@link Common#prepareRegexMessage(String)} first
+	 * and patterns are run as in {@link Common#regExMatch(Pattern, String)}
+	 *
+	 * @param message
+	 * @return
+	 */
+	public Pattern findMatch(@NonNull String message) {
+		if (this.patterns.length == 0)
+			return null;
+
+		final String prepared = Common.prepareRegexMessage(message);
+		final boolean[] candidates = this.findCandidates(prepared);
+
+		this.checks.increment();
+
+		for (int index = 0; index < this.patterns.length; index++) {
+			if (!candidates[index])
+				continue;
+
+			final Pattern pattern = this.patterns[index];
+
+			this.regexRuns.increment();
+
+			if (Common.regExMatch(pattern.matcher(TimedCharSequence.withSettingsLimit(prepared)))) {
+				this.hits.incrementAndGet(index);
+
+				return pattern;
+			}
+		}
+
+		return null;
+	}
+
+	/*
+	 * Return which patterns may match the prepared message by their index,
+	 * patterns without extracted text are always included
+	 */
+	boolean[] findCandidates(String prepared) {
+		final boolean[] candidates = new boolean[this.patterns.length];
+
+		for (final Automaton automaton : this.automatons)
+			if (automaton != null)
+				automaton.markCandidates(prepared, candidates);
+
+		for (int index = 0; index < candidates.length; index++)
+			if (!this.prefiltered[index])
+				candidates[index] = true;
+
+		return candidates;
+	}
+
+	/**
+	 * Return how many times each pattern was the first one matching a message,
+	 * in the order patterns are tried
+	 *
+	 * @return
+	 */
+	public Map<String, Long> getHits() {
+		final Map<String, Long> hits = new LinkedHashMap<>();
+
+		for (int index = 0; index < this.patterns.length; index++)
+			hits.put(this.patterns[index].pattern(), this.hits.get(index));
+
+		return hits;
+	}
+
+	/**
+	 * Return how many messages were checked
+	 *
+	 * @return
+	 */
+	public long getChecks() {
+		return this.checks.sum();
+	}
+
+	/**
+	 * Return how many full regular expressions were run for all checked messages,
+	 * without prefiltering this would be the amount of checks times the amount of patterns
+	 *
+	 * @return
+	 */
+	public long getRegexRuns() {
+		return this.regexRuns.sum();
+	}
+
+	/**
+	 * Return how many patterns are only run when their text is found in the message
+	 *
+	 * @return
+	 */
+	public int getPrefilteredCount() {
+		int count = 0;
+
+		for (final boolean prefiltered : this.prefiltered)
+			if (prefiltered)
+				count++;
+
+		return count;
+	}
+
+	/**
+	 * Reset hits and counters
+	 */
+	public void resetStatistics() {
+		for (int index = 0; index < this.patterns.length; index++)
+			this.hits.set(index, 0);
+
+		this.checks.reset();
+		this.regexRuns.reset();
+	}
+
+	/**
+	 * Return the amount of patterns
+	 *
+	 * @return
+	 */
+	public int size() {
+		return this.patterns.length;
+	}
+
+	/**
+	 * Return true if there are no patterns
+	 *
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return this.patterns.length == 0;
+	}
+
+	@Override
+	public Iterator<Pattern> iterator() {
+		return Collections.unmodifiableList(Arrays.asList(this.patterns)).iterator();
+	}
+
+	@Override
+	public String toString() {
+		return "RegexList{" + this.patterns.length + " patterns, " + this.getPrefilteredCount() + " prefiltered}";
+	}
+
+	// ------------------------------------------------------------------------------------------------------------
+	// Static
+	// ------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Compile the given regular expressions using {@link Common#compilePattern(String)}
+	 *
+	 * @param regexes
+	 * @return
+	 */
+	public static RegexList compile(@NonNull Iterable<String> regexes) {
+		final List<Pattern> patterns = new ArrayList<>();
+
+		for (final String regex : regexes)
+			patterns.add(Common.compilePattern(regex));
+
+		return new RegexList(patterns);
+	}
+
+	/**
+	 * Create a new list from already compiled patterns
+	 *
+	 * @param patterns
+	 * @return
+	 */
+	public static RegexList of(@NonNull Iterable<Pattern> patterns) {
+		final List<Pattern> list = new ArrayList<>();
+
+		for (final Pattern pattern : patterns)
+			list.add(pattern);
+
+		return new RegexList(list);
+	}
+
+	/*
+	 * Return how text of the pattern is compared according to its flags
+	 */
+	private static int getCaseMode(Pattern pattern) {
+		final int flags = pattern.flags();
+
+		if ((flags & Pattern.CASE_INSENSITIVE) == 0)
+			return CASE_SENSITIVE;
+
+		return (flags & (Pattern.UNICODE_CASE | Pattern.UNICODE_CHARACTER_CLASS)) != 0 ? UNICODE_CASE_INSENSITIVE : ASCII_CASE_INSENSITIVE;
+	}
+
+	/*
+	 * Fold the character the same way case insensitive patterns compare characters
+	 */
+	private static char fold(char character, int mode) {
+		if (mode == ASCII_CASE_INSENSITIVE)
+			return character >= 'A' && character <= 'Z' ? (char) (character + 32) : character;
+
+		if (mode == UNICODE_CASE_INSENSITIVE)
+			return Character.toLowerCase(Character.toUpperCase(character));
+
+		return character;
+	}
+
+	/**
+	 * Searches for many literals in one pass over the message (Aho-Corasick)
+	 */
+	private static final class Automaton {
+
+		/**
+		 * How characters are folded before searching
+		 */
+		private final int mode;
+
+		/**
+		 * Sorted characters leading out of each node and the nodes they lead to
+		 */
+		private final char[][] keys;
+		private final int[][] targets;
+
+		/**
+		 * The node for the longest suffix of each node that is also in the tree
+		 */
+		private final int[] failures;
+
+		/**
+		 * Pattern indexes of all literals ending at each node, including those of failure nodes
+		 */
+		private final int[][] outputs;
+
+		Automaton(List<String> literals, List<Integer> owners, int mode) {
+			final List<Map<Character, Integer>> children = new ArrayList<>();
+			final List<List<Integer>> outputs = new ArrayList<>();
+
+			children.add(new HashMap<>());
+			outputs.add(new ArrayList<>());
+
+			for (int i = 0; i < literals.size(); i++) {
+				final String literal = literals.get(i);
+				int node = 0;
+
+				for (int j = 0; j < literal.length(); j++) {
+					Integer next = children.get(node).get(literal.charAt(j));
+
+					if (next == null) {
+						next = children.size();
+
+						children.get(node).put(literal.charAt(j), next);
+						children.add(new HashMap<>());
+						outputs.add(new ArrayList<>());
+					}
+
+					node = next;
+				}
+
+				outputs.get(node).add(owners.get(i));
+			}
+
+			final int size = children.size();
+
+			this.mode = mode;
+			this.keys = new char[size][];
+			this.targets = new int[size][];
+			this.failures = new int[size];
+			this.outputs = new int[size][];
+
+			for (int node = 0; node < size; node++) {
+				final List<Character> sorted = new ArrayList<>(children.get(node).keySet());
+
+				Collections.sort(sorted);
+
+				this.keys[node] = new char[sorted.size()];
+				this.targets[node] = new int[sorted.size()];
+
+				for (int i = 0; i < sorted.size(); i++) {
+					this.keys[node][i] = sorted.get(i);
+					this.targets[node][i] = children.get(node).get(sorted.get(i));
+				}
+			}
+
+			// Breadth first so that failure nodes, being shallower, are finished first
+			final Queue<Integer> queue = new LinkedList<>();
+
+			this.outputs[0] = toArray(outputs.get(0));
+
+			for (final int child : this.targets[0])
+				queue.add(child);
+
+			while (!queue.isEmpty()) {
+				final int node = queue.poll();
+				final List<Integer> merged = outputs.get(node);
+
+				for (final int output : this.outputs[this.failures[node]])
+					if (!merged.contains(output))
+						merged.add(output);
+
+				this.outputs[node] = toArray(merged);
+
+				for (int i = 0; i < this.keys[node].length; i++) {
+					final char key = this.keys[node][i];
+					final int child = this.targets[node][i];
+					int failure = this.failures[node];
+					int next;
+
+					while ((next = this.next(failure, key)) == -1 && failure != 0)
+						failure = this.failures[failure];
+
+					this.failures[child] = next == -1 ? 0 : next;
+					queue.add(child);
+				}
+			}
+		}
+
+		/*
+		 * Mark patterns which literals appear in the message
+		 */
+		void markCandidates(String message, boolean[] candidates) {
+			int node = 0;
+
+			for (int i = 0; i < message.length(); i++) {
+				final char character = fold(message.charAt(i), this.mode);
+				int next;
+
+				while ((next = this.next(node, character)) == -1 && node != 0)
+					node = this.failures[node];
+
+				node = next == -1 ? 0 : next;
+
+				for (final int output : this.outputs[node])
+					candidates[output] = true;
+			}
+		}
+
+		/*
+		 * Return the node the character leads to from the given node, or -1
+		 */
+		private int next(int node, char character) {
+			final int index = Arrays.binarySearch(this.keys[node], character);
+
+			return index < 0 ? -1 : this.targets[node][index];
+		}
+
+		private static int[] toArray(List<Integer> list) {
+			final int[] array = new int[list.size()];
+
+			for (int i = 0; i < array.length; i++)
+				array[i] = list.get(i);
+
+			return array;
+		}
+	}
+
+	/**
+	 * Finds literals at least one of which every match of a pattern must contain,
+	 * giving up on syntax it does not understand so that such patterns are always run
+	 */
+	private static final class LiteralParser {
+
+		/**
+		 * Thrown internally to give up parsing
+		 */
+		private static final RuntimeException UNSUPPORTED = new RuntimeException("Unsupported regex syntax", null, false, false) {
+			private static final long serialVersionUID = 1L;
+		};
+
+		private final String regex;
+		private final int mode;
+		private int position;
+
+		private LiteralParser(String regex, int mode) {
+			this.regex = regex;
+			this.mode = mode;
+		}
+
+		/*
+		 * Return folded literals at least one of which every match contains,
+		 * or null if there are none or the pattern is not supported
+		 */
+		static List<String> parse(Pattern pattern, int mode) {
+			if ((pattern.flags() & (Pattern.COMMENTS | Pattern.LITERAL | Pattern.CANON_EQ)) != 0)
+				return null;
+
+			final LiteralParser parser = new LiteralParser(pattern.pattern(), mode);
+
+			try {
+				final List<String> literals = parser.parseAlternation();
+
+				return parser.position == parser.regex.length() ? literals : null;
+
+			} catch (final RuntimeException ex) {
+				return null;
+			}
+		}
+
+		/*
+		 * Parse branches separated by |, all of them must have literals
+		 */
+		private List<String> parseAlternation() {
+			final List<String> literals = new ArrayList<>();
+			boolean required = true;
+
+			while (true) {
+				final List<String> branch = this.parseSequence();
+
+				if (branch == null)
+					required = false;
+				else
+					literals.addAll(branch);
+
+				if (this.position < this.regex.length() && this.regex.charAt(this.position) == '|')
+					this.position++;
+				else
+					break;
+			}
+
+			return required ? literals : null;
+		}
+
+		/*
+		 * Parse atoms until | or ) and return the best literals found
+		 */
+		private List<String> parseSequence() {
+			final StringBuilder run = new StringBuilder();
+			List<String> best = null;
+
+			while (this.position < this.regex.length()) {
+				final char character = this.regex.charAt(this.position);
+
+				if (character == '|' || character == ')')
+					break;
+
+				int literal = -1;
+				List<String> group = null;
+				boolean isGroup = false;
+
+				if (character == '\\' && this.peek(1) == 'Q') {
+					final int end = this.regex.indexOf("\\E", this.position + 2);
+					final String quoted = this.regex.substring(this.position + 2, end == -1 ? this.regex.length() : end);
+
+					this.position = end == -1 ? this.regex.length() : end + 2;
+
+					if (quoted.isEmpty())
+						continue;
+
+					// A quantifier after \E only applies to the last quoted character
+					for (int i = 0; i < quoted.length() - 1; i++)
+						best = this.append(run, quoted.charAt(i), best);
+
+					literal = quoted.charAt(quoted.length() - 1);
+
+				} else if (character == '\\')
+					literal = this.parseEscape();
+
+				else if (character == '[')
+					this.skipClass();
+
+				else if (character == '(') {
+					group = this.parseGroup();
+					isGroup = true;
+
+				} else if (character == '*' || character == '+' || character == '?' || character == '{')
+					throw UNSUPPORTED;
+
+				else {
+					if (character != '.' && character != '^' && character != '$')
+						literal = character;
+
+					this.position++;
+				}
+
+				final int minimum = this.parseQuantifier();
+
+				if (literal != -1 && this.isUsable((char) literal)) {
+					if (minimum != 0)
+						run.append(fold((char) literal, this.mode));
+
+					if (minimum != -1)
+						best = better(best, flush(run));
+
+				} else {
+					best = better(best, flush(run));
+
+					if (isGroup && minimum != 0)
+						best = better(best, group);
+				}
+			}
+
+			return better(best, flush(run));
+		}
+
+		/*
+		 * Append a literal character not followed by a quantifier
+		 */
+		private List<String> append(StringBuilder run, char literal, List<String> best) {
+			if (this.isUsable(literal)) {
+				run.append(fold(literal, this.mode));
+
+				return best;
+			}
+
+			return better(best, flush(run));
+		}
+
+		/*
+		 * Parse the escape at the current position, returning the literal character or -1
+		 */
+		private int parseEscape() {
+			final char escaped = this.regex.charAt(this.position + 1);
+
+			this.position += 2;
+
+			if (escaped >= 128 || !Character.isLetterOrDigit(escaped))
+				return escaped;
+
+			switch (escaped) {
+				case 't':
+					return '\t';
+				case 'n':
+					return '\n';
+				case 'r':
+					return '\r';
+				case 'f':
+					return '\f';
+				case 'a':
+					return '\u0007';
+				case 'e':
+					return '\u001B';
+
+				case '0':
+					for (int i = 0; i < 3 && this.peek(0) >= '0' && this.peek(0) <= '7'; i++)
+						this.position++;
+
+					return -1;
+
+				case 'x':
+					if (this.peek(0) == '{')
+						this.skipPast('}');
+					else
+						this.position += 2;
+
+					return -1;
+
+				case 'u':
+					this.position += 4;
+
+					return -1;
+
+				case 'c':
+					this.position++;
+
+					return -1;
+
+				case 'p':
+				case 'P':
+					if (this.peek(0) == '{')
+						this.skipPast('}');
+					else
+						this.position++;
+
+					return -1;
+
+				case 'k':
+					this.skipPast('>');
+
+					return -1;
+
+				case 'b':
+				case 'B':
+				case 'A':
+				case 'G':
+				case 'Z':
+				case 'z':
+				case 'w':
+				case 'W':
+				case 'd':
+				case 'D':
+				case 's':
+				case 'S':
+				case 'h':
+				case 'H':
+				case 'v':
+				case 'V':
+				case 'R':
+				case 'X':
+					if (this.peek(0) == '{')
+						throw UNSUPPORTED;
+
+					return -1;
+
+				default:
+					if (escaped >= '1' && escaped <= '9') {
+						while (this.peek(0) >= '0' && this.peek(0) <= '9')
+							this.position++;
+
+						return -1;
+					}
+
+					throw UNSUPPORTED;
+			}
+		}
+
+		/*
+		 * Skip a character class including nested classes
+		 */
+		private void skipClass() {
+			int depth = 0;
+
+			while (true) {
+				final char character = this.regex.charAt(this.position);
+
+				if (character == '\\') {
+					final char escaped = this.regex.charAt(this.position + 1);
+
+					if (escaped == 'Q')
+						throw UNSUPPORTED;
+
+					this.position += 2;
+
+					if ((escaped == 'p' || escaped == 'P' || escaped == 'x' || escaped == 'N') && this.peek(0) == '{')
+						this.skipPast('}');
+
+				} else if (character == '[') {
+					this.position++;
+
+					if (this.peek(0) == '^')
+						this.position++;
+
+					// A bracket right after the opening one is a literal
+					if (this.peek(0) == ']') {
+						if (depth > 0)
+							throw UNSUPPORTED;
+
+						this.position++;
+					}
+
+					depth++;
+
+				} else {
+					this.position++;
+
+					if (character == ']' && --depth == 0)
+						return;
+				}
+			}
+		}
+
+		/*
+		 * Parse a group and return its literals, or null for lookarounds
+		 */
+		private List<String> parseGroup() {
+			boolean lookaround = false;
+
+			this.position++;
+
+			if (this.peek(0) == '?') {
+				final char type = this.peek(1);
+
+				if (type == ':' || type == '>')
+					this.position += 2;
+
+				else if (type == '=' || type == '!') {
+					this.position += 2;
+					lookaround = true;
+
+				} else if (type == '<' && (this.peek(2) == '=' || this.peek(2) == '!')) {
+					this.position += 3;
+					lookaround = true;
+
+				} else if (type == '<')
+					this.skipPast('>');
+
+				else
+					throw UNSUPPORTED; // inline flags
+			}
+
+			final List<String> literals = this.parseAlternation();
+
+			if (this.peek(0) != ')')
+				throw UNSUPPORTED;
+
+			this.position++;
+
+			return lookaround ? null : literals;
+		}
+
+		/*
+		 * Parse a quantifier returning its minimum, or -1 if there is none
+		 */
+		private int parseQuantifier() {
+			final char character = this.peek(0);
+			int minimum;
+
+			if (character == '?' || character == '*') {
+				minimum = 0;
+				this.position++;
+
+			} else if (character == '+') {
+				minimum = 1;
+				this.position++;
+
+			} else if (character == '{') {
+				final int end = this.regex.indexOf('}', this.position);
+				final String bounds = this.regex.substring(this.position + 1, end);
+				final int comma = bounds.indexOf(',');
+
+				minimum = Integer.parseInt((comma == -1 ? bounds : bounds.substring(0, comma)).trim());
+				this.position = end + 1;
+
+			} else
+				return -1;
+
+			// Lazy or possessive
+			if (this.peek(0) == '?' || this.peek(0) == '+')
+				this.position++;
+
+			return minimum;
+		}
+
+		/*
+		 * Return true if the character can be safely compared after folding
+		 */
+		private boolean isUsable(char character) {
+			if (Character.isSurrogate(character))
+				return false;
+
+			final char folded = fold(character, this.mode);
+
+			return fold(folded, this.mode) == folded;
+		}
+
+		private void skipPast(char character) {
+			final int index = this.regex.indexOf(character, this.position);
+
+			if (index == -1)
+				throw UNSUPPORTED;
+
+			this.position = index + 1;
+		}
+
+		private char peek(int offset) {
+			return this.position + offset < this.regex.length() ? this.regex.charAt(this.position + offset) : '\0';
+		}
+
+		/*
+		 * Return the run as a single literal and clear it, or null if empty
+		 */
+		private static List<String> flush(StringBuilder run) {
+			if (run.length() == 0)
+				return null;
+
+			final List<String> literal = Collections.singletonList(run.toString());
+
+			run.setLength(0);
+
+			return literal;
+		}
+
+		/*
+		 * Prefer literals which shortest one is longer, then fewer literals
+		 */
+		private static List<String> better(List<String> first, List<String> second) {
+			if (first == null)
+				return second;
+
+			if (second == null)
+				return first;
+
+			final int firstLength = shortest(first), secondLength = shortest(second);
+
+			if (firstLength != secondLength)
+				return firstLength > secondLength ? first : second;
+
+			return first.size() <= second.size() ? first : second;
+		}
+
+		private static int shortest(List<String> literals) {
+			int shortest = Integer.MAX_VALUE;
+
+			for (final String literal : literals)
+				shortest = Math.min(shortest, literal.length());
+
+			return shortest;
+		}
+	}
+}
@@ -0,0 +1,221 @@
+package org.mineacademy.fo.model;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import org.mineacademy.fo.Common;
+import org.mineacademy.fo.collection.LruCache;
+
+import lombok.NonNull;
+
+/**
+ * Records how long patterns matched through {@link Common#regExMatch(java.util.regex.Matcher)}
+ * take, and how many times they were stopped for exceeding the time limit.
+ *
+ * Patterns stopped too many times can optionally be quarantined, see {@link #setQuarantineAfter(int)},
+ * after which they are no longer evaluated and never match until reload.
+ */
+public final class RegexTimings {
+
+	/**
+	 * Maximum amount of patterns tracked, timings of the least recently evaluated are dropped when full
+	 */
+	private static final int LIMIT = 5_000;
+
+	/**
+	 * Timings by the pattern key, see {@link #getKey(Pattern)}
+	 */
+	private static final LruCache<String, RegexTimings> timings = new LruCache<>(LIMIT);
+
+	/**
+	 * Keys of quarantined patterns, kept separately so that they are never evicted with timings
+	 */
+	private static final Set<String> quarantinedKeys = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * How many timeouts quarantine a pattern, 0 to never quarantine
+	 */
+	private static volatile int quarantineAfter = 0;
+
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final AtomicLong maxNanos = new AtomicLong();
+	private final LongAdder timeouts = new LongAdder();
+
+	/**
+	 * Is this pattern no longer evaluated?
+	 */
+	private volatile boolean quarantined;
+
+	private RegexTimings() {
+	}
+
+	/**
+	 * Return how many times the pattern was evaluated, including timeouts
+	 *
+	 * @return
+	 */
+	public long getCalls() {
+		return this.calls.sum();
+	}
+
+	/**
+	 * Return how long all evaluations took together, in nanoseconds
+	 *
+	 * @return
+	 */
+	public long getTotalNanos() {
+		return this.totalNanos.sum();
+	}
+
+	/**
+	 * Return how long the slowest evaluation took, in nanoseconds
+	 *
+	 * @return
+	 */
+	public long getMaxNanos() {
+		return this.maxNanos.get();
+	}
+
+	/**
+	 * Return how long an evaluation took on average, in nanoseconds
+	 *
+	 * @return
+	 */
+	public long getAverageNanos() {
+		final long calls = this.calls.sum();
+
+		return calls == 0 ? 0 : this.totalNanos.sum() / calls;
+	}
+
+	/**
+	 * Return how many times the pattern was stopped for exceeding the time limit
+	 *
+	 * @return
+	 */
+	public long getTimeouts() {
+		return this.timeouts.sum();
+	}
+
+	/**
+	 * Return true if the pattern is no longer evaluated
+	 *
+	 * @return
+	 */
+	public boolean isQuarantined() {
+		return this.quarantined;
+	}
+
+	/*
+	 * Record one evaluation
+	 */
+	private void record(long nanos) {
+		this.calls.increment();
+		this.totalNanos.add(nanos);
+		this.maxNanos.accumulateAndGet(nanos, Math::max);
+	}
+
+	@Override
+	public String toString() {
+		return "RegexTimings{calls=" + this.getCalls() + ", average=" + this.getAverageNanos() + "ns, max=" + this.getMaxNanos() + "ns, timeouts=" + this.getTimeouts() + (this.quarantined ? ", quarantined" : "") + "}";
+	}
+
+	// ------------------------------------------------------------------------------------------------------------
+	// Static
+	// ------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Record how long evaluating the pattern took
+	 *
+	 * @param pattern
+	 * @param nanos
+	 */
+	public static void record(@NonNull Pattern pattern, long nanos) {
+		getOrCreate(pattern).record(nanos);
+	}
+
+	/**
+	 * Record the pattern was stopped for exceeding the time limit, quarantining it
+	 * if it exceeded the limit too many times
+	 *
+	 * @param pattern
+	 * @param nanos how long the pattern ran before it was stopped
+	 */
+	public static void recordTimeout(@NonNull Pattern pattern, long nanos) {
+		final RegexTimings patternTimings = getOrCreate(pattern);
+		final int quarantineAfter = RegexTimings.quarantineAfter;
+
+		patternTimings.record(nanos);
+		patternTimings.timeouts.increment();
+
+		if (quarantineAfter > 0 && !patternTimings.quarantined && patternTimings.timeouts.sum() >= quarantineAfter) {
+			patternTimings.quarantined = true;
+			quarantinedKeys.add(getKey(pattern));
+
+			Common.warning("Regular expression '" + pattern.pattern() + "' exceeded the time limit " + quarantineAfter
+					+ " times and will no longer be evaluated until reload. Please fix or remove it.");
+		}
+	}
+
+	/**
+	 * Return true if the pattern was quarantined and should not be evaluated
+	 *
+	 * @param pattern
+	 * @return
+	 */
+	public static boolean isQuarantined(@NonNull Pattern pattern) {
+		return !quarantinedKeys.isEmpty() && quarantinedKeys.contains(getKey(pattern));
+	}
+
+	/**
+	 * Set after how many timeouts a pattern is quarantined, 0 to never quarantine (default)
+	 *
+	 * @param timeouts
+	 */
+	public static void setQuarantineAfter(int timeouts) {
+		quarantineAfter = Math.max(0, timeouts);
+	}
+
+	/**
+	 * Return timings of all evaluated patterns by their flags and expression,
+	 * separated by a colon, such as 0:hello or 2:hello for a case insensitive pattern
+	 *
+	 * @return
+	 */
+	public static Map<String, RegexTimings> getTimings() {
+		return Collections.unmodifiableMap(timings.toMap());
+	}
+
+	/**
+	 * Clear all timings and release quarantined patterns, called automatically on reload
+	 */
+	public static void clear() {
+		timings.clear();
+		quarantinedKeys.clear();
+	}
+
+	/*
+	 * Return timings for the pattern, creating them if needed
+	 */
+	private static RegexTimings getOrCreate(Pattern pattern) {
+		return timings.computeIfAbsent(getKey(pattern), key -> {
+			final RegexTimings created = new RegexTimings();
+
+			created.quarantined = quarantinedKeys.contains(key);
+
+			return created;
+		});
+	}
+
+	/*
+	 * Return the key for the pattern, the same expression compiled with different flags is a different pattern
+	 */
+	private static String getKey(Pattern pattern) {
+		return pattern.flags() + ":" + pattern.pattern();
+	}
+}
@@ -1,6 +1,7 @@
 package org.mineacademy.fo.model;
 
 import java.io.File;
+import java.util.regex.Pattern;
 
 import org.mineacademy.fo.Common;
 
@@ -39,4 +40,15 @@ public interface Rule {
 	 */
 	default void onLoadFinish() {
 	}
+
+	/**
+	 * Return the pattern messages are matched against, used by {@link RuleIndex}
+	 * to skip rules which cannot match. Return null if the rule is matched otherwise,
+	 * then it is always checked.
+	 *
+	 * @return
+	 */
+	default Pattern getPattern() {
+		return null;
+	}
 }
@@ -0,0 +1,251 @@
+package org.mineacademy.fo.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import org.mineacademy.fo.Common;
+import org.mineacademy.fo.Common.TimedCharSequence;
+
+import lombok.NonNull;
+
+/**
+ * Represents rules loaded by {@link RuleSetReader} indexed for matching messages.
+ *
+ * Patterns of all rules, see {@link Rule#getPattern()}, share one {@link RegexList}
+ * so a message is scanned once for the text of all patterns and only rules which
+ * text was found are returned as candidates. Rules can be split into groups,
+ * such as by their type, each keeping the order rules were loaded in.
+ *
+ * Candidates are exact for rules matched using {@link Common#regExMatch(Pattern, String)}
+ * or {@link Common#compileMatcher(Pattern, String)}, since the message is prepared the same way.
+ */
+public final class RuleIndex<T extends Rule> {
+
+	/**
+	 * Rule indexes of groups which do not exist
+	 */
+	private static final int[] NO_RULES = new int[0];
+
+	/**
+	 * All rules in the order they were given
+	 */
+	private final List<T> rules;
+
+	/**
+	 * Patterns of rules which have one
+	 */
+	private final RegexList patterns;
+
+	/**
+	 * The index of the pattern of each rule in {@link #patterns}, or -1 for rules always checked
+	 */
+	private final int[] patternIndexes;
+
+	/**
+	 * Rule indexes in each group, in order
+	 */
+	private final Map<Object, int[]> groups;
+
+	/**
+	 * How many messages were checked and how many candidates were returned
+	 */
+	private final LongAdder checks = new LongAdder(), candidates = new LongAdder();
+
+	private RuleIndex(List<T> rules, Function<T, ?> grouper) {
+		final List<Pattern> patterns = new ArrayList<>();
+		final Map<Object, List<Integer>> groups = new LinkedHashMap<>();
+
+		this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+		this.patternIndexes = new int[this.rules.size()];
+
+		for (int index = 0; index < this.rules.size(); index++) {
+			final T rule = this.rules.get(index);
+			final Pattern pattern = rule.getPattern();
+
+			if (pattern != null) {
+				this.patternIndexes[index] = patterns.size();
+
+				patterns.add(pattern);
+
+			} else
+				this.patternIndexes[index] = -1;
+
+			groups.computeIfAbsent(grouper.apply(rule), group -> new ArrayList<>()).add(index);
+		}
+
+		this.patterns = RegexList.of(patterns);
+		this.groups = new LinkedHashMap<>();
+
+		for (final Map.Entry<Object, List<Integer>> entry : groups.entrySet()) {
+			final int[] indexes = new int[entry.getValue().size()];
+
+			for (int i = 0; i < indexes.length; i++)
+				indexes[i] = entry.getValue().get(i);
+
+			this.groups.put(entry.getKey(), indexes);
+		}
+	}
+
+	/**
+	 * Return rules which may match the message, in order
+	 *
+	 * @param message
+	 * @return
+	 */
+	public List<T> getCandidates(@NonNull String message) {
+		return this.collect(message, null, false);
+	}
+
+	/**
+	 * Return rules in the given group which may match the message, in order
+	 *
+	 * @param message
+	 * @param group
+	 * @return
+	 */
+	public List<T> getCandidates(@NonNull String message, Object group) {
+		return this.collect(message, this.groups.getOrDefault(group, NO_RULES), false);
+	}
+
+	/**
+	 * Return rules which patterns find a match in the message, in order.
+	 * Rules without a pattern are always returned.
+	 *
+	 * @param message
+	 * @return
+	 */
+	public List<T> getMatches(@NonNull String message) {
+		return this.collect(message, null, true);
+	}
+
+	/**
+	 * Return rules in the given group which patterns find a match in the message, in order.
+	 * Rules without a pattern are always returned.
+	 *
+	 * @param message
+	 * @param group
+	 * @return
+	 */
+	public List<T> getMatches(@NonNull String message, Object group) {
+		return this.collect(message, this.groups.getOrDefault(group, NO_RULES), true);
+	}
+
+	/*
+	 * Collect candidates from the given rule indexes or all rules if null, optionally running their patterns
+	 */
+	private List<T> collect(String message, int[] indexes, boolean match) {
+		final List<T> found = new ArrayList<>();
+
+		if (this.rules.isEmpty() || indexes != null && indexes.length == 0)
+			return found;
+
+		final String prepared = Common.prepareRegexMessage(message);
+		final boolean[] candidates = this.patterns.findCandidates(prepared);
+		final int size = indexes != null ? indexes.length : this.rules.size();
+
+		for (int i = 0; i < size; i++) {
+			final int index = indexes != null ? indexes[i] : i;
+			final int patternIndex = this.patternIndexes[index];
+
+			if (patternIndex == -1)
+				found.add(this.rules.get(index));
+
+			else if (candidates[patternIndex]) {
+				final T rule = this.rules.get(index);
+
+				if (!match || Common.regExMatch(rule.getPattern().matcher(TimedCharSequence.withSettingsLimit(prepared))))
+					found.add(rule);
+			}
+		}
+
+		this.checks.increment();
+		this.candidates.add(found.size());
+
+		return found;
+	}
+
+	/**
+	 * Return all rules in order
+	 *
+	 * @return
+	 */
+	public List<T> getRules() {
+		return this.rules;
+	}
+
+	/**
+	 * Return all rules in the given group in order
+	 *
+	 * @param group
+	 * @return
+	 */
+	public List<T> getRules(Object group) {
+		final int[] indexes = this.groups.get(group);
+		final List<T> rules = new ArrayList<>();
+
+		if (indexes != null)
+			for (final int index : indexes)
+				rules.add(this.rules.get(index));
+
+		return rules;
+	}
+
+	/**
+	 * Return how many rules are only returned when their text is found in the message
+	 *
+	 * @return
+	 */
+	public int getPrefilteredCount() {
+		return this.patterns.getPrefilteredCount();
+	}
+
+	/**
+	 * Return how many candidates were returned for one message on average
+	 *
+	 * @return
+	 */
+	public double getAverageCandidates() {
+		final long checks = this.checks.sum();
+
+		return checks == 0 ? 0 : (double) this.candidates.sum() / checks;
+	}
+
+	@Override
+	public String toString() {
+		return "RuleIndex{" + this.rules.size() + " rules, " + this.getPrefilteredCount() + " prefiltered, groups " + this.groups.keySet() + "}";
+	}
+
+	// ------------------------------------------------------------------------------------------------------------
+	// Static
+	// ------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Index the given rules in a single group
+	 *
+	 * @param <T>
+	 * @param rules
+	 * @return
+	 */
+	public static <T extends Rule> RuleIndex<T> of(@NonNull List<T> rules) {
+		return new RuleIndex<>(rules, rule -> "");
+	}
+
+	/**
+	 * Index the given rules splitting them into groups by the given function,
+	 * such as by the type or operator of the rule
+	 *
+	 * @param <T>
+	 * @param rules
+	 * @param grouper
+	 * @return
+	 */
+	public static <T extends Rule> RuleIndex<T> of(@NonNull List<T> rules, @NonNull Function<T, ?> grouper) {
+		return new RuleIndex<>(rules, grouper);
+	}
+}
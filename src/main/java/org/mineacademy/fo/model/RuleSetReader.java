@@ -1,9 +1,13 @@
 package org.mineacademy.fo.model;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
 
 import org.mineacademy.fo.Common;
 import org.mineacademy.fo.FileUtil;
@@ -21,6 +25,12 @@ public abstract class RuleSetReader<T extends Rule> {
 	 */
 	private final String newKeyword;
 
+	/**
+	 * Rules loaded from each file with the checksum of its content, used when
+	 * {@link #isIncrementalReload()} is enabled
+	 */
+	private final Map<File, LoadedFile<T>> loadedFiles = new HashMap<>();
+
 	/**
 	 * Create a new rule set reader for the matching keyword
 	 * that will dictate new rule creation
@@ -115,9 +125,35 @@ public abstract class RuleSetReader<T extends Rule> {
 	 * @return
 	 */
 	protected final List<T> loadFromFile(File file) {
-		final List<T> rules = new ArrayList<>();
 		final List<String> lines = FileUtil.readLines(file);
 
+		if (!this.isIncrementalReload())
+			return this.loadFromLines(file, lines);
+
+		final long checksum = computeChecksum(lines);
+
+		synchronized (this.loadedFiles) {
+			final LoadedFile<T> loaded = this.loadedFiles.get(file.getAbsoluteFile());
+
+			if (loaded != null && loaded.checksum == checksum)
+				return new ArrayList<>(loaded.rules);
+		}
+
+		final List<T> rules = this.loadFromLines(file, lines);
+
+		synchronized (this.loadedFiles) {
+			this.loadedFiles.put(file.getAbsoluteFile(), new LoadedFile<>(checksum, new ArrayList<>(rules)));
+		}
+
+		return rules;
+	}
+
+	/*
+	 * Parse rules from the lines of the given file
+	 */
+	private List<T> loadFromLines(File file, List<String> lines) {
+		final List<T> rules = new ArrayList<>();
+
 		// The temporary rule being created
 		T rule = null;
 		String match = null;
@@ -180,6 +216,43 @@ public abstract class RuleSetReader<T extends Rule> {
 		return rules;
 	}
 
+	/**
+	 * Return true to reuse rules of files which content did not change since they were
+	 * last loaded instead of parsing them again, so that changing one file only rebuilds
+	 * its own rules. Rules are reused as the same instances.
+	 *
+	 * Only enable this if creating rules does not depend on settings which can change
+	 * on reload, or call {@link #clearLoadedFiles()} when they do.
+	 *
+	 * @return
+	 */
+	protected boolean isIncrementalReload() {
+		return false;
+	}
+
+	/**
+	 * Forget rules loaded from files so that all files are parsed again on next load
+	 */
+	protected final void clearLoadedFiles() {
+		synchronized (this.loadedFiles) {
+			this.loadedFiles.clear();
+		}
+	}
+
+	/*
+	 * Compute the checksum of the file content
+	 */
+	private static long computeChecksum(List<String> lines) {
+		final CRC32 crc = new CRC32();
+
+		for (final String line : lines) {
+			crc.update(line.getBytes(StandardCharsets.UTF_8));
+			crc.update('\n');
+		}
+
+		return crc.getValue();
+	}
+
 	/**
 	 * Called if there is no match {@link #newKeyword} but something is on the line
 	 * enabling you to inject your own custom operators and settings
@@ -216,4 +289,25 @@ public abstract class RuleSetReader<T extends Rule> {
 	 * @return the rule created, or null if the value is not valid
 	 */
 	protected abstract T createRule(File file, String value);
+
+	/**
+	 * Rules loaded from a file
+	 */
+	private static final class LoadedFile<T> {
+
+		/**
+		 * The checksum of the file content the rules were loaded from
+		 */
+		private final long checksum;
+
+		/**
+		 * The loaded rules
+		 */
+		private final List<T> rules;
+
+		LoadedFile(long checksum, List<T> rules) {
+			this.checksum = checksum;
+			this.rules = rules;
+		}
+	}
 }
@@ -0,0 +1,607 @@
+package org.mineacademy.fo.model;
+
+import java.util.Map;
+
+import org.bukkit.command.CommandSender;
+
+/**
+ * A small evaluator for JavaScript conditions such as {@code 15 >= 10 && "world" == "spawn"}
+ * that are parsed once into a tree and evaluated without the script engine.
+ *
+ * Supports number, string and boolean literals, parentheses, arithmetic, comparisons,
+ * {@code &&}, {@code ||}, {@code !} and {@code player.hasPermission("...")} following
+ * JavaScript semantics. Anything else is not compiled and left for the script engine.
+ */
+final class ScriptExpression {
+
+	/**
+	 * Thrown when the expression cannot be evaluated the same way the script engine would,
+	 * the script engine should be used instead
+	 */
+	static final class FallbackException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		private static final FallbackException INSTANCE = new FallbackException();
+
+		private FallbackException() {
+			super(null, null, false, false);
+		}
+	}
+
+	/**
+	 * The root of the parsed tree
+	 */
+	private final Node root;
+
+	private ScriptExpression(Node root) {
+		this.root = root;
+	}
+
+	/**
+	 * Evaluate the condition with the given script variables, only "player" is used
+	 *
+	 * @param variables
+	 * @return
+	 * @throws FallbackException if the result is not a boolean or cannot be evaluated
+	 */
+	Boolean evaluate(Map<String, Object> variables) throws FallbackException {
+		final Object result = this.root.evaluate(variables);
+
+		if (result instanceof Boolean)
+			return (Boolean) result;
+
+		throw FallbackException.INSTANCE;
+	}
+
+	// ------------------------------------------------------------------------------------------------------------
+	// Compiling
+	// ------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Parse the code into an expression, or return null if it uses anything we do not support
+	 *
+	 * @param code
+	 * @return
+	 */
+	static ScriptExpression compile(String code) {
+		if (code.length() > 1_000)
+			return null;
+
+		try {
+			final Parser parser = new Parser(code);
+			final Node root = parser.parseOr();
+
+			parser.skipWhitespace();
+
+			if (parser.peek() == ';')
+				parser.index++;
+
+			parser.skipWhitespace();
+
+			return parser.index == code.length() ? new ScriptExpression(root) : null;
+
+		} catch (final IllegalArgumentException ex) {
+			return null;
+		}
+	}
+
+	/*
+	 * Recursive descent parser following JavaScript operator precedence
+	 */
+	private static final class Parser {
+
+		private final String code;
+		private int index;
+
+		Parser(String code) {
+			this.code = code;
+		}
+
+		Node parseOr() {
+			Node left = this.parseAnd();
+
+			while (this.consume("||")) {
+				final Node first = left;
+				final Node second = this.parseAnd();
+
+				left = variables -> {
+					final Object value = first.evaluate(variables);
+
+					return isTruthy(value) ? value : second.evaluate(variables);
+				};
+			}
+
+			return left;
+		}
+
+		Node parseAnd() {
+			Node left = this.parseEquality();
+
+			while (this.consume("&&")) {
+				final Node first = left;
+				final Node second = this.parseEquality();
+
+				left = variables -> {
+					final Object value = first.evaluate(variables);
+
+					return isTruthy(value) ? second.evaluate(variables) : value;
+				};
+			}
+
+			return left;
+		}
+
+		Node parseEquality() {
+			Node left = this.parseRelational();
+
+			while (true) {
+				final Node first = left;
+
+				if (this.consume("===")) {
+					final Node second = this.parseRelational();
+
+					left = variables -> strictEquals(first.evaluate(variables), second.evaluate(variables));
+
+				} else if (this.consume("!==")) {
+					final Node second = this.parseRelational();
+
+					left = variables -> !strictEquals(first.evaluate(variables), second.evaluate(variables));
+
+				} else if (this.consume("==")) {
+					final Node second = this.parseRelational();
+
+					left = variables -> looseEquals(first.evaluate(variables), second.evaluate(variables));
+
+				} else if (this.consume("!=")) {
+					final Node second = this.parseRelational();
+
+					left = variables -> !looseEquals(first.evaluate(variables), second.evaluate(variables));
+
+				} else
+					return left;
+			}
+		}
+
+		Node parseRelational() {
+			Node left = this.parseAdditive();
+
+			while (true) {
+				final Node first = left;
+				final String operator;
+
+				if (this.consume("<="))
+					operator = "<=";
+				else if (this.consume(">="))
+					operator = ">=";
+				else if (this.consume("<"))
+					operator = "<";
+				else if (this.consume(">"))
+					operator = ">";
+				else
+					return left;
+
+				final Node second = this.parseAdditive();
+
+				left = variables -> compare(operator, first.evaluate(variables), second.evaluate(variables));
+			}
+		}
+
+		Node parseAdditive() {
+			Node left = this.parseMultiplicative();
+
+			while (true) {
+				final Node first = left;
+
+				if (this.consume("+")) {
+					final Node second = this.parseMultiplicative();
+
+					left = variables -> add(first.evaluate(variables), second.evaluate(variables));
+
+				} else if (this.consume("-")) {
+					final Node second = this.parseMultiplicative();
+
+					left = variables -> toNumber(first.evaluate(variables)) - toNumber(second.evaluate(variables));
+
+				} else
+					return left;
+			}
+		}
+
+		Node parseMultiplicative() {
+			Node left = this.parseUnary();
+
+			while (true) {
+				final Node first = left;
+
+				if (this.consume("*")) {
+					final Node second = this.parseUnary();
+
+					left = variables -> toNumber(first.evaluate(variables)) * toNumber(second.evaluate(variables));
+
+				} else if (this.consume("/")) {
+					final Node second = this.parseUnary();
+
+					left = variables -> toNumber(first.evaluate(variables)) / toNumber(second.evaluate(variables));
+
+				} else if (this.consume("%")) {
+					final Node second = this.parseUnary();
+
+					left = variables -> toNumber(first.evaluate(variables)) % toNumber(second.evaluate(variables));
+
+				} else
+					return left;
+			}
+		}
+
+		Node parseUnary() {
+			if (this.consume("!")) {
+				final Node operand = this.parseUnary();
+
+				return variables -> !isTruthy(operand.evaluate(variables));
+			}
+
+			if (this.consume("-")) {
+				final Node operand = this.parseUnary();
+
+				return variables -> -toNumber(operand.evaluate(variables));
+			}
+
+			if (this.consume("+")) {
+				final Node operand = this.parseUnary();
+
+				return variables -> toNumber(operand.evaluate(variables));
+			}
+
+			return this.parsePrimary();
+		}
+
+		Node parsePrimary() {
+			this.skipWhitespace();
+
+			final char character = this.peek();
+
+			if (character == '(') {
+				this.index++;
+
+				final Node inner = this.parseOr();
+
+				this.expect(')');
+
+				return inner;
+			}
+
+			if (character == '"' || character == '\'') {
+				final String value = this.parseString();
+
+				return variables -> value;
+			}
+
+			if (Character.isDigit(character) || character == '.') {
+				final Double value = this.parseNumber();
+
+				return variables -> value;
+			}
+
+			if (this.consumeWord("true"))
+				return variables -> Boolean.TRUE;
+
+			if (this.consumeWord("false"))
+				return variables -> Boolean.FALSE;
+
+			if (this.consumeWord("player")) {
+				this.expect('.');
+
+				if (!this.consumeWord("hasPermission"))
+					throw new IllegalArgumentException();
+
+				this.expect('(');
+				this.skipWhitespace();
+
+				final String permission = this.parseString();
+
+				this.expect(')');
+
+				return variables -> {
+					final Object player = variables.get("player");
+
+					if (!(player instanceof CommandSender))
+						throw FallbackException.INSTANCE;
+
+					return ((CommandSender) player).hasPermission(permission);
+				};
+			}
+
+			throw new IllegalArgumentException();
+		}
+
+		private String parseString() {
+			final char quote = this.code.charAt(this.index++);
+			final StringBuilder builder = new StringBuilder();
+
+			while (this.index < this.code.length()) {
+				final char character = this.code.charAt(this.index++);
+
+				if (character == quote)
+					return builder.toString();
+
+				if (character == '\n' || character == '\r')
+					break;
+
+				if (character == '\\') {
+					if (this.index >= this.code.length())
+						break;
+
+					final char escaped = this.code.charAt(this.index++);
+
+					if (escaped == 'n')
+						builder.append('\n');
+					else if (escaped == 't')
+						builder.append('\t');
+					else if (escaped == '\\' || escaped == '"' || escaped == '\'')
+						builder.append(escaped);
+					else
+						throw new IllegalArgumentException();
+
+				} else
+					builder.append(character);
+			}
+
+			throw new IllegalArgumentException();
+		}
+
+		private Double parseNumber() {
+			final int start = this.index;
+
+			while (this.index < this.code.length() && Character.isDigit(this.code.charAt(this.index)))
+				this.index++;
+
+			if (this.peek() == '.') {
+				this.index++;
+
+				while (this.index < this.code.length() && Character.isDigit(this.code.charAt(this.index)))
+					this.index++;
+			}
+
+			if (this.peek() == 'e' || this.peek() == 'E') {
+				this.index++;
+
+				if (this.peek() == '+' || this.peek() == '-')
+					this.index++;
+
+				final int exponentStart = this.index;
+
+				while (this.index < this.code.length() && Character.isDigit(this.code.charAt(this.index)))
+					this.index++;
+
+				if (exponentStart == this.index)
+					throw new IllegalArgumentException();
+			}
+
+			final String number = this.code.substring(start, this.index);
+
+			// Octal, hexadecimal and numbers followed by letters are left for the engine
+			if (number.equals(".") || number.length() > 1 && number.charAt(0) == '0' && Character.isDigit(number.charAt(1)) || Character.isLetterOrDigit(this.peek()) || this.peek() == '_' || this.peek() == '$')
+				throw new IllegalArgumentException();
+
+			return Double.valueOf(number);
+		}
+
+		private boolean consume(String operator) {
+			this.skipWhitespace();
+
+			if (!this.code.startsWith(operator, this.index))
+				return false;
+
+			final int end = this.index + operator.length();
+			final char next = end < this.code.length() ? this.code.charAt(end) : 0;
+
+			// Do not take "<" from "<=", "+" from "++" or "+=" and similar
+			if (next == '=' && !operator.endsWith("=") || operator.length() == 1 && next == operator.charAt(0) && "+-<>".indexOf(next) != -1)
+				return false;
+
+			this.index = end;
+
+			return true;
+		}
+
+		private boolean consumeWord(String word) {
+			this.skipWhitespace();
+
+			if (!this.code.startsWith(word, this.index))
+				return false;
+
+			final int end = this.index + word.length();
+
+			if (end < this.code.length() && Character.isJavaIdentifierPart(this.code.charAt(end)))
+				return false;
+
+			this.index = end;
+
+			return true;
+		}
+
+		private void expect(char character) {
+			this.skipWhitespace();
+
+			if (this.peek() != character)
+				throw new IllegalArgumentException();
+
+			this.index++;
+		}
+
+		private char peek() {
+			return this.index < this.code.length() ? this.code.charAt(this.index) : 0;
+		}
+
+		private void skipWhitespace() {
+			while (this.index < this.code.length() && Character.isWhitespace(this.code.charAt(this.index)))
+				this.index++;
+		}
+	}
+
+	// ------------------------------------------------------------------------------------------------------------
+	// JavaScript semantics
+	// ------------------------------------------------------------------------------------------------------------
+
+	/*
+	 * Return true if the value is truthy in JavaScript
+	 */
+	private static boolean isTruthy(Object value) {
+		if (value instanceof Boolean)
+			return (Boolean) value;
+
+		if (value instanceof Double) {
+			final double number = (Double) value;
+
+			return number != 0 && !Double.isNaN(number);
+		}
+
+		return !((String) value).isEmpty();
+	}
+
+	/*
+	 * Convert the value to a number like JavaScript, falling back to the engine for strings
+	 * such as hexadecimal numbers we do not convert
+	 */
+	private static double toNumber(Object value) {
+		if (value instanceof Double)
+			return (Double) value;
+
+		if (value instanceof Boolean)
+			return (Boolean) value ? 1 : 0;
+
+		final String string = ((String) value).trim();
+
+		if (string.isEmpty())
+			return 0;
+
+		if (string.equals("Infinity") || string.equals("+Infinity"))
+			return Double.POSITIVE_INFINITY;
+
+		if (string.equals("-Infinity"))
+			return Double.NEGATIVE_INFINITY;
+
+		boolean digits = false;
+
+		for (int i = 0; i < string.length(); i++) {
+			final char character = string.charAt(i);
+
+			if (Character.isDigit(character))
+				digits = true;
+
+			else if (character != '.' && character != 'e' && character != 'E' && character != '+' && character != '-')
+				throw FallbackException.INSTANCE;
+		}
+
+		if (!digits)
+			return Double.NaN;
+
+		try {
+			return Double.parseDouble(string);
+
+		} catch (final NumberFormatException ex) {
+			return Double.NaN;
+		}
+	}
+
+	/*
+	 * Convert the number to a string like JavaScript, falling back to the engine for fractions
+	 */
+	private static String toString(Object value) {
+		if (value instanceof String)
+			return (String) value;
+
+		if (value instanceof Boolean)
+			return value.toString();
+
+		final double number = (Double) value;
+
+		if (Double.isNaN(number))
+			return "NaN";
+
+		if (Double.isInfinite(number))
+			return number > 0 ? "Infinity" : "-Infinity";
+
+		if (number == Math.rint(number) && Math.abs(number) < 1e15)
+			return String.valueOf((long) number);
+
+		throw FallbackException.INSTANCE;
+	}
+
+	/*
+	 * The + operator
+	 */
+	private static Object add(Object first, Object second) {
+		if (first instanceof String || second instanceof String)
+			return toString(first) + toString(second);
+
+		return toNumber(first) + toNumber(second);
+	}
+
+	/*
+	 * The === operator
+	 */
+	private static boolean strictEquals(Object first, Object second) {
+		if (first instanceof Double && second instanceof Double)
+			return ((Double) first).doubleValue() == ((Double) second).doubleValue();
+
+		return first.getClass() == second.getClass() && first.equals(second);
+	}
+
+	/*
+	 * The == operator
+	 */
+	private static boolean looseEquals(Object first, Object second) {
+		if (first.getClass() == second.getClass())
+			return strictEquals(first, second);
+
+		return toNumber(first) == toNumber(second);
+	}
+
+	/*
+	 * The <, <=, > and >= operators
+	 */
+	private static boolean compare(String operator, Object first, Object second) {
+		if (first instanceof String && second instanceof String) {
+			final int result = ((String) first).compareTo((String) second);
+
+			switch (operator) {
+				case "<":
+					return result < 0;
+				case "<=":
+					return result <= 0;
+				case ">":
+					return result > 0;
+				default:
+					return result >= 0;
+			}
+		}
+
+		final double firstNumber = toNumber(first);
+		final double secondNumber = toNumber(second);
+
+		switch (operator) {
+			case "<":
+				return firstNumber < secondNumber;
+			case "<=":
+				return firstNumber <= secondNumber;
+			case ">":
+				return firstNumber > secondNumber;
+			default:
+				return firstNumber >= secondNumber;
+		}
+	}
+
+	/**
+	 * A node in the parsed tree
+	 */
+	@FunctionalInterface
+	private interface Node {
+
+		/*
+		 * Return a Boolean, Double or String value
+		 */
+		Object evaluate(Map<String, Object> variables);
+	}
+}
@@ -2,8 +2,11 @@ package org.mineacademy.fo.model;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 import javax.annotation.Nullable;
@@ -354,6 +357,18 @@ public final class SimpleComponent implements ConfigSerializable {
 		return this.build(null);
 	}
 
+	/**
+	 * Builds the component into a {@link PreparedComponent} which JSON and legacy text
+	 * are only computed once, for messages sent many times without changes.
+	 *
+	 * Parts with a view permission or condition are left out, same as in {@link #getTextComponent()}.
+	 *
+	 * @return
+	 */
+	public PreparedComponent prepare() {
+		return PreparedComponent.wrap(this.build(null));
+	}
+
 	/**
 	 * Builds the component and its past components into a {@link TextComponent}
 	 *
@@ -361,10 +376,19 @@ public final class SimpleComponent implements ConfigSerializable {
 	 * @return
 	 */
 	public TextComponent build(final CommandSender receiver) {
+		final List<Part> parts = this.getParts();
+
+		return this.build(parts, this.getVisibleParts(parts, receiver));
+	}
+
+	/*
+	 * Build the parts at the given indexes into a single component
+	 */
+	private TextComponent build(final List<Part> parts, final BitSet visibleParts) {
 		TextComponent preparedComponent = null;
 
-		for (final Part part : this.pastComponents) {
-			final TextComponent component = part.toTextComponent(true, receiver);
+		for (int index = visibleParts.nextSetBit(0); index != -1; index = visibleParts.nextSetBit(index + 1)) {
+			final TextComponent component = parts.get(index).toTextComponent(false, null);
 
 			if (component != null)
 				if (preparedComponent == null)
@@ -373,15 +397,38 @@ public final class SimpleComponent implements ConfigSerializable {
 					this.addExtra(preparedComponent, component);
 		}
 
-		final TextComponent currentComponent = this.currentComponent == null ? null : this.currentComponent.toTextComponent(true, receiver);
+		return Common.getOrDefault(preparedComponent, new TextComponent(""));
+	}
+
+	/*
+	 * Return past components followed by the current one
+	 */
+	private List<Part> getParts() {
+		final List<Part> parts = new ArrayList<>(this.pastComponents.size() + 1);
 
-		if (currentComponent != null)
-			if (preparedComponent == null)
-				preparedComponent = currentComponent;
-			else
-				this.addExtra(preparedComponent, currentComponent);
+		parts.addAll(this.pastComponents);
 
-		return Common.getOrDefault(preparedComponent, new TextComponent(""));
+		if (this.currentComponent != null)
+			parts.add(this.currentComponent);
+
+		return parts;
+	}
+
+	/*
+	 * Return indexes of parts the receiver can see, receivers seeing the same parts
+	 * get the same component so it only needs to be built once for them
+	 */
+	private BitSet getVisibleParts(final List<Part> parts, final CommandSender receiver) {
+		final BitSet visibleParts = new BitSet(parts.size());
+
+		for (int index = 0; index < parts.size(); index++) {
+			final Part part = parts.get(index);
+
+			if (!part.isEmpty() && part.canSendTo(receiver))
+				visibleParts.set(index);
+		}
+
+		return visibleParts;
 	}
 
 	/*
@@ -466,45 +513,65 @@ public final class SimpleComponent implements ConfigSerializable {
 	 * @param receivers
 	 */
 	public <T extends CommandSender> void sendAs(@Nullable final CommandSender sender, final Iterable<T> receivers) {
+		final List<Part> parts = this.getParts();
+		final boolean relational = sender instanceof Player && this.hasRelationPlaceholders(parts);
+
+		// Components built for receivers by the parts they see
+		final Map<BitSet, PreparedComponent> preparedComponents = new HashMap<>();
+
 		for (final CommandSender receiver : receivers) {
+			final BitSet visibleParts = this.getVisibleParts(parts, receiver);
 
-			TextComponent component = this.build(receiver);
+			// Components changed for each receiver are built for each receiver
+			if (this.firingEvent || relational && receiver instanceof Player) {
+				TextComponent component = this.build(parts, visibleParts);
 
-			if (receiver instanceof Player && sender instanceof Player)
-				this.setRelationPlaceholders(component, (Player) receiver, (Player) sender);
+				if (relational && receiver instanceof Player)
+					this.setRelationPlaceholders(component, (Player) receiver, (Player) sender);
 
-			if (this.firingEvent) {
-				final SimpleComponentSendEvent event = new SimpleComponentSendEvent(sender, receiver, component);
+				if (this.firingEvent) {
+					final SimpleComponentSendEvent event = new SimpleComponentSendEvent(sender, receiver, component);
 
-				if (!Common.callEvent(event))
-					continue;
+					if (!Common.callEvent(event))
+						continue;
 
-				component = event.getComponent();
-			}
+					component = event.getComponent();
+				}
 
-			final String legacy = Common.colorize(component.toLegacyText());
+				this.sendPrepared(receiver, PreparedComponent.wrap(component));
 
-			if (Common.stripColors(legacy).trim().isEmpty() && this.ignoreEmpty) {
-				Debugger.debug("component", "Message is empty, skipping.");
+			} else
+				this.sendPrepared(receiver, preparedComponents.computeIfAbsent(visibleParts, key -> PreparedComponent.wrap(this.build(parts, key))));
+		}
+	}
 
-				continue;
-			}
+	/*
+	 * Send the component to the receiver unless it is empty and empty components are ignored
+	 */
+	private void sendPrepared(final CommandSender receiver, final PreparedComponent prepared) {
+		if (this.ignoreEmpty && prepared.isEmpty()) {
+			Debugger.debug("component", "Message is empty, skipping.");
+
+			return;
+		}
 
-			// Prevent clients being kicked out, so we just send plain message instead
-			if (STRIP_OVERSIZED_COMPONENTS && Remain.toJson(component).length() + 1 >= Short.MAX_VALUE) {
-				if (legacy.length() + 1 >= Short.MAX_VALUE)
-					Common.warning("JSON Message to " + receiver.getName() + " was too large and could not be sent: '" + legacy + "'");
+		prepared.send(receiver);
+	}
 
-				else {
-					final int oversize = Remain.toJson(component).length() + 1 - Short.MAX_VALUE;
-					Common.warning("JSON Message to " + receiver.getName() + " was " + oversize + " bytes oversize, removing interactive elements to avoid kick. Sending plain: '" + legacy + "'");
+	/*
+	 * Return true if PlaceholderAPI could replace relation placeholders in any of the parts
+	 */
+	private boolean hasRelationPlaceholders(final List<Part> parts) {
+		if (!HookManager.isPlaceholderAPILoaded())
+			return false;
 
-					receiver.sendMessage(legacy);
-				}
+		for (final Part part : parts)
+			if (part.text.contains("rel_")
+					|| part.hoverEvent != null && part.hoverEvent.getValue() != null && part.hoverEvent.getValue().contains("rel_")
+					|| part.clickEvent != null && part.clickEvent.getValue() != null && part.clickEvent.getValue().contains("rel_"))
+				return true;
 
-			} else
-				Remain.sendComponent(receiver, component);
-		}
+		return false;
 	}
 
 	/*
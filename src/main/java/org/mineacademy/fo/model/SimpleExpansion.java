@@ -40,6 +40,20 @@ public abstract class SimpleExpansion {
 		return this.onReplace(sender, params);
 	}
 
+	/**
+	 * Return true if this expansion may replace the given variable, it is only asked for such variables.
+	 *
+	 * Returns true for all variables by default, override to declare which variables you replace
+	 * such as those starting with arena_, so that other variables such as server_name can be replaced once
+	 * for all players, see {@link Variables#isGlobalVariable(String)}.
+	 *
+	 * @param variable the variable without brackets
+	 * @return
+	 */
+	public boolean canReplace(String variable) {
+		return true;
+	}
+
 	/**
 	 * Return what variable we should replace for the given player and
 	 * identifier.
@@ -2,7 +2,12 @@ package org.mineacademy.fo.model;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.regex.Pattern;
 
@@ -19,6 +24,7 @@ import org.mineacademy.fo.MinecraftVersion;
 import org.mineacademy.fo.MinecraftVersion.V;
 import org.mineacademy.fo.SerializeUtil;
 import org.mineacademy.fo.Valid;
+import org.mineacademy.fo.collection.LruCache;
 import org.mineacademy.fo.plugin.SimplePlugin;
 
 import lombok.Getter;
@@ -50,6 +56,21 @@ public class SimpleScoreboard {
 	 */
 	private static final String[] COLORS = { "0", "1", "2", "3", "4", "5", "6", "7", "8", "9", "a", "b", "c", "d", "e", "f" };
 
+	/**
+	 * Matches useless colors in front of only spaces, see {@link #copyColors(String, int...)}
+	 */
+	private static final Pattern SPACE_PATTERN = Pattern.compile("^( )+(" + COLOR_CHAR + ")");
+
+	/**
+	 * Maximum amount of split lines cached, the least recently used is dropped when full
+	 */
+	private static final int SPLIT_CACHE_LIMIT = 1_000;
+
+	/**
+	 * Lines split into prefix, entry and suffix by the line and split points, only used on the main thread
+	 */
+	private static final LruCache<String, List<String>> splitCache = new LruCache<>(SPLIT_CACHE_LIMIT);
+
 	/**
 	 * List of all active scoreboard (added upon creating a new instance)
 	 */
@@ -67,6 +88,45 @@ public class SimpleScoreboard {
 
 	private final List<UUID> viewers = new ArrayList<>();
 
+	/**
+	 * The lines last sent to each viewer, used to only send lines that changed
+	 */
+	private final Map<UUID, ViewerState> viewerStates = new HashMap<>();
+
+	/**
+	 * How many lines were sent and skipped because they did not change in the last tick
+	 */
+	@Getter
+	private int lastTickLinesSent, lastTickLinesSkipped;
+
+	/**
+	 * How many lines were sent and skipped because they did not change in total
+	 */
+	@Getter
+	private long totalLinesSent, totalLinesSkipped;
+
+	/**
+	 * Variables added by {@link #addGlobalVariables(String...)}
+	 */
+	private final Set<String> globalVariables = new HashSet<>();
+
+	/**
+	 * Whether each row is rendered for each player, classified at the start of each tick
+	 * since variables may be registered at any time
+	 */
+	private boolean[] playerRows = new boolean[0];
+
+	/**
+	 * Rows without player variables rendered in the current tick, shared by all viewers
+	 */
+	private String[] sharedRows = new String[0];
+
+	/**
+	 * How many rows were rendered and how many were shared from rows rendered for another viewer in the last tick
+	 */
+	@Getter
+	private int lastTickRowsRendered, lastTickRowsShared;
+
 	/**
 	 * The color theme for key: value pairs such as
 	 * <p>
@@ -127,6 +187,7 @@ public class SimpleScoreboard {
 	 */
 	public static void clearBoards() {
 		registeredBoards.clear();
+		splitCache.clear();
 	}
 
 	/**
@@ -161,6 +222,61 @@ public class SimpleScoreboard {
 	protected void onUpdate() {
 	}
 
+	/**
+	 * Return true if the row must be rendered for each player. Rows which do not are rendered
+	 * once per tick, using {@link #replaceVariables(Player, String)} for the first viewer, and
+	 * shared by all viewers.
+	 *
+	 * By default, rows are rendered for each player if they contain a %variable% or {variable}
+	 * for which {@link #isPlayerVariable(String)} returns true.
+	 *
+	 * @param row
+	 * @return
+	 */
+	protected boolean isPlayerRow(final String row) {
+		for (int index = 0; index < row.length(); index++) {
+			final char character = row.charAt(index);
+			final int end = character == '%' || character == '{' ? Variables.findVariableEnd(row, index) : -1;
+
+			if (end != -1) {
+				String variable = row.substring(index + 1, end);
+
+				variable = variable.startsWith("+") ? variable.substring(1) : variable;
+				variable = variable.endsWith("+") ? variable.substring(0, variable.length() - 1) : variable;
+
+				if (this.isPlayerVariable(variable))
+					return true;
+
+				index = end;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Return true if the variable, without brackets or percent signs, is different for each player.
+	 *
+	 * Only variables for which {@link Variables#isGlobalVariable(String)} returns true, such as server_name,
+	 * and variables added by {@link #addGlobalVariables(String...)} are not.
+	 *
+	 * @param variable
+	 * @return
+	 */
+	protected boolean isPlayerVariable(final String variable) {
+		return !Variables.isGlobalVariable(variable) && !this.globalVariables.contains(variable);
+	}
+
+	/**
+	 * Mark the given variables, without brackets or percent signs, as the same for all players,
+	 * such as online count or event timer, so that rows only using them are rendered once per tick
+	 *
+	 * @param variables
+	 */
+	public final void addGlobalVariables(final String... variables) {
+		Collections.addAll(this.globalVariables, variables);
+	}
+
 	public final String getTitle() {
 		return this.title;
 	}
@@ -229,6 +345,7 @@ public class SimpleScoreboard {
 
 		player.setScoreboard(Bukkit.getScoreboardManager().getMainScoreboard());
 		this.viewers.remove(player.getUniqueId());
+		this.viewerStates.remove(player.getUniqueId());
 
 		if (this.viewers.isEmpty())
 			this.cancelUpdateTask();
@@ -342,17 +459,37 @@ public class SimpleScoreboard {
 			try {
 				this.onUpdate();
 
+				this.lastTickLinesSent = 0;
+				this.lastTickLinesSkipped = 0;
+				this.lastTickRowsRendered = 0;
+				this.lastTickRowsShared = 0;
+
+				if (this.sharedRows.length != this.rows.size()) {
+					this.sharedRows = new String[this.rows.size()];
+					this.playerRows = new boolean[this.rows.size()];
+
+				} else
+					Arrays.fill(this.sharedRows, null);
+
+				for (int index = 0; index < this.rows.size(); index++)
+					this.playerRows[index] = this.isPlayerRow(this.rows.get(index));
+
 				for (final UUID viewerId : new ArrayList<>(this.viewers)) {
 					final Player viewer = Bukkit.getPlayer(viewerId);
 
 					if (viewer == null || !viewer.isOnline()) {
 						this.viewers.remove(viewerId);
+						this.viewerStates.remove(viewerId);
+
 						continue;
 					}
 
 					this.reloadEntries(viewer);
 				}
 
+				this.totalLinesSent += this.lastTickLinesSent;
+				this.totalLinesSkipped += this.lastTickLinesSkipped;
+
 			} catch (final Throwable t) {
 				Common.error(t,
 						"Error displaying " + this,
@@ -378,6 +515,7 @@ public class SimpleScoreboard {
 		});
 
 		this.viewers.clear();
+		this.viewerStates.clear();
 
 		if (this.updateTask != null)
 			this.cancelUpdateTask();
@@ -428,7 +566,7 @@ public class SimpleScoreboard {
 	// ------------------------------------------------------------------------------------------------------------
 
 	/**
-	 * Reload entries for the given player
+	 * Reload entries for the given player, only sending lines that changed since the last update
 	 *
 	 * @param player
 	 */
@@ -447,25 +585,41 @@ public class SimpleScoreboard {
 		if (!mainboard.getDisplayName().equals(colorizedTitle))
 			mainboard.setDisplayName(colorizedTitle);
 
+		ViewerState state = this.viewerStates.get(player.getUniqueId());
+
+		// Send all lines when the player got another scoreboard or the rows were added or removed
+		if (state == null || state.scoreboard != scoreboard || state.size != this.rows.size()) {
+			state = new ViewerState(scoreboard, this.rows.size());
+
+			this.viewerStates.put(player.getUniqueId(), state);
+		}
+
 		for (int lineNumber = 0; lineNumber < 15; lineNumber++) {
 			final int scoreboardLineNumber = this.rows.size() - lineNumber;
-			Team line = scoreboard.getTeam("line" + scoreboardLineNumber);
 
 			if (lineNumber < this.rows.size()) {
-				if (line == null)
-					line = scoreboard.registerNewTeam("line" + scoreboardLineNumber);
-
-				final String scoreboardLineRaw = this.rows.get(lineNumber).replace("{player}", player.getName());
-				final boolean mc1_13 = MinecraftVersion.atLeast(MinecraftVersion.V.v1_13);
-				final boolean mc1_18 = MinecraftVersion.atLeast(MinecraftVersion.V.v1_18);
-				final String finishedRow = Common.colorize(replaceTheme(this.replaceVariables(player, scoreboardLineRaw)));
+				final String finishedRow = this.renderRow(player, lineNumber);
 				final boolean rowUsed = rowsDone.contains(finishedRow);
-				final int[] splitPoints = { mc1_13 ? 64 : 16, mc1_18 ? 32767 : 40, mc1_13 ? 64 : 16 };
 
-				if (rowUsed)
-					splitPoints[1] = splitPoints[1] - 2;
+				rowsDone.add(finishedRow);
+
+				if (finishedRow.equals(state.lines[lineNumber]) && rowUsed == state.duplicates[lineNumber]) {
+					this.lastTickLinesSkipped++;
+
+					continue;
+				}
+
+				state.lines[lineNumber] = finishedRow;
+				state.duplicates[lineNumber] = rowUsed;
+
+				this.lastTickLinesSent++;
 
-				final List<String> copy = copyColors(finishedRow, splitPoints);
+				Team line = scoreboard.getTeam("line" + scoreboardLineNumber);
+
+				if (line == null)
+					line = scoreboard.registerNewTeam("line" + scoreboardLineNumber);
+
+				final List<String> copy = splitRow(finishedRow, rowUsed);
 				final String prefix = copy.isEmpty() ? "" : copy.get(0);
 				String entry = copy.size() < 2 ? COLOR_CHAR + COLORS[lineNumber] + COLOR_CHAR + "r" : copy.get(1) + (rowUsed ? COLOR_CHAR + COLORS[lineNumber] : "");
 
@@ -502,14 +656,60 @@ public class SimpleScoreboard {
 					scoreboard.resetScores(oldEntry);
 
 				mainboard.getScore(entry).setScore(scoreboardLineNumber);
-				rowsDone.add(finishedRow);
-			} else if (line != null) {
-				for (final String oldEntry : line.getEntries())
-					scoreboard.resetScores(oldEntry);
 
-				line.unregister();
+			} else if (!state.cleared) {
+				final Team line = scoreboard.getTeam("line" + scoreboardLineNumber);
+
+				if (line != null) {
+					for (final String oldEntry : line.getEntries())
+						scoreboard.resetScores(oldEntry);
+
+					line.unregister();
+				}
 			}
 		}
+
+		state.cleared = true;
+	}
+
+	/*
+	 * Render the row for the player, or reuse it if it was rendered for another viewer this tick and has no player variables
+	 */
+	private String renderRow(Player player, int lineNumber) {
+		final String row = this.rows.get(lineNumber);
+		final boolean shared = lineNumber < this.playerRows.length && !this.playerRows[lineNumber];
+
+		if (shared && this.sharedRows[lineNumber] != null) {
+			this.lastTickRowsShared++;
+
+			return this.sharedRows[lineNumber];
+		}
+
+		final String scoreboardLineRaw = row.replace("{player}", player.getName());
+		final String finishedRow = Common.colorize(replaceTheme(this.replaceVariables(player, scoreboardLineRaw)));
+
+		if (shared)
+			this.sharedRows[lineNumber] = finishedRow;
+
+		this.lastTickRowsRendered++;
+
+		return finishedRow;
+	}
+
+	/*
+	 * Split the row into prefix, entry and suffix, caching the result for each distinct row
+	 */
+	private static List<String> splitRow(String row, boolean rowUsed) {
+		return splitCache.computeIfAbsent((rowUsed ? "1" : "0") + row, key -> {
+			final boolean mc1_13 = MinecraftVersion.atLeast(MinecraftVersion.V.v1_13);
+			final boolean mc1_18 = MinecraftVersion.atLeast(MinecraftVersion.V.v1_18);
+			final int[] splitPoints = { mc1_13 ? 64 : 16, mc1_18 ? 32767 : 40, mc1_13 ? 64 : 16 };
+
+			if (rowUsed)
+				splitPoints[1] = splitPoints[1] - 2;
+
+			return Collections.unmodifiableList(copyColors(row, splitPoints));
+		});
 	}
 
 	/**
@@ -517,16 +717,15 @@ public class SimpleScoreboard {
 	 * @param splitPoints The points to split the text
 	 * @return The method will split the text at the given splitPoints and will copy the colors over
 	 */
-	private List<String> copyColors(String text, int... splitPoints) {
-		//Removes useless colors in front of only spaces (e.g. [§a     §aText] becomes [     §aText])
-		final Pattern spaceMatcher = Pattern.compile("^( )+(" + COLOR_CHAR + ")");
+	private static List<String> copyColors(String text, int... splitPoints) {
 		final List<String> splitText = new ArrayList<>();
 
 		for (final int splitPoint : splitPoints) {
 			final String lastEntry = splitText.isEmpty() ? "" : splitText.get(splitText.size() - 1);
 			final String lastColor = ChatColor.getLastColors(lastEntry);
 
-			final boolean addColor = !text.startsWith(COLOR_CHAR) && !lastColor.isEmpty() && !spaceMatcher.matcher(text).find();
+			//Removes useless colors in front of only spaces (e.g. [§a     §aText] becomes [     §aText])
+			final boolean addColor = !text.startsWith(COLOR_CHAR) && !lastColor.isEmpty() && !SPACE_PATTERN.matcher(text).find();
 			final int realSplitPoint = Math.min(splitPoint - (addColor ? 2 : 0), text.length());
 			String line = (addColor ? lastColor : "") + text.substring(0, realSplitPoint);
 
@@ -545,4 +744,36 @@ public class SimpleScoreboard {
 
 		return splitText;
 	}
-}
\ No newline at end of file
+
+	/*
+	 * The lines last sent to a viewer
+	 */
+	private static final class ViewerState {
+
+		/**
+		 * The scoreboard the lines were sent to
+		 */
+		private final Scoreboard scoreboard;
+
+		/**
+		 * How many rows there were
+		 */
+		private final int size;
+
+		/**
+		 * The finished rows and whether they repeated an earlier row, null if not sent yet
+		 */
+		private final String[] lines = new String[15];
+		private final boolean[] duplicates = new boolean[15];
+
+		/**
+		 * Were unused lines removed?
+		 */
+		private boolean cleared;
+
+		ViewerState(Scoreboard scoreboard, int size) {
+			this.scoreboard = scoreboard;
+			this.size = size;
+		}
+	}
+}
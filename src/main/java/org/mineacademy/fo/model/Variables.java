@@ -1,32 +1,41 @@
 package org.mineacademy.fo.model;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
 import java.util.function.Function;
-import java.util.regex.Matcher;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
 import org.bukkit.ChatColor;
+import org.bukkit.OfflinePlayer;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.ConsoleCommandSender;
 import org.bukkit.entity.Player;
 import org.mineacademy.fo.Common;
 import org.mineacademy.fo.GeoAPI;
-import org.mineacademy.fo.GeoAPI.GeoResponse;
 import org.mineacademy.fo.Messenger;
 import org.mineacademy.fo.MinecraftVersion;
 import org.mineacademy.fo.PlayerUtil;
 import org.mineacademy.fo.TimeUtil;
+import org.mineacademy.fo.Valid;
+import org.mineacademy.fo.collection.LruCache;
 import org.mineacademy.fo.collection.StrictList;
 import org.mineacademy.fo.collection.StrictMap;
-import org.mineacademy.fo.collection.expiringmap.ExpiringMap;
 import org.mineacademy.fo.plugin.SimplePlugin;
 import org.mineacademy.fo.remain.Remain;
 import org.mineacademy.fo.settings.SimpleLocalization;
 
+import lombok.RequiredArgsConstructor;
+
 /**
  * A simple engine that replaces variables in a message.
  */
@@ -58,9 +67,89 @@ public final class Variables {
 	public static final Pattern BRACKET_REL_VARIABLE_PATTERN = Pattern.compile("[({)](rel_)([^}]+)[(})]");
 
 	/**
-	 * Player - [Original Message - Translated Message]
+	 * Maximum amount of replaced messages cached for each player
+	 */
+	private static final int PLAYER_CACHE_LIMIT = 256;
+
+	/**
+	 * Player unique id - [Original Message - Translated Message]
+	 */
+	private static final Map<UUID, PlayerCache> cache = new ConcurrentHashMap<>();
+
+	/**
+	 * How many ticks replaced messages are cached for, 0 to disable caching
 	 */
-	private static final Map<String, Map<String, String>> cache = ExpiringMap.builder().expiration(500, TimeUnit.MILLISECONDS).build();
+	private static volatile int cacheDuration = 10;
+
+	/**
+	 * Statistics for the player cache
+	 */
+	private static final LongAdder cacheHits = new LongAdder(), cacheMisses = new LongAdder(), cacheEvictions = new LongAdder();
+
+	/**
+	 * Maximum amount of compiled messages stored in {@link #templates}, the least recently used is dropped when full
+	 */
+	private static final int TEMPLATE_CACHE_LIMIT = 5_000;
+
+	/**
+	 * Messages parsed into literal parts and variable slots, see {@link Template}
+	 */
+	private static final LruCache<String, Template> templates = new LruCache<>(TEMPLATE_CACHE_LIMIT);
+
+	/**
+	 * Variables hardcoded within Foundation, taking in the player (null if sender is not a player)
+	 * and the sender and returning the value or null if the variable is not available
+	 */
+	private static final Map<String, BiFunction<Player, CommandSender, String>> hardVariables = new HashMap<>();
+
+	/**
+	 * Names of hardcoded variables which are the same for all players, see {@link #isGlobalVariable(String)}
+	 */
+	private static final Set<String> globalHardVariables = new HashSet<>();
+
+	static {
+		addGlobalHardVariable(() -> Remain.getServerName(), "server_name");
+		addGlobalHardVariable(() -> MinecraftVersion.getFullVersion(), "server_version");
+		addGlobalHardVariable(() -> MinecraftVersion.getServerVersion(), "nms_version");
+		addGlobalHardVariable(() -> TimeUtil.getFormattedDate(), "timestamp", "date");
+		addGlobalHardVariable(() -> TimeUtil.getFormattedDateShort(), "date_short");
+		addGlobalHardVariable(() -> TimeUtil.getFormattedDateMonth(), "date_month");
+		addGlobalHardVariable(() -> Common.chatLine(), "chat_line");
+		addGlobalHardVariable(() -> Common.chatLineSmooth(), "chat_line_smooth");
+		addHardVariable((player, sender) -> player == null ? "" : HookManager.getTownName(player), "town");
+		addHardVariable((player, sender) -> player == null ? "" : HookManager.getNation(player), "nation");
+		addHardVariable((player, sender) -> player == null ? "" : HookManager.getFaction(player), "faction");
+
+		addHardVariable((player, sender) -> player == null ? "" : HookManager.getWorldAlias(player.getWorld()), "world");
+		addHardVariable((player, sender) -> player == null ? "" : formatHealth0(player) + ChatColor.RESET, "health");
+		addHardVariable((player, sender) -> player == null ? "" : Common.shortLocation(player.getLocation()), "location");
+		addHardVariable((player, sender) -> player == null ? "" : String.valueOf(player.getLocation().getBlockX()), "x");
+		addHardVariable((player, sender) -> player == null ? "" : String.valueOf(player.getLocation().getBlockY()), "y");
+		addHardVariable((player, sender) -> player == null ? "" : String.valueOf(player.getLocation().getBlockZ()), "z");
+
+		addHardVariable((player, sender) -> sender == null ? null : player == null ? Common.resolveSenderName(sender) : player.getName(), "player", "player_name");
+		addHardVariable((player, sender) -> player == null ? Common.resolveSenderName(sender) : player.getPlayerListName(), "tab_name");
+		addHardVariable((player, sender) -> player == null ? Common.resolveSenderName(sender) : player.getDisplayName(), "display_name");
+		addHardVariable((player, sender) -> player == null ? Common.resolveSenderName(sender) : HookManager.getNickColored(player), "player_nick", "nick");
+
+		addHardVariable((player, sender) -> player == null ? "" : HookManager.getPlayerPrefix(player), "player_prefix", "pl_prefix");
+		addHardVariable((player, sender) -> player == null ? "" : HookManager.getPlayerSuffix(player), "player_suffix", "pl_suffix");
+		addHardVariable((player, sender) -> player == null ? "" : HookManager.getPlayerPermissionGroup(player), "player_group", "pl_group");
+		addHardVariable((player, sender) -> player == null ? "" : HookManager.getPlayerPrimaryGroup(player), "player_primary_group", "pl_primary_group");
+		addHardVariable((player, sender) -> player == null ? "" : formatIp0(player), "ip_address", "pl_address");
+
+		addHardVariable((player, sender) -> player == null ? "false" : String.valueOf(PlayerUtil.isVanished(player)), "player_vanished");
+
+		addHardVariable((player, sender) -> player == null ? "" : GeoAPI.getCountry(player.getAddress()).getCountryCode(), "country_code");
+		addHardVariable((player, sender) -> player == null ? "" : GeoAPI.getCountry(player.getAddress()).getCountryName(), "country_name");
+		addHardVariable((player, sender) -> player == null ? "" : GeoAPI.getCountry(player.getAddress()).getRegionName(), "region_name");
+		addHardVariable((player, sender) -> player == null ? "" : GeoAPI.getCountry(player.getAddress()).getIsp(), "isp");
+
+		addGlobalHardVariable(() -> SimplePlugin.getInstance().getMainCommand() != null ? SimplePlugin.getInstance().getMainCommand().getLabel() : SimpleLocalization.NONE, "label");
+		addHardVariable((player, sender) -> player != null ? "true" : "false", "sender_is_player");
+		addHardVariable((player, sender) -> sender instanceof DiscordSender ? "true" : "false", "sender_is_discord");
+		addHardVariable((player, sender) -> sender instanceof ConsoleCommandSender ? "true" : "false", "sender_is_console");
+	}
 
 	// ------------------------------------------------------------------------------------------------------------
 	// Custom variables
@@ -131,6 +220,28 @@ public final class Variables {
 		return customVariables.containsKey(variable);
 	}
 
+	/**
+	 * Return true if the variable, without brackets, is replaced the same for all players,
+	 * such as server_name, so a message only using such variables can be replaced once
+	 * and shown to everyone.
+	 *
+	 * Returns false when a custom variable overrides it or an expansion may replace it,
+	 * see {@link SimpleExpansion#canReplace(String)}, since those may differ for each player.
+	 *
+	 * @param variable
+	 * @return
+	 */
+	public static boolean isGlobalVariable(String variable) {
+		if (!globalHardVariables.contains(variable) || customVariables.containsKey(variable))
+			return false;
+
+		for (final SimpleExpansion expansion : customExpansions)
+			if (expansion.canReplace(variable))
+				return false;
+
+		return true;
+	}
+
 	/**
 	 * Return an immutable list of all currently loaded expansions
 	 *
@@ -237,129 +348,189 @@ public final class Variables {
 		final String original = message;
 		final boolean senderIsPlayer = sender instanceof Player;
 
-		if (senderIsPlayer) {
+		// Only cache for online players, custom replacements change the result so we do not cache them
+		final PlayerCache playerCache = senderIsPlayer && cacheDuration > 0 && (replacements == null || replacements.isEmpty()) && ((Player) sender).isOnline()
+				? cache.computeIfAbsent(((Player) sender).getUniqueId(), uniqueId -> new PlayerCache())
+				: null;
 
-			// Already cached ? Return.
-			final Map<String, String> cached = cache.get(sender.getName());
-			final String cachedVar = cached != null ? cached.get(message) : null;
+		final long tick = getTick0();
 
-			if (cachedVar != null && !cachedVar.contains("flpm_") && !cachedVar.contains("flps_"))
-				return cachedVar;
-		}
-
-		// PlaceholderAPI and MVdWPlaceholderAPI
-		if (senderIsPlayer)
-			message = HookManager.replacePlaceholders((Player) sender, message);
-
-		else if (sender instanceof DiscordSender)
-			message = HookManager.replacePlaceholders(((DiscordSender) sender).getOfflinePlayer(), message);
+		if (playerCache != null) {
 
-		// Replace hard variables
-		message = replaceHardVariables0(sender, message, Variables.VARIABLE_PATTERN.matcher(message));
-		message = replaceHardVariables0(sender, message, Variables.BRACKET_VARIABLE_PATTERN.matcher(message));
-		message = Messenger.replacePrefixes(message);
+			// Already cached ? Return.
+			final String cached = playerCache.get(original, colorize, replaceScript, tick);
 
-		// Custom placeholders
-		if (replaceScript)
-			message = replaceJavascriptVariables0(message, sender, replacements);
+			if (cached != null)
+				return cached;
+		}
 
-		// Replace custom variables last to avoid replacing variables in them for security
-		if (replacements != null && !replacements.isEmpty())
-			message = Replacer.replaceArray(message, replacements);
+		// Replace PlaceholderAPI, MVdWPlaceholderAPI, hard variables, prefixes, scripts and custom replacements in one pass
+		message = compile(message).render(sender, replacements, replaceScript);
 
 		if (!message.startsWith("[JSON]") && colorize)
 			message = Common.colorize(message);
 
-		if (senderIsPlayer) {
-			final Map<String, String> map = cache.get(sender.getName());
-
-			if (map != null)
-				map.put(original, message);
-			else
-				cache.put(sender.getName(), Common.newHashMap(original, message));
-		}
+		if (playerCache != null && !message.contains("flpm_") && !message.contains("flps_"))
+			playerCache.put(original, message, colorize, replaceScript, tick + cacheDuration);
 
 		return message;
 	}
 
-	/*
-	 * Replaces JavaScript variables in the message
+	// ------------------------------------------------------------------------------------------------------------
+	// Caching
+	// ------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Set how many ticks replaced messages are cached for each player, 0 to disable caching.
+	 * Defaults to 10 ticks.
+	 *
+	 * @param ticks
 	 */
-	private static String replaceJavascriptVariables0(String message, CommandSender sender, Map<String, Object> replacements) {
+	public static void setCacheDuration(int ticks) {
+		Valid.checkBoolean(ticks >= 0, "Cache duration cannot be negative, got " + ticks);
 
-		message = replaceJavascriptVariables0(message, sender, replacements, VARIABLE_PATTERN.matcher(message));
-		message = replaceJavascriptVariables0(message, sender, replacements, BRACKET_VARIABLE_PATTERN.matcher(message));
+		cacheDuration = ticks;
 
-		return message;
+		if (ticks == 0)
+			cache.clear();
 	}
 
-	private static String replaceJavascriptVariables0(String message, CommandSender sender, Map<String, Object> replacements, Matcher matcher) {
-		while (matcher.find()) {
-			final String variableKey = matcher.group();
+	/**
+	 * Return how many ticks replaced messages are cached for each player
+	 *
+	 * @return
+	 */
+	public static int getCacheDuration() {
+		return cacheDuration;
+	}
 
-			// Find the variable key without []
-			final Variable variable = Variable.findVariable(variableKey.substring(1, variableKey.length() - 1));
+	/**
+	 * Return how many times a replaced message was found in the cache
+	 *
+	 * @return
+	 */
+	public static long getCacheHits() {
+		return cacheHits.sum();
+	}
 
-			if (variable != null && variable.getType() == Variable.Type.FORMAT) {
-				String plain = variable.buildPlain(sender, replacements);
+	/**
+	 * Return how many times a message had to be replaced because it was
+	 * not cached or its cache expired
+	 *
+	 * @return
+	 */
+	public static long getCacheMisses() {
+		return cacheMisses.sum();
+	}
 
-				// And we remove the white prefix that is by default added in every component
-				if (plain.startsWith(ChatColor.COLOR_CHAR + "f" + ChatColor.COLOR_CHAR + "f"))
-					plain = plain.substring(4);
+	/**
+	 * Return how many messages were removed from the cache because a player
+	 * had more than 256 messages cached
+	 *
+	 * @return
+	 */
+	public static long getCacheEvictions() {
+		return cacheEvictions.sum();
+	}
 
-				message = message.replace(variableKey, plain);
-			}
-		}
+	/**
+	 * Return the ratio of cache hits from 0 to 1, or 0 if nothing was replaced yet
+	 *
+	 * @return
+	 */
+	public static double getCacheHitRatio() {
+		final long hits = cacheHits.sum();
+		final long total = hits + cacheMisses.sum();
 
-		return message;
+		return total == 0 ? 0 : (double) hits / total;
 	}
 
-	private static String replaceHardVariables0(CommandSender sender, String message, Matcher matcher) {
-		final Player player = sender instanceof Player ? (Player) sender : null;
+	/**
+	 * Clear cached messages for the given player, called automatically when the player quits
+	 *
+	 * @param player
+	 */
+	public static void clearCache(Player player) {
+		cache.remove(player.getUniqueId());
+	}
 
-		while (matcher.find()) {
-			String variable = matcher.group(1);
-			boolean frontSpace = false;
-			boolean backSpace = false;
+	/**
+	 * Clear cached messages, called automatically on reload
+	 * and when {@link Messenger} prefixes change so that they are picked up
+	 */
+	public static void clearCache() {
+		templates.clear();
+		cache.clear();
+	}
 
-			if (variable.startsWith("+")) {
-				variable = variable.substring(1);
+	/*
+	 * Return the current server tick number derived from time so it can be read from any thread
+	 */
+	private static long getTick0() {
+		return System.currentTimeMillis() / 50;
+	}
 
-				frontSpace = true;
-			}
+	/*
+	 * Return the message parsed into a template, parsing it only once
+	 */
+	private static Template compile(String message) {
+		return templates.computeIfAbsent(message, key -> new Template(Messenger.replacePrefixes(key)));
+	}
 
-			if (variable.endsWith("+")) {
-				variable = variable.substring(0, variable.length() - 1);
+	/*
+	 * Return the index of the closing character of the %variable% or {variable} starting
+	 * at the given index, or -1 if there is none. Same as {@link #VARIABLE_PATTERN} a %variable%
+	 * may contain brackets, such as %math_0_{player_level}*2%, and same as {@link #BRACKET_VARIABLE_PATTERN}
+	 * a {variable} may not, so only the innermost brackets are a variable.
+	 */
+	static int findVariableEnd(String message, int start) {
+		final char opening = message.charAt(start);
 
-				backSpace = true;
-			}
+		for (int i = start + 1; i < message.length(); i++) {
+			final char character = message.charAt(i);
 
-			String value = lookupVariable0(player, sender, variable);
+			if (opening == '%') {
+				if (character == '%')
+					return i == start + 1 ? -1 : i;
 
-			if (value != null) {
-				final boolean emptyColorless = Common.stripColors(value).isEmpty();
-				value = value.isEmpty() ? "" : (frontSpace && !emptyColorless ? " " : "") + Common.colorize(value) + (backSpace && !emptyColorless ? " " : "");
+			} else if (character == '}')
+				return i == start + 1 ? -1 : i;
 
-				message = message.replace(matcher.group(), value);
-			}
+			else if (character == '{')
+				return -1;
 		}
 
-		return message;
+		return -1;
 	}
 
 	/*
-	 * Replaces the given variable with a few hardcoded within the plugin, see below
+	 * Register a hardcoded variable under the given names
 	 */
-	private static String lookupVariable0(Player player, CommandSender console, String variable) {
-		GeoResponse geoResponse = null;
+	private static void addHardVariable(BiFunction<Player, CommandSender, String> resolver, String... names) {
+		for (final String name : names)
+			hardVariables.put(name, resolver);
+	}
 
-		if (player != null && Arrays.asList("country_code", "country_name", "region_name", "isp").contains(variable))
-			geoResponse = GeoAPI.getCountry(player.getAddress());
+	/*
+	 * Register a hardcoded variable which is the same for all players under the given names
+	 */
+	private static void addGlobalHardVariable(Supplier<String> resolver, String... names) {
+		addHardVariable((player, sender) -> resolver.get(), names);
+		Collections.addAll(globalHardVariables, names);
+	}
 
+	/*
+	 * Replaces the given variable from expansions, custom variables or the
+	 * hardcoded resolver looked up when compiling the message
+	 */
+	private static String lookupVariable0(Player player, CommandSender console, String variable, BiFunction<Player, CommandSender, String> hardVariable) {
 		if (console != null) {
 
 			// Replace custom expansions
 			for (final SimpleExpansion expansion : customExpansions) {
+				if (!expansion.canReplace(variable))
+					continue;
+
 				final String value = expansion.replacePlaceholders(console, variable);
 
 				if (value != null)
@@ -373,99 +544,7 @@ public final class Variables {
 				return customReplacer.apply(console);
 		}
 
-		switch (variable) {
-			case "server_name":
-				return Remain.getServerName();
-			case "server_version":
-				return MinecraftVersion.getFullVersion();
-			case "nms_version":
-				return MinecraftVersion.getServerVersion();
-			case "timestamp":
-			case "date":
-				return TimeUtil.getFormattedDate();
-			case "date_short":
-				return TimeUtil.getFormattedDateShort();
-			case "date_month":
-				return TimeUtil.getFormattedDateMonth();
-			case "chat_line":
-				return Common.chatLine();
-			case "chat_line_smooth":
-				return Common.chatLineSmooth();
-			case "town":
-				return player == null ? "" : HookManager.getTownName(player);
-			case "nation":
-				return player == null ? "" : HookManager.getNation(player);
-			case "faction":
-				return player == null ? "" : HookManager.getFaction(player);
-
-			case "world":
-				return player == null ? "" : HookManager.getWorldAlias(player.getWorld());
-			case "health":
-				return player == null ? "" : formatHealth0(player) + ChatColor.RESET;
-			case "location":
-				return player == null ? "" : Common.shortLocation(player.getLocation());
-			case "x":
-				return player == null ? "" : String.valueOf(player.getLocation().getBlockX());
-			case "y":
-				return player == null ? "" : String.valueOf(player.getLocation().getBlockY());
-			case "z":
-				return player == null ? "" : String.valueOf(player.getLocation().getBlockZ());
-
-			case "player":
-			case "player_name": {
-				if (console == null)
-					return null;
-
-				return player == null ? Common.resolveSenderName(console) : player.getName();
-			}
-
-			case "tab_name":
-				return player == null ? Common.resolveSenderName(console) : player.getPlayerListName();
-			case "display_name":
-				return player == null ? Common.resolveSenderName(console) : player.getDisplayName();
-			case "player_nick":
-			case "nick":
-				return player == null ? Common.resolveSenderName(console) : HookManager.getNickColored(player);
-
-			case "player_prefix":
-			case "pl_prefix":
-				return player == null ? "" : HookManager.getPlayerPrefix(player);
-			case "player_suffix":
-			case "pl_suffix":
-				return player == null ? "" : HookManager.getPlayerSuffix(player);
-			case "player_group":
-			case "pl_group":
-				return player == null ? "" : HookManager.getPlayerPermissionGroup(player);
-			case "player_primary_group":
-			case "pl_primary_group":
-				return player == null ? "" : HookManager.getPlayerPrimaryGroup(player);
-			case "ip_address":
-			case "pl_address":
-				return player == null ? "" : formatIp0(player);
-
-			case "player_vanished":
-				return player == null ? "false" : String.valueOf(PlayerUtil.isVanished(player));
-
-			case "country_code":
-				return player == null ? "" : geoResponse.getCountryCode();
-			case "country_name":
-				return player == null ? "" : geoResponse.getCountryName();
-			case "region_name":
-				return player == null ? "" : geoResponse.getRegionName();
-			case "isp":
-				return player == null ? "" : geoResponse.getIsp();
-
-			case "label":
-				return SimplePlugin.getInstance().getMainCommand() != null ? SimplePlugin.getInstance().getMainCommand().getLabel() : SimpleLocalization.NONE;
-			case "sender_is_player":
-				return player != null ? "true" : "false";
-			case "sender_is_discord":
-				return console instanceof DiscordSender ? "true" : "false";
-			case "sender_is_console":
-				return console instanceof ConsoleCommandSender ? "true" : "false";
-		}
-
-		return null;
+		return hardVariable != null ? hardVariable.apply(player, console) : null;
 	}
 
 	/*
@@ -487,4 +566,318 @@ public final class Variables {
 			return player.getAddress() != null ? player.getAddress().toString() : "";
 		}
 	}
+
+	// ------------------------------------------------------------------------------------------------------------
+	// Compiled messages
+	// ------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Represents a message parsed once into literal parts and %variable% or {variable}
+	 * slots so that replacing it for each sender only resolves the slots instead
+	 * of scanning and copying the whole message for every variable.
+	 *
+	 * Messages are compiled before PlaceholderAPI, which is asked for each slot when
+	 * rendering so that templates are shared by all players. Messenger prefixes are
+	 * replaced when compiling, see {@link Variables#clearCache()}.
+	 */
+	private static final class Template {
+
+		/**
+		 * Literal parts, there is one more part than slots and parts can be empty
+		 */
+		private final String[] parts;
+
+		/**
+		 * Variable slots placed between the parts
+		 */
+		private final Slot[] slots;
+
+		/**
+		 * Length of the parsed message, used to size the builder
+		 */
+		private final int length;
+
+		/*
+		 * Parse the message, see {@link Variables#findVariableEnd(String, int)}
+		 */
+		Template(String message) {
+			final List<String> parts = new ArrayList<>();
+			final List<Slot> slots = new ArrayList<>();
+			final StringBuilder literal = new StringBuilder();
+
+			int index = 0;
+
+			while (index < message.length()) {
+				final char character = message.charAt(index);
+				final int end = character == '%' || character == '{' ? findVariableEnd(message, index) : -1;
+
+				if (end == -1) {
+					literal.append(character);
+					index++;
+
+					continue;
+				}
+
+				parts.add(literal.toString());
+				slots.add(new Slot(message.substring(index, end + 1)));
+
+				literal.setLength(0);
+				index = end + 1;
+			}
+
+			parts.add(literal.toString());
+
+			this.parts = parts.toArray(new String[parts.size()]);
+			this.slots = slots.toArray(new Slot[slots.size()]);
+			this.length = message.length();
+		}
+
+		/*
+		 * Render the message for the given sender
+		 */
+		String render(CommandSender sender, Map<String, Object> replacements, boolean replaceScript) {
+			if (this.slots.length == 0)
+				return this.parts[0];
+
+			final Player player = sender instanceof Player ? (Player) sender : null;
+			final boolean placeholders = (player != null || sender instanceof DiscordSender) && (HookManager.isPlaceholderAPILoaded() || HookManager.isMVdWPlaceholderAPILoaded());
+			final OfflinePlayer placeholderPlayer = player != null ? player : placeholders ? ((DiscordSender) sender).getOfflinePlayer() : null;
+
+			// Not reused since variables may call replace again while rendering
+			final StringBuilder builder = new StringBuilder(this.length + 16 * this.slots.length);
+
+			this.renderTo(builder, player, sender, placeholders, placeholderPlayer, replacements, replaceScript);
+
+			return builder.toString();
+		}
+
+		/*
+		 * Append the message rendered for the given sender
+		 */
+		void renderTo(StringBuilder builder, Player player, CommandSender sender, boolean placeholders, OfflinePlayer placeholderPlayer, Map<String, Object> replacements, boolean replaceScript) {
+			for (int i = 0; i < this.slots.length; i++) {
+				builder.append(this.parts[i]);
+
+				this.slots[i].append(builder, player, sender, placeholders, placeholderPlayer, replacements, replaceScript);
+			}
+
+			builder.append(this.parts[this.slots.length]);
+		}
+	}
+
+	/**
+	 * Represents a variable in a compiled message
+	 */
+	private static final class Slot {
+
+		/**
+		 * The variable as written in the message, used when no value is found
+		 */
+		private final String raw;
+
+		/**
+		 * The variable without brackets or percent signs, used for JavaScript variables
+		 */
+		private final String key;
+
+		/**
+		 * The variable name without + signs
+		 */
+		private final String name;
+
+		/**
+		 * Should we add a space before or after non empty values? Written as {+name+}
+		 */
+		private final boolean frontSpace, backSpace;
+
+		/**
+		 * The hardcoded variable for the name looked up when compiling, or null
+		 */
+		private final BiFunction<Player, CommandSender, String> hardVariable;
+
+		/**
+		 * {variables} inside a %variable%, rendered when the %variable% itself is not replaced
+		 * same as the second pass for {variables} did, or null if there are none
+		 */
+		private final Template inner;
+
+		Slot(String raw) {
+			String name = raw.substring(1, raw.length() - 1);
+
+			this.raw = raw;
+			this.key = name;
+			this.frontSpace = name.startsWith("+");
+
+			if (this.frontSpace)
+				name = name.substring(1);
+
+			this.backSpace = name.endsWith("+");
+
+			if (this.backSpace)
+				name = name.substring(0, name.length() - 1);
+
+			this.name = name;
+			this.hardVariable = hardVariables.get(name);
+
+			final String content = raw.substring(1, raw.length() - 1);
+			final Template inner = raw.charAt(0) == '%' && content.indexOf('{') != -1 ? new Template(content) : null;
+
+			this.inner = inner != null && inner.slots.length > 0 ? inner : null;
+		}
+
+		/*
+		 * Append the value of this variable, trying PlaceholderAPI and MVdWPlaceholderAPI first, then hard variables,
+		 * then JavaScript variables and custom replacements last to avoid replacing variables in them for security
+		 */
+		void append(StringBuilder builder, Player player, CommandSender sender, boolean placeholders, OfflinePlayer placeholderPlayer, Map<String, Object> replacements, boolean replaceScript) {
+			if (placeholders) {
+				final String replaced = HookManager.replacePlaceholders(placeholderPlayer, this.raw);
+
+				// Already colorized and spaced by the hook
+				if (!this.raw.equals(replaced)) {
+					builder.append(replaced);
+
+					return;
+				}
+			}
+
+			final String value = lookupVariable0(player, sender, this.name, this.hardVariable);
+
+			if (value != null) {
+				this.appendSpaced(builder, value);
+
+				return;
+			}
+
+			if (replaceScript) {
+				final Variable variable = Variable.findVariable(this.key);
+
+				if (variable != null && variable.getType() == Variable.Type.FORMAT) {
+					final String plain = variable.buildPlain(sender, replacements);
+
+					// And we remove the white prefix that is by default added in every component
+					builder.append(plain.startsWith(ChatColor.COLOR_CHAR + "f" + ChatColor.COLOR_CHAR + "f") ? plain.substring(4) : plain);
+
+					return;
+				}
+			}
+
+			if (replacements != null && !replacements.isEmpty()) {
+				boolean found = false;
+				String replacement = null;
+
+				for (final Map.Entry<String, Object> entry : replacements.entrySet()) {
+					String replacementKey = entry.getKey();
+
+					replacementKey = replacementKey.startsWith("{") ? replacementKey.substring(1) : replacementKey;
+					replacementKey = replacementKey.endsWith("}") ? replacementKey.substring(0, replacementKey.length() - 1) : replacementKey;
+
+					if (replacementKey.equals(this.name)) {
+						replacement = entry.getValue() == null ? "null" : entry.getValue().toString();
+						found = true;
+					}
+				}
+
+				if (found) {
+					this.appendSpaced(builder, replacement);
+
+					return;
+				}
+			}
+
+			if (this.inner != null) {
+				builder.append('%');
+				this.inner.renderTo(builder, player, sender, placeholders, placeholderPlayer, replacements, replaceScript);
+				builder.append('%');
+
+			} else
+				builder.append(this.raw);
+		}
+
+		/*
+		 * Append the colorized value with spaces around it if set and the value is not empty
+		 */
+		private void appendSpaced(StringBuilder builder, String value) {
+			if (value.isEmpty())
+				return;
+
+			final boolean emptyColorless = Common.stripColors(value).isEmpty();
+
+			if (this.frontSpace && !emptyColorless)
+				builder.append(' ');
+
+			builder.append(Common.colorize(value));
+
+			if (this.backSpace && !emptyColorless)
+				builder.append(' ');
+		}
+	}
+
+	/**
+	 * Replaced messages of one player, dropping the least recently used message
+	 * when the limit is reached
+	 */
+	private static final class PlayerCache {
+
+		/**
+		 * Original message - replaced message, in access order
+		 */
+		private final LruCache<String, CachedMessage> messages = new LruCache<>(PLAYER_CACHE_LIMIT);
+
+		/*
+		 * Return the cached message replaced with the same options, or null if not cached or expired
+		 */
+		String get(String message, boolean colorize, boolean replaceScript, long tick) {
+			final CachedMessage cached = this.messages.get(message);
+
+			if (cached == null || cached.colorize != colorize || cached.replaceScript != replaceScript) {
+				cacheMisses.increment();
+
+				return null;
+			}
+
+			if (tick >= cached.expireTick) {
+				this.messages.remove(message);
+				cacheMisses.increment();
+
+				return null;
+			}
+
+			cacheHits.increment();
+
+			return cached.replaced;
+		}
+
+		/*
+		 * Cache the replaced message until the given tick
+		 */
+		synchronized void put(String message, String replaced, boolean colorize, boolean replaceScript, long expireTick) {
+			final long evictions = this.messages.getEvictions();
+
+			this.messages.put(message, new CachedMessage(replaced, colorize, replaceScript, expireTick));
+			cacheEvictions.add(this.messages.getEvictions() - evictions);
+		}
+	}
+
+	/**
+	 * A message replaced for a player
+	 */
+	@RequiredArgsConstructor
+	private static final class CachedMessage {
+
+		/**
+		 * The message with variables replaced
+		 */
+		private final String replaced;
+
+		/**
+		 * The options the message was replaced with
+		 */
+		private final boolean colorize, replaceScript;
+
+		/**
+		 * The tick at which this message is no longer valid
+		 */
+		private final long expireTick;
+	}
 }
@@ -4,10 +4,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.regex.Pattern;
 
-import org.mineacademy.fo.Common;
 import org.mineacademy.fo.Valid;
 
 import lombok.Getter;
@@ -26,14 +25,15 @@ public final class Whiteblacklist {
 	private final Set<String> items;
 
 	/**
-	 * The list of items in precompiled pattern formats
+	 * The list of items normalized for fast matching
 	 */
-	private final Set<Pattern> patterns;
+	private final CompiledList compiledItems;
 
 	/**
-	 * Were patterns compiled?
+	 * The list of items compiled as patterns, compiled in the constructor or
+	 * on the first regex check
 	 */
-	private final boolean compileAsPatterns;
+	private volatile RegexList patterns;
 
 	/**
 	 * Used for matching items against an item
@@ -73,9 +73,6 @@ public final class Whiteblacklist {
 	 * @param compileAsPatterns shall we precompile the list for maximum performance?
 	 */
 	public Whiteblacklist(@NonNull List<String> items, boolean compileAsPatterns) {
-		this.patterns = new HashSet<>();
-		this.compileAsPatterns = compileAsPatterns;
-
 		if (!items.isEmpty()) {
 			final String firstLine = items.get(0);
 			final String secondLine = items.size() > 1 ? items.get(1) : "";
@@ -98,17 +95,17 @@ public final class Whiteblacklist {
 			this.items = new HashSet<>(copyList);
 			this.whitelist = whitelist;
 			this.entireList = entireList;
-			this.patterns.clear();
+			this.compiledItems = CompiledList.of(copyList);
 
 			if (compileAsPatterns)
-				for (String item : this.items)
-					this.patterns.add(Common.compilePattern(item));
+				this.patterns = RegexList.compile(this.items);
 		}
 
 		else {
 			this.items = new HashSet<>();
 			this.whitelist = true;
 			this.entireList = false;
+			this.compiledItems = CompiledList.of(this.items);
 		}
 	}
 
@@ -144,7 +141,7 @@ public final class Whiteblacklist {
 		if (this.entireList)
 			return this.whitelist;
 
-		final boolean match = Valid.isInList(item, this.items);
+		final boolean match = this.compiledItems.contains(item);
 
 		return this.whitelist ? match : !match;
 	}
@@ -160,11 +157,32 @@ public final class Whiteblacklist {
 		if (this.entireList)
 			return this.whitelist;
 
-		final boolean match = this.compileAsPatterns ? Valid.isInListRegexFast(item, this.patterns) : Valid.isInListRegex(item, this.items);
+		final boolean match = this.getPatterns().isMatching(item);
 
 		return this.whitelist ? match : !match;
 	}
 
+	/**
+	 * Return how many times each item was the first one matching in {@link #isInListRegex(String)}
+	 *
+	 * @return
+	 */
+	public Map<String, Long> getRegexHits() {
+		return this.getPatterns().getHits();
+	}
+
+	/*
+	 * Return items compiled as patterns, compiling them if not done yet
+	 */
+	private RegexList getPatterns() {
+		RegexList patterns = this.patterns;
+
+		if (patterns == null)
+			this.patterns = patterns = RegexList.compile(this.items);
+
+		return patterns;
+	}
+
 	/**
 	 * Return true if {@link Valid#isInListStartsWith(String, Iterable)} returns true
 	 * inverting it according to the {@link #isWhitelist()} flag
@@ -176,7 +194,7 @@ public final class Whiteblacklist {
 		if (this.entireList)
 			return this.whitelist;
 
-		final boolean match = Valid.isInListStartsWith(item, this.items);
+		final boolean match = this.compiledItems.startsWithAny(item);
 
 		return this.whitelist ? match : !match;
 	}
@@ -1,7 +1,6 @@
 package org.mineacademy.fo.plugin;
 
 import java.util.List;
-import java.util.Map;
 
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
@@ -25,6 +24,7 @@ import org.mineacademy.fo.model.HookManager;
 import org.mineacademy.fo.model.SimpleComponent;
 import org.mineacademy.fo.model.SimpleScoreboard;
 import org.mineacademy.fo.model.SpigotUpdater;
+import org.mineacademy.fo.model.Variables;
 import org.mineacademy.fo.settings.SimpleLocalization;
 
 /**
@@ -38,6 +38,7 @@ final class FoundationListener implements Listener {
 	@EventHandler(priority = EventPriority.HIGHEST)
 	public void onQuit(PlayerQuitEvent event) {
 		SimpleScoreboard.clearBoardsFor(event.getPlayer());
+		Variables.clearCache(event.getPlayer());
 	}
 
 	@EventHandler(priority = EventPriority.HIGHEST)
@@ -94,13 +95,20 @@ final class FoundationListener implements Listener {
 		}
 
 		final ChatPaginator chatPages = (ChatPaginator) player.getMetadata(nbtPageTag).get(0).value();
-		final Map<Integer, List<SimpleComponent>> pages = chatPages.getPages();
 
-		// Remove empty lines
-		pages.entrySet().removeIf(entry -> entry.getValue().isEmpty());
+		// Show the page when lines are loaded
+		if (chatPages.isLoading()) {
+			chatPages.send(player, page + 1);
 
-		if (pages.isEmpty() || !pages.containsKey(page)) {
-			final String playerMessage = pages.isEmpty() ? SimpleLocalization.Pages.NO_PAGES : SimpleLocalization.Pages.NO_PAGE;
+			event.setCancelled(true);
+			return;
+		}
+
+		final int pageCount = chatPages.getPageCount();
+		final List<SimpleComponent> messagesOnPage = chatPages.getPage(page);
+
+		if (pageCount == 0 || messagesOnPage == null) {
+			final String playerMessage = pageCount == 0 ? SimpleLocalization.Pages.NO_PAGES : SimpleLocalization.Pages.NO_PAGE;
 
 			if (Messenger.ENABLED)
 				Messenger.error(player, playerMessage);
@@ -115,7 +123,6 @@ final class FoundationListener implements Listener {
 			for (final SimpleComponent component : chatPages.getHeader())
 				component.send(player);
 
-			final List<SimpleComponent> messagesOnPage = pages.get(page);
 			int count = 1;
 
 			for (final SimpleComponent comp : messagesOnPage)
@@ -123,7 +130,7 @@ final class FoundationListener implements Listener {
 
 			int whiteLines = chatPages.getLinesPerPage();
 
-			if (whiteLines == 15 && pages.size() == 1)
+			if (whiteLines == 15 && pageCount == 1)
 				if (messagesOnPage.size() < 17)
 					whiteLines = 7;
 				else
@@ -137,10 +144,10 @@ final class FoundationListener implements Listener {
 		}
 
 		// Fill in the pagination line
-		if (MinecraftVersion.atLeast(V.v1_7) && pages.size() > 1) {
+		if (MinecraftVersion.atLeast(V.v1_7) && pageCount > 1) {
 			Common.tellNoPrefix(player, " ");
 
-			final int pagesDigits = (int) (Math.log10(pages.size()) + 1);
+			final int pagesDigits = (int) (Math.log10(pageCount) + 1);
 			final int multiply = 23 - (int) MathUtil.ceiling(pagesDigits);
 
 			final SimpleComponent pagination = SimpleComponent.of(chatPages.getThemeColor() + "&m" + Common.duplicate("-", multiply) + "&r");
@@ -152,9 +159,9 @@ final class FoundationListener implements Listener {
 
 			pagination.append("&f" + (page + 1)).onHover(SimpleLocalization.Pages.GO_TO_FIRST_PAGE).onClickRunCmd("/#flp 1");
 			pagination.append("/").onHover(SimpleLocalization.Pages.TOOLTIP);
-			pagination.append(pages.size() + "").onHover(SimpleLocalization.Pages.GO_TO_LAST_PAGE).onClickRunCmd("/#flp " + pages.size());
+			pagination.append(pageCount + "").onHover(SimpleLocalization.Pages.GO_TO_LAST_PAGE).onClickRunCmd("/#flp " + pageCount);
 
-			if (page + 1 >= pages.size())
+			if (page + 1 >= pageCount)
 				pagination.append(" &7» ");
 			else
 				pagination.append(" &6» ").onHover(SimpleLocalization.Pages.GO_TO_PAGE.replace("{page}", String.valueOf(page + 2))).onClickRunCmd("/#flp " + (page + 2));
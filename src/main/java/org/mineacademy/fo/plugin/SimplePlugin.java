@@ -51,12 +51,18 @@ import org.mineacademy.fo.menu.MenuListener;
 import org.mineacademy.fo.menu.tool.Tool;
 import org.mineacademy.fo.menu.tool.ToolsListener;
 import org.mineacademy.fo.metrics.Metrics;
+import org.mineacademy.fo.model.BroadcastPipeline;
 import org.mineacademy.fo.model.DiscordListener;
 import org.mineacademy.fo.model.FolderWatcher;
 import org.mineacademy.fo.model.HookManager;
+import org.mineacademy.fo.model.MessageTemplate;
+import org.mineacademy.fo.model.PacketListener;
+import org.mineacademy.fo.model.PlaceholderResolver;
+import org.mineacademy.fo.model.RegexTimings;
 import org.mineacademy.fo.model.SimpleHologram;
 import org.mineacademy.fo.model.SimpleScoreboard;
 import org.mineacademy.fo.model.SpigotUpdater;
+import org.mineacademy.fo.model.Variables;
 import org.mineacademy.fo.region.DiskRegion;
 import org.mineacademy.fo.remain.CompMetadata;
 import org.mineacademy.fo.remain.Remain;
@@ -828,6 +834,15 @@ public abstract class SimplePlugin extends JavaPlugin implements Listener {
 
 		BlockVisualizer.stopAll();
 		FolderWatcher.stopThreads();
+		MessageTemplate.clearCache();
+		Variables.clearCache();
+		PlaceholderResolver.stop();
+		Common.clearPatternCache();
+		RegexTimings.clear();
+		BroadcastPipeline.clear();
+
+		if (HookManager.isProtocolLibLoaded())
+			PacketListener.clearRoutes();
 
 		FileConfig.clearLoadedSections();
 
@@ -1,5 +1,6 @@
 package org.mineacademy.fo.settings;
 
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
@@ -42,6 +43,17 @@ public class ConfigSection {
 	 */
 	private final String fullPath;
 
+	/**
+	 * Comments and blank lines written above keys of this section, parsed once
+	 * from the default file. Null if this section has no comments.
+	 */
+	private Map<String, String> comments;
+
+	/**
+	 * Comments and blank lines found after the last key, only used on the root section.
+	 */
+	String footer;
+
 	ConfigSection() {
 		this.path = "";
 		this.fullPath = "";
@@ -324,6 +336,27 @@ public class ConfigSection {
 		return builder.toString();
 	}
 
+	// ------------------------------------------------------------------------------------
+	// Comments
+	// ------------------------------------------------------------------------------------
+
+	/*
+	 * Return the comment above the given direct child key, or null if not set
+	 */
+	final String getComment(@NonNull String key) {
+		return this.comments == null ? null : this.comments.get(key);
+	}
+
+	/*
+	 * Set the comment above the given direct child key
+	 */
+	final void setComment(@NonNull String key, @NonNull String comment) {
+		if (this.comments == null)
+			this.comments = new HashMap<>();
+
+		this.comments.put(key, comment);
+	}
+
 	// ------------------------------------------------------------------------------------
 	// Getters
 	// ------------------------------------------------------------------------------------
@@ -2,6 +2,8 @@ package org.mineacademy.fo.settings;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.mineacademy.fo.Common;
 import org.mineacademy.fo.Messenger;
@@ -11,6 +13,7 @@ import org.mineacademy.fo.Valid;
 import org.mineacademy.fo.collection.SerializedMap;
 import org.mineacademy.fo.exception.FoScriptException;
 import org.mineacademy.fo.model.JavaScriptExecutor;
+import org.mineacademy.fo.model.MessageTemplate;
 import org.mineacademy.fo.model.SimpleComponent;
 
 /**
@@ -27,6 +30,11 @@ public final class Lang extends YamlConfig {
 	 */
 	private static Lang instance;
 
+	/**
+	 * Keys compiled into templates, cleared on reload and when prefixes change
+	 */
+	private final Map<String, MessageTemplate> templates = new ConcurrentHashMap<>();
+
 	/*
 	 * Create a new instance and load the given file
 	 */
@@ -78,6 +86,7 @@ public final class Lang extends YamlConfig {
 	@Deprecated
 	public static void reloadLang() {
 		if (instance != null) {
+			instance.templates.clear();
 			instance.reload();
 			instance.save();
 		}
@@ -113,6 +122,17 @@ public final class Lang extends YamlConfig {
 		}
 	}
 
+	/**
+	 * Clear keys compiled into templates, called automatically when {@link Messenger} prefixes change
+	 *
+	 * @deprecated internal use only
+	 */
+	@Deprecated
+	public static void clearTemplates() {
+		if (instance != null)
+			instance.templates.clear();
+	}
+
 	// ------------------------------------------------------------------------------------------------------------
 	// Getters
 	// ------------------------------------------------------------------------------------------------------------
@@ -219,7 +239,9 @@ public final class Lang extends YamlConfig {
 	 */
 	@Deprecated
 	public static String ofScript(String path, SerializedMap scriptVariables, Object... stringVariables) {
-		String script = of(path, stringVariables);
+		checkInit();
+
+		String script = translate(Messenger.replacePrefixes(instance.getStringStrict(path)), stringVariables);
 		Object result;
 
 		// Our best guess is that the user has removed the script completely but forgot to put the entire message in '',
@@ -254,14 +276,31 @@ public final class Lang extends YamlConfig {
 	 * @return
 	 */
 	public static String of(String path, Object... variables) {
+		return ofTemplate(path).render(variables);
+	}
+
+	/**
+	 * Return a key from the localization file compiled into a template
+	 * with prefixes replaced, compiled only once until the file or prefixes are reloaded.
+	 *
+	 * Use this to send the same message many times with different {0} {1} etc. variables,
+	 * {@link MessageTemplate#renderColorized(Object...)} also colorizes the key but not the variables.
+	 *
+	 * @param path
+	 * @return
+	 */
+	public static MessageTemplate ofTemplate(String path) {
 		checkInit();
 
-		String key = instance.getStringStrict(path);
+		MessageTemplate template = instance.templates.get(path);
 
-		key = Messenger.replacePrefixes(key);
-		key = translate(key, variables);
+		if (template == null) {
+			template = MessageTemplate.compile(Messenger.replacePrefixes(instance.getStringStrict(path)));
 
-		return key;
+			instance.templates.put(path, template);
+		}
+
+		return template;
 	}
 
 	/*
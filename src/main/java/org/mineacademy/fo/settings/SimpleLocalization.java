@@ -10,6 +10,7 @@ import org.mineacademy.fo.command.PermsCommand;
 import org.mineacademy.fo.command.ReloadCommand;
 import org.mineacademy.fo.menu.tool.RegionTool;
 import org.mineacademy.fo.model.ChatPaginator;
+import org.mineacademy.fo.model.MessageTemplate;
 import org.mineacademy.fo.plugin.SimplePlugin;
 import org.mineacademy.fo.settings.FileConfig.AccusativeHelper;
 
@@ -18,6 +19,8 @@ import org.mineacademy.fo.settings.FileConfig.AccusativeHelper;
  * We create the localization/messages_LOCALEPREFIX.yml file
  * automatically and fill it with values from your localization/messages_LOCALEPREFIX.yml
  * file placed within in your plugin's jar file.
+ *
+ * To send a key many times, compile it once using {@link MessageTemplate#of(String)}.
  */
 @SuppressWarnings("unused")
 public class SimpleLocalization extends YamlStaticConfig {
@@ -554,6 +557,7 @@ public class SimpleLocalization extends YamlStaticConfig {
 		public static String GO_TO_PAGE = "&7Go to page {page}";
 		public static String GO_TO_FIRST_PAGE = "&7Go to the first page";
 		public static String GO_TO_LAST_PAGE = "&7Go to the last page";
+		public static String LOADING = "&7Loading, please wait...";
 		public static String[] TOOLTIP = {
 				"&7You can also navigate using the",
 				"&7hidden /#flp <page> command."
@@ -588,6 +592,9 @@ public class SimpleLocalization extends YamlStaticConfig {
 
 			if (isSetDefault("Tooltip"))
 				TOOLTIP = Common.toArray(getStringList("Tooltip"));
+
+			if (isSetDefault("Loading"))
+				LOADING = getString("Loading");
 		}
 	}
 
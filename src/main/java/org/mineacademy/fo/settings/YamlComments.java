@@ -1,30 +1,25 @@
 package org.mineacademy.fo.settings;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.Nullable;
 
-import org.bukkit.configuration.ConfigurationSection;
-import org.bukkit.configuration.MemorySection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.configuration.serialization.ConfigurationSerializable;
+import org.bukkit.configuration.serialization.ConfigurationSerialization;
 import org.mineacademy.fo.Common;
 import org.mineacademy.fo.FileUtil;
 import org.mineacademy.fo.Valid;
-import org.mineacademy.fo.remain.Remain;
-import org.yaml.snakeyaml.DumperOptions;
 import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.resolver.Resolver;
 
 import lombok.NonNull;
 import lombok.SneakyThrows;
@@ -32,9 +27,10 @@ import lombok.SneakyThrows;
 /**
  * A class to update/add new sections/keys to your config while keeping your current values and keeping your comments
  * Algorithm:
- * Read the new file and scan for comments and ignored sections, if ignored section is found it is treated as a comment.
- * Read and write each line of the new config, if the old config has value for the given key it writes that value in the new config.
- * If a key has an attached comment above it, it is written first.
+ * When the default file is loaded, scan it once for comments and attach them to the keys of the default {@link ConfigSection}.
+ * When saving, walk the default sections in their order and write each key in a single pass, if the current config has
+ * value for the given key it writes that value instead. If a key has an attached comment above it, it is written first.
+ * Ignored sections are written from the current config as a whole.
  *
  * @author tchristofferson, kangarko
  *
@@ -44,394 +40,527 @@ import lombok.SneakyThrows;
 final class YamlComments {
 
 	/**
-	 * Update a yaml file from a resource inside your plugin jar
+	 * Used to check if a string would load back as a string when written without quotes
+	 */
+	private static final Resolver RESOLVER = new Resolver();
+
+	/**
+	 * Parses comments, blank lines and ignored lines from the given default file
+	 * content and attaches them to the keys in the given section loaded from it.
 	 *
-	 * @param resourceName The yaml file name to update from, typically config.yml
-	 * @param toUpdate The yaml file to update
-	 * @param ignoredSections The sections to ignore from being forcefully updated & comments set
+	 * @param lines The lines of the default file
+	 * @param root The section loaded from the lines
 	 */
-	@SneakyThrows
-	public static void writeComments(@NonNull String resourceName, @NonNull File toUpdate, @NonNull List<String> ignoredSections) {
+	static void parseComments(@NonNull List<String> lines, @NonNull ConfigSection root) {
+		final StringBuilder builder = new StringBuilder();
+		final StringBuilder keyBuilder = new StringBuilder();
+		int lastLineIndentCount = 0;
+
+		// Lines indented deeper than this belong to a list or a multiline string
+		int skipIndent = -1;
+		boolean inBlockString = false;
+		final StringBuilder skippedComments = new StringBuilder();
+
+		for (String line : lines) {
+			if (line == null)
+				line = "";
+
+			final String trimmed = line.trim();
+
+			if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+				(skipIndent != -1 ? skippedComments : builder).append(line).append("\n");
 
-		final List<String> newLines = FileUtil.getInternalFileContent(resourceName);
+				continue;
+			}
+
+			final int spaces = countSpaces(line);
+
+			if (skipIndent != -1) {
+				if (spaces > skipIndent) {
+
+					// Blank lines inside multiline strings are part of the value
+					if (!inBlockString)
+						builder.append(skippedComments);
+
+					skippedComments.setLength(0);
+					continue;
+				}
+
+				builder.append(skippedComments);
+				skippedComments.setLength(0);
+
+				skipIndent = -1;
+				inBlockString = false;
+			}
 
-		final YamlConfiguration currentConfig = new YamlConfiguration();
+			if (trimmed.startsWith("-")) {
+				skipIndent = spaces;
 
-		try {
-			currentConfig.load(toUpdate);
+				continue;
+			}
 
-		} catch (final Throwable t) {
-			Remain.sneaky(t);
+			lastLineIndentCount = setFullKey(keyBuilder, trimmed, spaces / 2, lastLineIndentCount);
+
+			if (keyBuilder.length() > 0 && builder.length() > 0) {
+				attachComment(root, keyBuilder.toString(), builder.toString());
+
+				builder.setLength(0);
+			}
+
+			final int colonIndex = trimmed.indexOf(':');
+			final String value = colonIndex == -1 ? "" : trimmed.substring(colonIndex + 1).trim();
+
+			if (value.startsWith("|") || value.startsWith(">")) {
+				skipIndent = spaces;
+				inBlockString = true;
+			}
 		}
 
-		final YamlConfiguration defaultConfig = new YamlConfiguration();
+		builder.append(skippedComments);
+
+		if (builder.length() > 0)
+			root.footer = builder.toString();
+	}
+
+	/*
+	 * Attach the comment to the section holding the given full key
+	 */
+	private static void attachComment(ConfigSection root, String fullKey, String comment) {
+		final int lastDot = fullKey.lastIndexOf('.');
+		final ConfigSection section = lastDot == -1 ? root : root.retrieveConfigurationSection(fullKey.substring(0, lastDot));
+
+		if (section != null)
+			section.setComment(fullKey.substring(lastDot + 1), comment);
+	}
+
+	//Counts spaces in front of key
+	private static int countSpaces(String s) {
+		int spaces = 0;
+
+		for (int i = 0; i < s.length(); i++)
+			if (s.charAt(i) == ' ')
+				spaces++;
+			else
+				break;
+
+		return spaces;
+	}
+
+	//Ex. keyBuilder = key1.key2.key3 --> key1.key2
+	private static void removeLastKey(StringBuilder keyBuilder) {
+		final int lastDot = keyBuilder.lastIndexOf(".");
+
+		keyBuilder.setLength(lastDot == -1 ? 0 : lastDot);
+	}
+
+	//Updates the keyBuilder and returns configLines number of indents, 1 indent = 2 spaces
+	private static int setFullKey(StringBuilder keyBuilder, String trimmedLine, int currentIndents, int lastLineIndentCount) {
+		String key = trimmedLine.split(":")[0];
+
+		if (key.length() > 1 && (key.startsWith("'") && key.endsWith("'") || key.startsWith("\"") && key.endsWith("\"")))
+			key = key.substring(1, key.length() - 1);
+
+		if (keyBuilder.length() == 0)
+			keyBuilder.append(key);
+
+		else if (currentIndents == lastLineIndentCount) {
+			//Replace the last part of the key with current key
+			removeLastKey(keyBuilder);
+
+			if (keyBuilder.length() > 0)
+				keyBuilder.append(".");
+
+			keyBuilder.append(key);
+
+		} else if (currentIndents > lastLineIndentCount)
+			//Append current key to the keyBuilder
+			keyBuilder.append(".").append(key);
 
-		try {
-			defaultConfig.loadFromString(String.join("\n", newLines));
+		else {
+			final int difference = lastLineIndentCount - currentIndents;
 
-		} catch (final Throwable t) {
-			Remain.sneaky(t);
+			for (int i = 0; i < difference + 1; i++)
+				removeLastKey(keyBuilder);
+
+			if (keyBuilder.length() > 0)
+				keyBuilder.append(".");
+
+			keyBuilder.append(key);
 		}
 
-		final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(toUpdate), StandardCharsets.UTF_8));
+		return currentIndents;
+	}
+
+	/**
+	 * Write the current config in the order and with comments of the default config,
+	 * moving keys not found in defaults into the unused/ folder.
+	 *
+	 * @param file The file we are saving, used to name the backup file for unused keys
+	 * @param defaults The default section with comments parsed by {@link #parseComments(List, ConfigSection)}
+	 * @param current The section holding current values
+	 * @param ignoredSections The sections to ignore from being forcefully updated & comments set
+	 * @param yaml The yaml instance used to write values of unknown types
+	 *
+	 * @return the file content
+	 */
+	@SneakyThrows
+	static String write(@NonNull File file, @NonNull ConfigSection defaults, @NonNull ConfigSection current, @NonNull List<String> ignoredSections, @NonNull Yaml yaml) {
 
 		// ignoredSections can ONLY contain configurations sections
-		for (final String ignoredSection : ignoredSections)
-			if (defaultConfig.isSet(ignoredSection))
-				Valid.checkBoolean(defaultConfig.isConfigurationSection(ignoredSection), "Can only ignore config sections in " + resourceName + " (file " + toUpdate + ")" + " not '" + ignoredSection + "' that is " + defaultConfig.get(ignoredSection));
+		for (final String ignoredSection : ignoredSections) {
+			final Object defaultValue = defaults.retrieve(ignoredSection);
+
+			if (defaultValue != null)
+				Valid.checkBoolean(defaultValue instanceof ConfigSection, "Can only ignore config sections in " + file.getName() + " not '" + ignoredSection + "' that is " + defaultValue);
+		}
 
 		// Save keys added to config that are not in default and would otherwise be lost
-		final Set<String> newKeys = defaultConfig.getKeys(true);
-		final Map<String, Object> removedKeys = new HashMap<>();
+		final Set<String> defaultKeys = defaults.getKeys(true);
+		final Map<String, Object> removedKeys = new LinkedHashMap<>();
 
 		outerLoop:
-		for (final Map.Entry<String, Object> oldEntry : currentConfig.getValues(true).entrySet()) {
-			final String oldKey = oldEntry.getKey();
+		for (final Map.Entry<String, Object> entry : current.getValues(true).entrySet()) {
+			final String key = entry.getKey();
 
 			for (final String ignoredKey : ignoredSections)
-				if (oldKey.startsWith(ignoredKey))
+				if (key.startsWith(ignoredKey))
 					continue outerLoop;
 
-			if (!newKeys.contains(oldKey))
-				removedKeys.put(oldKey, oldEntry.getValue());
+			if (!defaultKeys.contains(key))
+				removedKeys.put(key, entry.getValue());
 		}
 
 		// Move to unused/ folder and retain old path
 		if (!removedKeys.isEmpty()) {
-			final File backupFile = FileUtil.getOrMakeFile("unused/" + toUpdate.getName());
-
+			final File backupFile = FileUtil.getOrMakeFile("unused/" + file.getName());
 			final FileConfiguration backupConfig = YamlConfiguration.loadConfiguration(backupFile);
 
-			for (final Map.Entry<String, Object> entry : removedKeys.entrySet())
-				backupConfig.set(entry.getKey(), entry.getValue());
+			for (final Map.Entry<String, Object> entry : removedKeys.entrySet()) {
+				final String key = entry.getKey();
+				final Object value = entry.getValue();
+
+				// Children are stored separately
+				if (value instanceof ConfigSection) {
+					if (!backupConfig.isSet(key))
+						backupConfig.createSection(key);
+
+				} else
+					backupConfig.set(key, value);
+			}
 
 			backupConfig.save(backupFile);
 
-			Common.warning("The following entries in " + toUpdate.getName() + " are unused and were moved into " + backupFile + ": " + removedKeys.keySet());
+			for (final String key : removedKeys.keySet())
+				current.store(key, null);
+
+			Common.warning("The following entries in " + file.getName() + " are unused and were moved into " + backupFile + ": " + removedKeys.keySet());
 		}
 
-		final DumperOptions dumperOptions = new DumperOptions();
-		dumperOptions.setWidth(4096);
+		final StringBuilder builder = new StringBuilder();
+
+		writeSection(builder, defaults, current, "", "", ignoredSections, yaml);
 
-		final Yaml yaml = new Yaml(dumperOptions);
-		final Map<String, String> comments = parseComments(newLines, currentConfig);
+		if (defaults.footer != null)
+			builder.append(defaults.footer);
 
-		write(defaultConfig, currentConfig, comments, ignoredSections, writer, yaml);
+		return builder.toString();
 	}
 
-	// Write method doing the work.
-	// It checks if key has a comment associated with it and writes comment then the key and value
-	private static void write(FileConfiguration newConfig, FileConfiguration oldConfig, Map<String, String> comments, List<String> ignoredSections, BufferedWriter writer, Yaml yaml) throws IOException {
+	// Writes keys in the order of the default section, each with its comment and current value if set
+	private static void writeSection(StringBuilder builder, ConfigSection defaults, @Nullable ConfigSection current, String path, String indent, List<String> ignoredSections, Yaml yaml) {
+		for (final Map.Entry<String, Object> entry : defaults.map.entrySet()) {
+			final String key = entry.getKey();
+			final String fullKey = path.isEmpty() ? key : path + "." + key;
+			final String comment = defaults.getComment(key);
 
-		final Set<String> copyAllowed = new HashSet<>();
-		final Set<String> copyDenied = new HashSet<>();
-		final Set<String> reverseCopy = new HashSet<>();
+			final Object defaultValue = entry.getValue();
+			final Object currentValue = current != null ? current.map.get(key) : null;
 
-		outerloop:
-		for (final String key : newConfig.getKeys(true)) {
+			// No \n character necessary, new line is automatically at end of comment
+			if (comment != null)
+				builder.append(comment);
 
-			checkIgnore:
-			{
+			// Write the whole section users can edit, from current config if set
+			if (ignoredSections.contains(fullKey))
+				writeEntry(builder, indent, indent, key, currentValue != null ? currentValue : defaultValue, defaultValue instanceof ConfigSection ? (ConfigSection) defaultValue : null, yaml);
 
-				for (final String allowed : copyAllowed)
-					if (key.startsWith(allowed))
-						break checkIgnore;
+			// Write the section, taking old values from the old section, if any
+			else if (defaultValue instanceof ConfigSection && !((ConfigSection) defaultValue).map.isEmpty()) {
+				builder.append(indent).append(formatKey(key)).append(":\n");
 
-				for (final String allowed : copyAllowed)
-					if (key.startsWith(allowed))
-						continue outerloop;
+				writeSection(builder, (ConfigSection) defaultValue, currentValue instanceof ConfigSection ? (ConfigSection) currentValue : null, fullKey, indent + "  ", ignoredSections, yaml);
+			}
 
-				// These keys are already written below
-				for (final String allowed : reverseCopy)
-					if (key.startsWith(allowed))
-						continue outerloop;
+			// Write the old object or the new one if not set
+			else
+				writeEntry(builder, indent, indent, key, currentValue != null ? currentValue : defaultValue, null, yaml);
+		}
+	}
 
-				for (final String ignoredSection : ignoredSections) {
-					if (key.equals(ignoredSection)) {
-						Object oldIgnoredObject = oldConfig.get(ignoredSection);
-						Object newIgnoredObject = newConfig.get(ignoredSection);
+	// Writes the key and its value, the first line starts with linePrefix and nested lines use indent
+	private static void writeEntry(StringBuilder builder, String linePrefix, String indent, String key, Object value, @Nullable ConfigSection comments, Yaml yaml) {
+		builder.append(linePrefix).append(formatKey(key)).append(":");
 
-						// Special case if people put [] or {}
-						if (("{}".equals(oldIgnoredObject) && "{}".equals(newIgnoredObject))
-								|| (oldIgnoredObject instanceof List && ((List<?>) oldIgnoredObject).isEmpty() && newIgnoredObject instanceof List && ((List<?>) newIgnoredObject).isEmpty())
-								|| (oldIgnoredObject instanceof MemorySection && ((MemorySection) oldIgnoredObject).getKeys(false).isEmpty()) && newIgnoredObject instanceof MemorySection && ((MemorySection) newIgnoredObject).getKeys(false).isEmpty()) {
-							copyDenied.add(ignoredSection);
+		value = unwrap(value);
 
-							write0(key, "{}", true, newConfig, oldConfig, comments, ignoredSections, writer, yaml);
-							continue outerloop;
-						}
+		if (value instanceof Map) {
+			final Map<?, ?> map = (Map<?, ?>) value;
 
-						// Write from new to old config
-						if (!oldConfig.isSet(ignoredSection)) {
-							copyAllowed.add(ignoredSection);
+			if (map.isEmpty())
+				builder.append(" {}\n");
 
-							break;
-						}
+			else {
+				builder.append("\n");
 
-						// Write from old to new, copying all keys and subkeys manually
-						else {
-							write0(key, null, true, newConfig, oldConfig, comments, ignoredSections, writer, yaml);
+				writeMap(builder, indent + "  ", indent + "  ", map, comments, yaml);
+			}
 
-							for (final String oldKey : oldConfig.getConfigurationSection(ignoredSection).getKeys(true))
-								write0(ignoredSection + "." + oldKey, null, true, oldConfig, newConfig, comments, ignoredSections, writer, yaml);
+		} else if (value instanceof Collection) {
+			final Collection<?> list = (Collection<?>) value;
 
-							reverseCopy.add(ignoredSection);
-							continue outerloop;
-						}
-					}
+			if (list.isEmpty())
+				builder.append(" []\n");
 
-					if (key.startsWith(ignoredSection))
-						continue outerloop;
-				}
-			}
+			else {
+				builder.append("\n");
 
-			write0(key, null, false, newConfig, oldConfig, comments, ignoredSections, writer, yaml);
+				for (final Object item : list)
+					writeListItem(builder, indent, item, yaml);
+			}
 		}
 
-		final String danglingComments = comments.get(null);
+		// Split multi line strings using |-
+		else if (value instanceof String && isBlockString((String) value)) {
+			builder.append(" |-\n");
 
-		if (danglingComments != null)
-			writer.write(danglingComments);
+			for (final String line : ((String) value).split("\n", -1)) {
+				if (!line.isEmpty())
+					builder.append(indent).append("  ").append(line);
 
-		writer.close();
-	}
+				builder.append("\n");
+			}
+
+		} else if (isScalar(value))
+			builder.append(" ").append(formatScalar(value, false)).append("\n");
 
-	private static void write0(String key, @Nullable String forceWriteKey, boolean forceNew, FileConfiguration newConfig, FileConfiguration oldConfig, Map<String, String> comments, List<String> ignoredSections, BufferedWriter writer, Yaml yaml) throws IOException {
+		// Let the dumper handle unknown types
+		else {
+			final String dump = yaml.dump(value);
 
-		final String[] keys = key.split("\\.");
-		final String actualKey = keys[keys.length - 1];
-		final String comment = comments.remove(key);
+			if (dump.indexOf('\n') == dump.length() - 1)
+				builder.append(" ").append(dump);
 
-		final StringBuilder prefixBuilder = new StringBuilder();
-		final int indents = keys.length - 1;
-		appendPrefixSpaces(prefixBuilder, indents);
-		final String prefixSpaces = prefixBuilder.toString();
+			else {
+				builder.append("\n");
 
-		// No \n character necessary, new line is automatically at end of comment
-		if (comment != null)
-			writer.write(comment);
+				for (final String line : dump.split("\n"))
+					builder.append(indent).append("  ").append(line).append("\n");
+			}
+		}
+	}
 
-		final Object newObj = newConfig.get(key);
-		final Object oldObj = oldConfig.get(key);
+	// Writes map entries with comments from the given default section, if any
+	private static void writeMap(StringBuilder builder, String firstLinePrefix, String indent, Map<?, ?> map, @Nullable ConfigSection comments, Yaml yaml) {
+		boolean first = true;
 
-		// Force write whatever the parameter says
-		if (forceWriteKey != null)
-			write(forceWriteKey, actualKey, prefixSpaces, yaml, writer);
+		for (final Map.Entry<?, ?> entry : map.entrySet()) {
+			final String key = String.valueOf(entry.getKey());
+			ConfigSection childComments = null;
 
-		// Write the old section
-		else if (newObj instanceof ConfigurationSection && !forceNew && oldObj instanceof ConfigurationSection)
-			writeSection(writer, actualKey, prefixSpaces, (ConfigurationSection) oldObj);
+			if (comments != null) {
+				final String comment = comments.getComment(key);
+				final Object child = comments.map.get(key);
 
-		// Write the new section, old value is no more
-		else if (newObj instanceof ConfigurationSection)
-			writeSection(writer, actualKey, prefixSpaces, (ConfigurationSection) newObj);
+				if (comment != null)
+					builder.append(comment);
 
-		// Write the old object
-		else if (oldObj != null && !forceNew)
-			write(oldObj, actualKey, prefixSpaces, yaml, writer);
+				if (child instanceof ConfigSection)
+					childComments = (ConfigSection) child;
+			}
+
+			writeEntry(builder, first ? firstLinePrefix : indent, indent, key, entry.getValue(), childComments, yaml);
+			first = false;
+		}
+	}
+
+	// Writes a list item, maps are written as block, nested lists in flow style
+	private static void writeListItem(StringBuilder builder, String indent, Object item, Yaml yaml) {
+		item = unwrap(item);
+
+		if (item instanceof Map && !((Map<?, ?>) item).isEmpty())
+			writeMap(builder, indent + "- ", indent + "  ", (Map<?, ?>) item, null, yaml);
 
-		// Write new object
 		else
-			write(newObj, actualKey, prefixSpaces, yaml, writer);
+			builder.append(indent).append("- ").append(formatFlow(item)).append("\n");
 	}
 
-	// Doesn't work with configuration sections, must be an actual object
-	// Auto checks if it is serializable and writes to file
-	private static void write(Object obj, String actualKey, String prefixSpaces, Yaml yaml, BufferedWriter writer) throws IOException {
+	// Writes the value in flow style, strings are always quoted
+	private static String formatFlow(Object value) {
+		value = unwrap(value);
 
-		if (obj instanceof ConfigurationSerializable)
-			writer.write(prefixSpaces + actualKey + ": " + yaml.dump(((ConfigurationSerializable) obj).serialize()));
+		if (value instanceof Map) {
+			final StringBuilder builder = new StringBuilder("{");
 
-		else if (obj instanceof String || obj instanceof Character) {
-			if (obj instanceof String) {
-				final String string = (String) obj;
+			for (final Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				if (builder.length() > 1)
+					builder.append(", ");
 
-				if (string.equals("{}")) {
-					writer.write(prefixSpaces + actualKey + ": {}\n");
+				builder.append(formatString(String.valueOf(entry.getKey()), true)).append(": ").append(formatFlow(entry.getValue()));
+			}
 
-					return;
-				}
+			return builder.append("}").toString();
+		}
 
-				// Split multi line strings using |-
-				else if (string.contains("\n")) {
-					writer.write(prefixSpaces + actualKey + ": |-\n");
+		if (value instanceof Collection) {
+			final StringBuilder builder = new StringBuilder("[");
 
-					for (final String line : string.split("\n"))
-						writer.write(prefixSpaces + "    " + line + "\n");
+			for (final Object item : (Collection<?>) value) {
+				if (builder.length() > 1)
+					builder.append(", ");
 
-					return;
-				}
+				builder.append(formatFlow(item));
 			}
 
-			writer.write(prefixSpaces + actualKey + ": " + yaml.dump(obj));
+			return builder.append("]").toString();
+		}
 
-		} else if (obj instanceof List)
-			writeList((List<?>) obj, actualKey, prefixSpaces, yaml, writer);
+		return isScalar(value) ? formatScalar(value, true) : formatString(String.valueOf(value), true);
+	}
 
-		else
-			writer.write(prefixSpaces + actualKey + ": " + yaml.dump(obj));
+	// Converts sections and serializable objects into maps
+	private static Object unwrap(Object value) {
+		if (value instanceof ConfigSection)
+			return ((ConfigSection) value).map;
 
-	}
+		if (value instanceof ConfigurationSerializable) {
+			final ConfigurationSerializable serializable = (ConfigurationSerializable) value;
+			final Map<String, Object> values = new LinkedHashMap<>();
 
-	// Writes a configuration section
-	private static void writeSection(BufferedWriter writer, String actualKey, String prefixSpaces, ConfigurationSection section) throws IOException {
-		if (section.getKeys(false).isEmpty())
-			writer.write(prefixSpaces + actualKey + ":");
+			values.put(ConfigurationSerialization.SERIALIZED_TYPE_KEY, ConfigurationSerialization.getAlias(serializable.getClass()));
+			values.putAll(serializable.serialize());
 
-		else
-			writer.write(prefixSpaces + actualKey + ":");
+			return values;
+		}
 
-		writer.write("\n");
+		return value;
 	}
 
-	// Writes a list of any object
-	private static void writeList(List<?> list, String actualKey, String prefixSpaces, Yaml yaml, BufferedWriter writer) throws IOException {
-		writer.write(getListAsString(list, actualKey, prefixSpaces, yaml));
+	private static boolean isScalar(Object value) {
+		return value == null || value instanceof String || value instanceof Character || value instanceof Number || value instanceof Boolean || value instanceof Enum;
 	}
 
-	private static String getListAsString(List<?> list, String actualKey, String prefixSpaces, Yaml yaml) {
-		final StringBuilder builder = new StringBuilder(prefixSpaces).append(actualKey).append(":");
+	private static String formatScalar(Object value, boolean quoteStrings) {
+		if (value == null)
+			return "null";
 
-		if (list.isEmpty()) {
-			builder.append(" []\n");
-			return builder.toString();
+		if (value instanceof Double || value instanceof Float) {
+			final double number = ((Number) value).doubleValue();
+
+			if (Double.isNaN(number))
+				return ".NaN";
+
+			if (Double.isInfinite(number))
+				return number > 0 ? ".inf" : "-.inf";
 		}
 
-		builder.append("\n");
+		if (value instanceof Number || value instanceof Boolean)
+			return value.toString();
 
-		for (int i = 0; i < list.size(); i++) {
-			final Object o = list.get(i);
+		if (value instanceof Enum)
+			return formatString(((Enum<?>) value).name(), quoteStrings);
 
-			if (o instanceof Map) {
-				int entryIndex = 0;
+		return formatString(value.toString(), quoteStrings);
+	}
 
-				for (final Map.Entry<?, ?> entry : ((Map<?, ?>) o).entrySet()) {
-					builder.append(prefixSpaces);
+	// Numeric keys are loaded back as strings, so we keep them plain
+	private static String formatKey(String key) {
+		boolean numeric = !key.isEmpty() && key.length() < 10 && (key.charAt(0) != '0' || key.length() == 1);
 
-					if (entryIndex == 0)
-						builder.append("- ");
-					else
-						builder.append("  ");
+		for (int i = 0; i < key.length() && numeric; i++)
+			numeric = Character.isDigit(key.charAt(i));
 
-					builder.append(entry.getKey()).append(": ").append(yaml.dump(entry.getValue()));
-					entryIndex++;
-				}
+		return numeric ? key : formatString(key, false);
+	}
 
-			} else if (o instanceof String || o instanceof Character)
-				builder.append(prefixSpaces).append("- '").append(o.toString().replace("'", "''")).append("'");
-			else if (o instanceof List)
-				builder.append(prefixSpaces).append("- ").append(yaml.dump(o));
-			else
-				builder.append(prefixSpaces).append("- ").append(o);
+	private static String formatString(String string, boolean forceQuotes) {
+		if (requiresEscaping(string))
+			return escape(string);
 
-			if (i != list.size())
-				builder.append("\n");
-		}
+		if (forceQuotes || !isPlain(string))
+			return "'" + string.replace("'", "''") + "'";
 
-		return builder.toString();
+		return string;
 	}
 
-	//Key is the config key, value = comment and/or ignored sections
-	//Parses comments, blank lines, and ignored sections
-	private static Map<String, String> parseComments(List<String> lines, FileConfiguration oldConfig) {
-		final Map<String, String> comments = new HashMap<>();
-		final StringBuilder builder = new StringBuilder();
-		final StringBuilder keyBuilder = new StringBuilder();
-		int lastLineIndentCount = 0;
-
-		//outer:
-		for (final String line : lines) {
-			if (line != null && line.trim().startsWith("-"))
-				continue;
+	// Block style is only safe when there are no special characters and lines keep their indentation
+	private static boolean isBlockString(String string) {
+		if (string.indexOf('\n') == -1 || string.endsWith("\n") || string.startsWith(" ") || string.startsWith("\n"))
+			return false;
 
-			if (line == null || line.trim().equals("") || line.trim().startsWith("#"))
-				builder.append(line).append("\n");
-			else {
-				lastLineIndentCount = setFullKey(keyBuilder, line, lastLineIndentCount);
+		for (int i = 0; i < string.length(); i++) {
+			final char c = string.charAt(i);
 
-				if (keyBuilder.length() > 0) {
-					comments.put(keyBuilder.toString(), builder.toString());
-					builder.setLength(0);
-				}
-			}
+			if (c != '\n' && requiresEscaping(c))
+				return false;
 		}
 
-		if (builder.length() > 0)
-			comments.put(null, builder.toString());
-
-		return comments;
+		return true;
 	}
 
-	//Counts spaces in front of key and divides by 2 since 1 indent = 2 spaces
-	private static int countIndents(String s) {
-		int spaces = 0;
-
-		for (final char c : s.toCharArray())
-			if (c == ' ')
-				spaces += 1;
-			else
-				break;
+	// Strings that can be written without quotes and load back the same
+	private static boolean isPlain(String string) {
+		if (string.isEmpty() || "-?:,[]{}#&*!|>'\"%@`".indexOf(string.charAt(0)) != -1)
+			return false;
 
-		return spaces / 2;
-	}
+		final char last = string.charAt(string.length() - 1);
 
-	//Ex. keyBuilder = key1.key2.key3 --> key1.key2
-	private static void removeLastKey(StringBuilder keyBuilder) {
-		String temp = keyBuilder.toString();
-		final String[] keys = temp.split("\\.");
+		if (Character.isWhitespace(string.charAt(0)) || Character.isWhitespace(last) || last == ':')
+			return false;
 
-		if (keys.length == 1) {
-			keyBuilder.setLength(0);
-			return;
-		}
+		if (string.contains(": ") || string.contains(" #") || string.indexOf('\t') != -1)
+			return false;
 
-		temp = temp.substring(0, temp.length() - keys[keys.length - 1].length() - 1);
-		keyBuilder.setLength(temp.length());
+		return RESOLVER.resolve(NodeId.scalar, string, true) == Tag.STR;
 	}
 
-	//Updates the keyBuilder and returns configLines number of indents
-	private static int setFullKey(StringBuilder keyBuilder, String configLine, int lastLineIndentCount) {
-		final int currentIndents = countIndents(configLine);
-		final String key = configLine.trim().split(":")[0];
+	private static boolean requiresEscaping(String string) {
+		for (int i = 0; i < string.length(); i++)
+			if (requiresEscaping(string.charAt(i)))
+				return true;
 
-		if (keyBuilder.length() == 0)
-			keyBuilder.append(key);
-		else if (currentIndents == lastLineIndentCount) {
-			//Replace the last part of the key with current key
-			removeLastKey(keyBuilder);
+		return false;
+	}
 
-			if (keyBuilder.length() > 0)
-				keyBuilder.append(".");
+	// Line breaks and non printable characters can only be written in double quotes
+	private static boolean requiresEscaping(char c) {
+		return c < ' ' && c != '\t' || c >= 0x7F && c < 0xA0 || c == 0x2028 || c == 0x2029 || c == 0xFEFF || c == 0xFFFE || c == 0xFFFF;
+	}
 
-			keyBuilder.append(key);
-		} else if (currentIndents > lastLineIndentCount)
-			//Append current key to the keyBuilder
-			keyBuilder.append(".").append(key);
-		else {
-			final int difference = lastLineIndentCount - currentIndents;
+	private static String escape(String string) {
+		final StringBuilder builder = new StringBuilder(string.length() + 8).append('"');
 
-			for (int i = 0; i < difference + 1; i++)
-				removeLastKey(keyBuilder);
+		for (int i = 0; i < string.length(); i++) {
+			final char c = string.charAt(i);
 
-			if (keyBuilder.length() > 0)
-				keyBuilder.append(".");
+			if (c == '"' || c == '\\')
+				builder.append('\\').append(c);
 
-			keyBuilder.append(key);
-		}
+			else if (c == '\n')
+				builder.append("\\n");
 
-		return currentIndents;
-	}
+			else if (c == '\r')
+				builder.append("\\r");
 
-	private static String getPrefixSpaces(int indents) {
-		final StringBuilder builder = new StringBuilder();
+			else if (c == '\t')
+				builder.append("\\t");
 
-		for (int i = 0; i < indents; i++)
-			builder.append("  ");
+			else if (requiresEscaping(c))
+				builder.append(String.format("\\u%04X", (int) c));
 
-		return builder.toString();
-	}
+			else
+				builder.append(c);
+		}
 
-	private static void appendPrefixSpaces(StringBuilder builder, int indents) {
-		builder.append(getPrefixSpaces(indents));
+		return builder.append('"').toString();
 	}
-}
\ No newline at end of file
+}
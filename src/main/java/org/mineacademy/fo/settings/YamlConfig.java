@@ -180,10 +180,14 @@ public class YamlConfig extends FileConfig {
 
 			// Keep a loaded copy to copy default values from
 			final YamlConfig defaultConfig = new YamlConfig();
-			final String defaultContent = String.join("\n", FileUtil.getInternalFileContent(from));
+			final List<String> defaultLines = FileUtil.getInternalFileContent(from);
 
 			defaultConfig.file = file;
-			defaultConfig.loadFromString(defaultContent);
+			defaultConfig.loadFromString(String.join("\n", defaultLines));
+
+			// Parse comments once, they are written back when saving
+			if (this.saveComments())
+				YamlComments.parseComments(defaultLines, defaultConfig.section);
 
 			this.defaults = defaultConfig.section;
 			this.defaultsPath = from;
@@ -248,9 +252,7 @@ public class YamlConfig extends FileConfig {
 		}
 
 		// Special case, write using comments engine
-		YamlComments.writeComments(this.defaultsPath, this.file, this.getUncommentedSections());
-
-		return null;
+		return YamlComments.write(this.file, this.defaults, this.section, this.getUncommentedSections(), this.yaml);
 	}
 
 	/*